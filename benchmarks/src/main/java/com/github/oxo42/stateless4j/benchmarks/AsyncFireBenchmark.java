@@ -0,0 +1,88 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.AsyncStateMachine;
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Several threads firing triggers at randomly chosen machines out of many, each machine guarded by
+ * {@code synchronized} against each machine wrapped in an {@link AsyncStateMachine} sharing one pool.
+ * <p>
+ * The asynchronous variant measures the cost for the producer; the drains run on the pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AsyncFireBenchmark {
+
+    public enum Light { OFF, ON }
+
+    public enum Switch { TOGGLE }
+
+    @Param({"1000"})
+    public int machines;
+
+    @Param({"64"})
+    public int maxBatchPerDrain;
+
+    private StateMachine<Light, Switch, Void>[] synchronizedMachines;
+    private AsyncStateMachine<Light, Switch, Void>[] asyncMachines;
+    private ExecutorService pool;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        StateMachineConfig<Light, Switch, Void> config = new StateMachineConfig<>();
+        config.configure(Light.OFF)
+            .permit(Switch.TOGGLE, Light.ON);
+        config.configure(Light.ON)
+            .permit(Switch.TOGGLE, Light.OFF);
+        config.compile();
+        pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        synchronizedMachines = new StateMachine[machines];
+        asyncMachines = new AsyncStateMachine[machines];
+        for (int i = 0; i < machines; i++) {
+            synchronizedMachines[i] = new StateMachine<>(Light.OFF, null, config);
+            asyncMachines[i] = new AsyncStateMachine<>(new StateMachine<>(Light.OFF, null, config), pool, maxBatchPerDrain);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public void synchronizedFire() {
+        StateMachine<Light, Switch, Void> machine = synchronizedMachines[ThreadLocalRandom.current().nextInt(machines)];
+        synchronized (machine) {
+            machine.fire(Switch.TOGGLE);
+        }
+    }
+
+    @Benchmark
+    public void asyncFire() {
+        asyncMachines[ThreadLocalRandom.current().nextInt(machines)].fire(Switch.TOGGLE);
+    }
+}
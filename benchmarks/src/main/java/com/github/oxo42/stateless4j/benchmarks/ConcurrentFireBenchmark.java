@@ -0,0 +1,74 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.ConcurrentStateMachine;
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Several threads firing triggers at, and reading the state of, one shared machine: a {@link StateMachine} guarded
+ * by {@code synchronized} against a {@link ConcurrentStateMachine}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ConcurrentFireBenchmark {
+
+    public enum Light { OFF, ON }
+
+    public enum Switch { TOGGLE }
+
+    private StateMachine<Light, Switch, Void> synchronizedMachine;
+    private ConcurrentStateMachine<Light, Switch, Void> concurrentMachine;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<Light, Switch, Void> config = new StateMachineConfig<>();
+        config.configure(Light.OFF)
+            .permit(Switch.TOGGLE, Light.ON);
+        config.configure(Light.ON)
+            .permit(Switch.TOGGLE, Light.OFF);
+        config.compile();
+        synchronizedMachine = new StateMachine<>(Light.OFF, null, config);
+        concurrentMachine = new ConcurrentStateMachine<>(Light.OFF, null, config);
+    }
+
+    @Benchmark
+    public void synchronizedFire() {
+        synchronized (synchronizedMachine) {
+            synchronizedMachine.fire(Switch.TOGGLE);
+        }
+    }
+
+    @Benchmark
+    public void concurrentFire() {
+        concurrentMachine.fire(Switch.TOGGLE);
+    }
+
+    @Benchmark
+    public Light synchronizedGetState() {
+        synchronized (synchronizedMachine) {
+            return synchronizedMachine.getState();
+        }
+    }
+
+    @Benchmark
+    public Light concurrentGetState() {
+        return concurrentMachine.getState();
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creating and starting a machine with {@code fireInitialTransition}, with and without compiling the configuration.
+ * Building and compiling the configuration itself is measured by {@link ConfigurationBuildBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigurationBenchmark {
+
+    public enum Order { ORDER, OPEN, NEW, VALIDATED, ROUTED, PARTIALLY_FILLED, CLOSED, FILLED, CANCELLED, REJECTED }
+
+    public enum Event { VALIDATE, ROUTE, FILL, PARTIAL_FILL, CANCEL, REJECT, AMEND }
+
+    public static class Book {
+        long entries;
+        long amendments;
+    }
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private StateMachineConfig<Order, Event, Book> config;
+
+    @Setup
+    public void setUp() {
+        config = createConfig();
+        if (compiled) {
+            config.compile();
+        }
+    }
+
+    static StateMachineConfig<Order, Event, Book> createConfig() {
+        StateMachineConfig<Order, Event, Book> config = new StateMachineConfig<>();
+        config.configure(Order.ORDER)
+            .onEntry(b -> b.entries++);
+        config.configure(Order.OPEN)
+            .substateOf(Order.ORDER)
+            .onEntry(b -> b.entries++)
+            .permit(Event.CANCEL, Order.CANCELLED)
+            .permitInternal(Event.AMEND, b -> b.amendments++);
+        config.configure(Order.NEW)
+            .substateOf(Order.OPEN)
+            .onEntry(b -> b.entries++)
+            .permit(Event.VALIDATE, Order.VALIDATED)
+            .permit(Event.REJECT, Order.REJECTED);
+        config.configure(Order.VALIDATED)
+            .substateOf(Order.OPEN)
+            .permit(Event.ROUTE, Order.ROUTED);
+        config.configure(Order.ROUTED)
+            .substateOf(Order.OPEN)
+            .permit(Event.FILL, Order.FILLED)
+            .permit(Event.PARTIAL_FILL, Order.PARTIALLY_FILLED);
+        config.configure(Order.PARTIALLY_FILLED)
+            .substateOf(Order.OPEN)
+            .permit(Event.FILL, Order.FILLED)
+            .permitReentry(Event.PARTIAL_FILL);
+        config.configure(Order.CLOSED)
+            .substateOf(Order.ORDER)
+            .ignore(Event.AMEND);
+        config.configure(Order.FILLED).substateOf(Order.CLOSED);
+        config.configure(Order.CANCELLED).substateOf(Order.CLOSED);
+        config.configure(Order.REJECTED).substateOf(Order.CLOSED);
+        return config;
+    }
+
+    @Benchmark
+    public StateMachine<Order, Event, Book> fireInitialTransition() {
+        StateMachine<Order, Event, Book> machine = new StateMachine<>(Order.NEW, new Book(), config);
+        machine.fireInitialTransition();
+        return machine;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import com.github.oxo42.stateless4j.benchmarks.ConfigurationBenchmark.Book;
+import com.github.oxo42.stateless4j.benchmarks.ConfigurationBenchmark.Event;
+import com.github.oxo42.stateless4j.benchmarks.ConfigurationBenchmark.Order;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the configuration of {@link ConfigurationBenchmark}, and building and compiling it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationBuildBenchmark {
+
+    @Benchmark
+    public StateMachineConfig<Order, Event, Book> buildConfig() {
+        return ConfigurationBenchmark.createConfig();
+    }
+
+    @Benchmark
+    public Object buildAndCompileConfig() {
+        return ConfigurationBenchmark.createConfig().compile();
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code fire} on a flat configuration: plain transitions, transitions with entry and exit actions, internal
+ * transitions, reentry and ignored triggers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FireBenchmark {
+
+    public enum Phase { IDLE, ACTIVE, DONE }
+
+    public enum Event { START, STOP, TICK, AGAIN, NOISE, FINISH, RESTART }
+
+    public static class Counters {
+        long ticks;
+        long entries;
+        long exits;
+    }
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private StateMachine<Phase, Event, Counters> machine;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<Phase, Event, Counters> config = new StateMachineConfig<>();
+        config.configure(Phase.IDLE)
+            .permit(Event.START, Phase.ACTIVE)
+            .permit(Event.FINISH, Phase.DONE)
+            .ignore(Event.NOISE);
+        config.configure(Phase.ACTIVE)
+            .permit(Event.STOP, Phase.IDLE)
+            .permitInternal(Event.TICK, c -> c.ticks++)
+            .permitReentry(Event.AGAIN)
+            .ignore(Event.NOISE);
+        config.configure(Phase.DONE)
+            .onEntry(c -> c.entries++)
+            .onExit(c -> c.exits++)
+            .permit(Event.RESTART, Phase.IDLE);
+        if (compiled) {
+            config.compile();
+        }
+        machine = new StateMachine<>(Phase.IDLE, new Counters(), config);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public Phase fireTransition() {
+        machine.fire(Event.START);
+        machine.fire(Event.STOP);
+        return machine.getState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public Phase fireTransitionWithActions() {
+        machine.fire(Event.FINISH);
+        machine.fire(Event.RESTART);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public Phase fireInternal() {
+        if (machine.getState() != Phase.ACTIVE) {
+            machine.fire(Event.START);
+        }
+        machine.fire(Event.TICK);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public Phase fireReentry() {
+        if (machine.getState() != Phase.ACTIVE) {
+            machine.fire(Event.START);
+        }
+        machine.fire(Event.AGAIN);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public Phase fireIgnored() {
+        machine.fire(Event.NOISE);
+        return machine.getState();
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import com.github.oxo42.stateless4j.StateMachineFleet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Firing an expiry trigger at every session of a {@link StateMachineFleet} whose sessions are spread over several
+ * states, one {@code tryFire} at a time against one {@code fireBatch}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FleetBatchBenchmark {
+
+    public enum Session { LIVE, ACTIVE, IDLE, AUTHENTICATING, EXPIRED }
+
+    public enum Event { EXPIRE, TOUCH }
+
+    public static class Counters {
+        long expired;
+    }
+
+    @Param({"1000000"})
+    public int size;
+
+    private StateMachineFleet<Session, Event, Counters> fleet;
+    private int[] entityIds;
+    private byte[] initialStates;
+    private IntFunction<Counters> contexts;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<Session, Event, Counters> config = new StateMachineConfig<>();
+        config.configure(Session.LIVE)
+            .onExit(c -> c.expired++)
+            .permit(Event.EXPIRE, Session.EXPIRED);
+        config.configure(Session.ACTIVE)
+            .substateOf(Session.LIVE)
+            .permit(Event.TOUCH, Session.IDLE);
+        config.configure(Session.IDLE)
+            .substateOf(Session.LIVE)
+            .permit(Event.TOUCH, Session.ACTIVE);
+        config.configure(Session.AUTHENTICATING)
+            .substateOf(Session.LIVE);
+        config.configure(Session.EXPIRED)
+            .ignore(Event.EXPIRE);
+        fleet = new StateMachineFleet<>(config, Session.class, size, Session.ACTIVE);
+
+        Random random = new Random(42);
+        entityIds = new int[size];
+        initialStates = new byte[size];
+        for (int i = 0; i < size; i++) {
+            entityIds[i] = i;
+            initialStates[i] = (byte) random.nextInt(Session.values().length);
+        }
+        Counters counters = new Counters();
+        contexts = id -> counters;
+    }
+
+    @Setup(Level.Invocation)
+    public void resetStates() {
+        Session[] sessions = Session.values();
+        for (int i = 0; i < size; i++) {
+            fleet.setState(i, sessions[initialStates[i]]);
+        }
+    }
+
+    @Benchmark
+    public int expireOneByOne() {
+        int handled = 0;
+        for (int entityId : entityIds) {
+            if (fleet.tryFire(entityId, Event.EXPIRE, contexts.apply(entityId)).isHandled()) {
+                handled++;
+            }
+        }
+        return handled;
+    }
+
+    @Benchmark
+    public int expireBatch() {
+        return fleet.fireBatch(entityIds, Event.EXPIRE, contexts).getHandled();
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.BatchResult;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import com.github.oxo42.stateless4j.StateMachineFleet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code fireBatchParallel} firing an expiry trigger at every session of a {@link StateMachineFleet}, on a
+ * {@link ForkJoinPool} of increasing parallelism.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FleetParallelBatchBenchmark {
+
+    public enum Session { LIVE, ACTIVE, IDLE, AUTHENTICATING, EXPIRED }
+
+    public enum Event { EXPIRE, TOUCH }
+
+    public static class Counters {
+        final LongAdder expired = new LongAdder();
+    }
+
+    @Param({"8000000"})
+    public int size;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int parallelism;
+
+    private ForkJoinPool pool;
+
+    private StateMachineFleet<Session, Event, Counters> fleet;
+    private int[] entityIds;
+    private byte[] initialStates;
+    private IntFunction<Counters> contexts;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<Session, Event, Counters> config = new StateMachineConfig<>();
+        config.configure(Session.LIVE)
+            .onExit(c -> c.expired.increment())
+            .permit(Event.EXPIRE, Session.EXPIRED);
+        config.configure(Session.ACTIVE)
+            .substateOf(Session.LIVE)
+            .permit(Event.TOUCH, Session.IDLE);
+        config.configure(Session.IDLE)
+            .substateOf(Session.LIVE)
+            .permit(Event.TOUCH, Session.ACTIVE);
+        config.configure(Session.AUTHENTICATING)
+            .substateOf(Session.LIVE);
+        config.configure(Session.EXPIRED)
+            .ignore(Event.EXPIRE);
+        fleet = new StateMachineFleet<>(config, Session.class, size, Session.ACTIVE);
+
+        Random random = new Random(42);
+        entityIds = new int[size];
+        initialStates = new byte[size];
+        for (int i = 0; i < size; i++) {
+            entityIds[i] = i;
+            initialStates[i] = (byte) random.nextInt(Session.values().length);
+        }
+        Counters counters = new Counters();
+        contexts = id -> counters;
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void resetStates() {
+        Session[] sessions = Session.values();
+        for (int i = 0; i < size; i++) {
+            fleet.setState(i, sessions[initialStates[i]]);
+        }
+    }
+
+    @Benchmark
+    public BatchResult expireParallel() {
+        return fleet.fireBatchParallel(entityIds, Event.EXPIRE, contexts, pool);
+    }
+}
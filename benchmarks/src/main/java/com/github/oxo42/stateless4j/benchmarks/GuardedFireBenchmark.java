@@ -0,0 +1,84 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Handler resolution for triggers with mutually exclusive guards. Run with the GC profiler to see the allocation
+ * rate of the guard evaluation:
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar GuardedFireBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GuardedFireBenchmark {
+
+    public enum Phase { IDLE, BUSY, FAILED }
+
+    public enum Event { START, STOP, POLL }
+
+    public static class Session {
+        boolean healthy = true;
+        long polls;
+    }
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private StateMachine<Phase, Event, Session> machine;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<Phase, Event, Session> config = new StateMachineConfig<>();
+        config.configure(Phase.IDLE)
+            .permitIf(Event.START, Phase.BUSY, s -> s.healthy)
+            .permitIf(Event.START, Phase.FAILED, s -> !s.healthy);
+        config.configure(Phase.BUSY)
+            .permitIf(Event.STOP, Phase.IDLE, s -> s.healthy)
+            .permitIf(Event.STOP, Phase.FAILED, s -> !s.healthy)
+            .permitInternalIf(Event.POLL, s -> s.healthy, s -> s.polls++);
+        if (compiled) {
+            config.compile();
+        }
+        machine = new StateMachine<>(Phase.IDLE, new Session(), config);
+    }
+
+    @Benchmark
+    public Phase fireGuardedTransition() {
+        machine.fire(Event.START);
+        machine.fire(Event.STOP);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public Phase fireGuardedInternal() {
+        if (machine.getState() != Phase.BUSY) {
+            machine.fire(Event.START);
+        }
+        machine.fire(Event.POLL);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public boolean canFireGuarded() {
+        return machine.canFire(Event.START);
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code fire} in a hierarchy of two branches of {@code depth} nested states under a common root, every state with
+ * an entry and an exit action. Crossing between the leaves exits and enters {@code depth} states; the inherited
+ * trigger is declared on the root and resolved from a leaf.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HierarchicalFireBenchmark {
+
+    public enum Node {
+        ROOT,
+        LEFT1, LEFT2, LEFT3, LEFT4, LEFT5, LEFT6, LEFT7, LEFT8, LEFT9, LEFT10, LEFT11, LEFT12, LEFT13, LEFT14, LEFT15, LEFT16,
+        RIGHT1, RIGHT2, RIGHT3, RIGHT4, RIGHT5, RIGHT6, RIGHT7, RIGHT8, RIGHT9, RIGHT10, RIGHT11, RIGHT12, RIGHT13, RIGHT14, RIGHT15, RIGHT16
+    }
+
+    public enum Event { CROSS, BACK, PING }
+
+    public static class Counters {
+        long entries;
+        long exits;
+        long pings;
+    }
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private StateMachine<Node, Event, Counters> machine;
+
+    @Setup
+    public void setUp() {
+        Node[] nodes = Node.values();
+        StateMachineConfig<Node, Event, Counters> config = new StateMachineConfig<>();
+        config.configure(Node.ROOT)
+            .permitInternal(Event.PING, c -> c.pings++);
+        for (int i = 1; i <= depth; i++) {
+            Node left = nodes[i];
+            Node right = nodes[16 + i];
+            config.configure(left)
+                .substateOf(i == 1 ? Node.ROOT : nodes[i - 1])
+                .onEntry(c -> c.entries++)
+                .onExit(c -> c.exits++);
+            config.configure(right)
+                .substateOf(i == 1 ? Node.ROOT : nodes[16 + i - 1])
+                .onEntry(c -> c.entries++)
+                .onExit(c -> c.exits++);
+        }
+        Node leftLeaf = nodes[depth];
+        Node rightLeaf = nodes[16 + depth];
+        config.configure(leftLeaf).permit(Event.CROSS, rightLeaf);
+        config.configure(rightLeaf).permit(Event.BACK, leftLeaf);
+        if (compiled) {
+            config.compile();
+        }
+        machine = new StateMachine<>(leftLeaf, new Counters(), config);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public Node fireAcrossBranches() {
+        machine.fire(Event.CROSS);
+        machine.fire(Event.BACK);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public Node fireInherited() {
+        machine.fire(Event.PING);
+        return machine.getState();
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.IntStateMachine;
+import com.github.oxo42.stateless4j.IntStateMachineConfig;
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link IntStateMachine} against a {@link StateMachine} over {@code Integer} states and triggers, both configured
+ * with the same protocol: a session that is opened, exchanges frames and is closed, with the frames handled by an
+ * internal transition inherited from a superstate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntFireBenchmark {
+
+    static final int CONNECTED = 0, IDLE = 1, OPEN = 2, CLOSING = 3;
+    static final int OPEN_FRAME = 0, DATA_FRAME = 1, CLOSE_FRAME = 2, ACK_FRAME = 3;
+
+    private static final int[] SESSION = {OPEN_FRAME, DATA_FRAME, DATA_FRAME, CLOSE_FRAME, ACK_FRAME};
+
+    public static class Counters {
+        long frames;
+        long sessions;
+    }
+
+    private IntStateMachine<Counters> intMachine;
+    private StateMachine<Integer, Integer, Counters> boxedMachine;
+    private StateMachine<Integer, Integer, Counters> compiledBoxedMachine;
+
+    @Setup
+    public void setUp() {
+        IntStateMachineConfig<Counters> intConfig = new IntStateMachineConfig<>(4, 4);
+        intConfig.configure(CONNECTED)
+            .permitInternal(DATA_FRAME, c -> c.frames++);
+        intConfig.configure(IDLE)
+            .substateOf(CONNECTED)
+            .permit(OPEN_FRAME, OPEN);
+        intConfig.configure(OPEN)
+            .substateOf(CONNECTED)
+            .onEntry(c -> c.sessions++)
+            .permit(CLOSE_FRAME, CLOSING);
+        intConfig.configure(CLOSING)
+            .substateOf(CONNECTED)
+            .permit(ACK_FRAME, IDLE);
+        intMachine = new IntStateMachine<>(IDLE, new Counters(), intConfig);
+
+        boxedMachine = new StateMachine<>(IDLE, new Counters(), createBoxedConfig());
+        StateMachineConfig<Integer, Integer, Counters> compiled = createBoxedConfig();
+        compiled.compile();
+        compiledBoxedMachine = new StateMachine<>(IDLE, new Counters(), compiled);
+    }
+
+    private static StateMachineConfig<Integer, Integer, Counters> createBoxedConfig() {
+        StateMachineConfig<Integer, Integer, Counters> config = new StateMachineConfig<>();
+        config.configure(CONNECTED)
+            .permitInternal(DATA_FRAME, c -> c.frames++);
+        config.configure(IDLE)
+            .substateOf(CONNECTED)
+            .permit(OPEN_FRAME, OPEN);
+        config.configure(OPEN)
+            .substateOf(CONNECTED)
+            .onEntry(c -> c.sessions++)
+            .permit(CLOSE_FRAME, CLOSING);
+        config.configure(CLOSING)
+            .substateOf(CONNECTED)
+            .permit(ACK_FRAME, IDLE);
+        return config;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public int fireInt() {
+        for (int frame : SESSION) {
+            intMachine.fire(frame);
+        }
+        return intMachine.getState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public Integer fireBoxed() {
+        for (int frame : SESSION) {
+            boxedMachine.fire(frame);
+        }
+        return boxedMachine.getState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public Integer fireBoxedCompiled() {
+        for (int frame : SESSION) {
+            compiledBoxedMachine.fire(frame);
+        }
+        return compiledBoxedMachine.getState();
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code canFire} and {@code getPermittedTriggers} in a substate, for a state whose triggers are all unguarded and
+ * for a state with guarded triggers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntrospectionBenchmark {
+
+    public enum Screen { APP, HOME, SETTINGS, PROFILE, LOGIN }
+
+    public enum Action { OPEN_SETTINGS, OPEN_PROFILE, GO_HOME, LOG_OUT, REFRESH, SAVE }
+
+    public static class Session {
+        boolean loggedIn = true;
+        boolean dirty;
+    }
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private StateMachine<Screen, Action, Session> unguarded;
+    private StateMachine<Screen, Action, Session> guarded;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<Screen, Action, Session> config = new StateMachineConfig<>();
+        config.configure(Screen.APP)
+            .permit(Action.LOG_OUT, Screen.LOGIN)
+            .ignore(Action.REFRESH);
+        config.configure(Screen.HOME)
+            .substateOf(Screen.APP)
+            .permit(Action.OPEN_SETTINGS, Screen.SETTINGS)
+            .permit(Action.OPEN_PROFILE, Screen.PROFILE);
+        config.configure(Screen.SETTINGS)
+            .substateOf(Screen.APP)
+            .permitIf(Action.GO_HOME, Screen.HOME, s -> !s.dirty)
+            .permitIf(Action.OPEN_PROFILE, Screen.PROFILE, s -> s.loggedIn)
+            .permitInternalIf(Action.SAVE, s -> s.dirty, s -> s.dirty = false);
+        if (compiled) {
+            config.compile();
+        }
+        unguarded = new StateMachine<>(Screen.HOME, new Session(), config);
+        guarded = new StateMachine<>(Screen.SETTINGS, new Session(), config);
+    }
+
+    @Benchmark
+    public boolean canFireHandled() {
+        return unguarded.canFire(Action.OPEN_SETTINGS);
+    }
+
+    @Benchmark
+    public boolean canFireInherited() {
+        return unguarded.canFire(Action.LOG_OUT);
+    }
+
+    @Benchmark
+    public boolean canFireUnhandled() {
+        return unguarded.canFire(Action.SAVE);
+    }
+
+    @Benchmark
+    public boolean canFireGuarded() {
+        return guarded.canFire(Action.GO_HOME);
+    }
+
+    @Benchmark
+    public List<Action> permittedTriggersUnguarded() {
+        return unguarded.getPermittedTriggers();
+    }
+
+    @Benchmark
+    public List<Action> permittedTriggersGuarded() {
+        return guarded.getPermittedTriggers();
+    }
+}
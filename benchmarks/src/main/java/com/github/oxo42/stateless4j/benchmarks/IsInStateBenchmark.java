@@ -0,0 +1,74 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code isInState} on a chain of nested states, asked for the root (the whole chain is walked when not compiled),
+ * the direct superstate and an unrelated state.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IsInStateBenchmark {
+
+    public enum Level { L0, L1, L2, L3, L4, L5, L6, L7, L8, L9, L10, L11, L12, L13, L14, L15, L16, UNRELATED }
+
+    public enum Event { GO }
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private StateMachine<Level, Event, Void> machine;
+    private Level leaf;
+    private Level parent;
+
+    @Setup
+    public void setUp() {
+        Level[] levels = Level.values();
+        StateMachineConfig<Level, Event, Void> config = new StateMachineConfig<>();
+        for (int i = 1; i <= depth; i++) {
+            config.configure(levels[i]).substateOf(levels[i - 1]);
+        }
+        config.configure(Level.UNRELATED);
+        if (compiled) {
+            config.compile();
+        }
+        leaf = levels[depth];
+        parent = levels[depth - 1];
+        machine = new StateMachine<>(leaf, null, config);
+    }
+
+    @Benchmark
+    public boolean isInRoot() {
+        return machine.isInState(Level.L0);
+    }
+
+    @Benchmark
+    public boolean isInParent() {
+        return machine.isInState(parent);
+    }
+
+    @Benchmark
+    public boolean isInUnrelated() {
+        return machine.isInState(Level.UNRELATED);
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.AsyncStateMachine;
+import com.github.oxo42.stateless4j.KeyedDispatcher;
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Several threads firing triggers at randomly chosen machines out of many, through a {@link KeyedDispatcher} with
+ * one stripe per processor against each machine wrapped in an {@link AsyncStateMachine} sharing a pool of the same
+ * size.
+ * <p>
+ * Both measure the cost for the producer; the triggers are fired on the stripe and pool threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class KeyedDispatchBenchmark {
+
+    public enum Light { OFF, ON }
+
+    public enum Switch { TOGGLE }
+
+    @Param({"1000"})
+    public int machines;
+
+    private AsyncStateMachine<Light, Switch, Void>[] asyncMachines;
+    private KeyedDispatcher<Integer, Switch> dispatcher;
+    private ExecutorService pool;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        StateMachineConfig<Light, Switch, Void> config = new StateMachineConfig<>();
+        config.configure(Light.OFF)
+            .permit(Switch.TOGGLE, Light.ON);
+        config.configure(Light.ON)
+            .permit(Switch.TOGGLE, Light.OFF);
+        config.compile();
+        int threads = Runtime.getRuntime().availableProcessors();
+        pool = Executors.newFixedThreadPool(threads);
+        asyncMachines = new AsyncStateMachine[machines];
+        StateMachine<Light, Switch, Void>[] keyedMachines = new StateMachine[machines];
+        for (int i = 0; i < machines; i++) {
+            asyncMachines[i] = new AsyncStateMachine<>(new StateMachine<>(Light.OFF, null, config), pool);
+            keyedMachines[i] = new StateMachine<>(Light.OFF, null, config);
+        }
+        dispatcher = KeyedDispatcher.forMachines(threads, key -> keyedMachines[key]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+        dispatcher.close();
+    }
+
+    @Benchmark
+    public void asyncFire() {
+        asyncMachines[ThreadLocalRandom.current().nextInt(machines)].fire(Switch.TOGGLE);
+    }
+
+    @Benchmark
+    public void keyedDispatch() {
+        dispatcher.dispatch(ThreadLocalRandom.current().nextInt(machines), Switch.TOGGLE);
+    }
+}
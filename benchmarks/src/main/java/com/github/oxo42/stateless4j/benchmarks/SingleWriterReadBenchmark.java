@@ -0,0 +1,283 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.SingleWriterStateMachine;
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One thread firing triggers while other threads read the state, with a {@link StateMachine} guarded by
+ * {@code synchronized} against a {@link SingleWriterStateMachine} publishing snapshots.
+ * <p>
+ * Every group runs one writer against 1, 2, 4, 8, 16, 32 or 64 readers, the number the group is named after. The
+ * groups of one implementation are selected with e.g. {@code SingleWriterReadBenchmark.singleWriterReaders}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class SingleWriterReadBenchmark {
+
+    public enum Connection { IDLE, CONNECTING, CONNECTED, CLOSING }
+
+    public enum Event { CONNECT, ESTABLISHED, CLOSE, CLOSED }
+
+    private static final Event[] CYCLE = {Event.CONNECT, Event.ESTABLISHED, Event.CLOSE, Event.CLOSED};
+
+    private StateMachine<Connection, Event, Void> synchronizedMachine;
+    private SingleWriterStateMachine<Connection, Event, Void> singleWriterMachine;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<Connection, Event, Void> config = new StateMachineConfig<>();
+        config.configure(Connection.IDLE)
+            .permit(Event.CONNECT, Connection.CONNECTING);
+        config.configure(Connection.CONNECTING)
+            .permit(Event.ESTABLISHED, Connection.CONNECTED);
+        config.configure(Connection.CONNECTED)
+            .permit(Event.CLOSE, Connection.CLOSING);
+        config.configure(Connection.CLOSING)
+            .permit(Event.CLOSED, Connection.IDLE);
+        config.compile();
+        synchronizedMachine = new StateMachine<>(Connection.IDLE, null, config);
+        singleWriterMachine = new SingleWriterStateMachine<>(Connection.IDLE, null, config);
+    }
+
+    private Event nextEvent() {
+        Event event = CYCLE[next];
+        next = (next + 1) & 3;
+        return event;
+    }
+
+    private void synchronizedWrite() {
+        Event event = nextEvent();
+        synchronized (synchronizedMachine) {
+            synchronizedMachine.fire(event);
+        }
+    }
+
+    private boolean synchronizedRead() {
+        synchronized (synchronizedMachine) {
+            return synchronizedMachine.isInState(Connection.CONNECTED);
+        }
+    }
+
+    private void singleWriterWrite() {
+        singleWriterMachine.fire(nextEvent());
+    }
+
+    private boolean singleWriterRead() {
+        return singleWriterMachine.isInState(Connection.CONNECTED);
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders1")
+    @GroupThreads(1)
+    public void synchronizedWrite1() {
+        synchronizedWrite();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders1")
+    @GroupThreads(1)
+    public boolean synchronizedRead1() {
+        return synchronizedRead();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders2")
+    @GroupThreads(1)
+    public void synchronizedWrite2() {
+        synchronizedWrite();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders2")
+    @GroupThreads(2)
+    public boolean synchronizedRead2() {
+        return synchronizedRead();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders4")
+    @GroupThreads(1)
+    public void synchronizedWrite4() {
+        synchronizedWrite();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders4")
+    @GroupThreads(4)
+    public boolean synchronizedRead4() {
+        return synchronizedRead();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders8")
+    @GroupThreads(1)
+    public void synchronizedWrite8() {
+        synchronizedWrite();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders8")
+    @GroupThreads(8)
+    public boolean synchronizedRead8() {
+        return synchronizedRead();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders16")
+    @GroupThreads(1)
+    public void synchronizedWrite16() {
+        synchronizedWrite();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders16")
+    @GroupThreads(16)
+    public boolean synchronizedRead16() {
+        return synchronizedRead();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders32")
+    @GroupThreads(1)
+    public void synchronizedWrite32() {
+        synchronizedWrite();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders32")
+    @GroupThreads(32)
+    public boolean synchronizedRead32() {
+        return synchronizedRead();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders64")
+    @GroupThreads(1)
+    public void synchronizedWrite64() {
+        synchronizedWrite();
+    }
+
+    @Benchmark
+    @Group("synchronizedReaders64")
+    @GroupThreads(64)
+    public boolean synchronizedRead64() {
+        return synchronizedRead();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders1")
+    @GroupThreads(1)
+    public void singleWriterWrite1() {
+        singleWriterWrite();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders1")
+    @GroupThreads(1)
+    public boolean singleWriterRead1() {
+        return singleWriterRead();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders2")
+    @GroupThreads(1)
+    public void singleWriterWrite2() {
+        singleWriterWrite();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders2")
+    @GroupThreads(2)
+    public boolean singleWriterRead2() {
+        return singleWriterRead();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders4")
+    @GroupThreads(1)
+    public void singleWriterWrite4() {
+        singleWriterWrite();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders4")
+    @GroupThreads(4)
+    public boolean singleWriterRead4() {
+        return singleWriterRead();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders8")
+    @GroupThreads(1)
+    public void singleWriterWrite8() {
+        singleWriterWrite();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders8")
+    @GroupThreads(8)
+    public boolean singleWriterRead8() {
+        return singleWriterRead();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders16")
+    @GroupThreads(1)
+    public void singleWriterWrite16() {
+        singleWriterWrite();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders16")
+    @GroupThreads(16)
+    public boolean singleWriterRead16() {
+        return singleWriterRead();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders32")
+    @GroupThreads(1)
+    public void singleWriterWrite32() {
+        singleWriterWrite();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders32")
+    @GroupThreads(32)
+    public boolean singleWriterRead32() {
+        return singleWriterRead();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders64")
+    @GroupThreads(1)
+    public void singleWriterWrite64() {
+        singleWriterWrite();
+    }
+
+    @Benchmark
+    @Group("singleWriterReaders64")
+    @GroupThreads(64)
+    public boolean singleWriterRead64() {
+        return singleWriterRead();
+    }
+}
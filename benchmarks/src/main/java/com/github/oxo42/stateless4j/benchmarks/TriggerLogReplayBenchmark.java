@@ -0,0 +1,98 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import com.github.oxo42.stateless4j.TriggerLogReplay;
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replaying a long log of session events on the calling thread against replaying it in parallel, with and without
+ * recording the intermediate states.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TriggerLogReplayBenchmark {
+
+    public enum Session { ACTIVE, IDLE, LOCKED, EXPIRED }
+
+    public enum Event { TOUCH, IDLE_TIMEOUT, LOCK, UNLOCK, EXPIRE, RENEW }
+
+    @Param({"10000000"})
+    public int length;
+
+    private TriggerLogReplay<Session, Event> replay;
+    private Event[] events;
+    private IntBuffer log;
+    private IntBuffer states;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<Session, Event, Void> config = new StateMachineConfig<>();
+        config.configure(Session.ACTIVE)
+            .permit(Event.IDLE_TIMEOUT, Session.IDLE)
+            .permit(Event.LOCK, Session.LOCKED)
+            .permit(Event.EXPIRE, Session.EXPIRED)
+            .ignore(Event.TOUCH);
+        config.configure(Session.IDLE)
+            .permit(Event.TOUCH, Session.ACTIVE)
+            .permit(Event.LOCK, Session.LOCKED)
+            .permit(Event.EXPIRE, Session.EXPIRED);
+        config.configure(Session.LOCKED)
+            .permit(Event.UNLOCK, Session.ACTIVE)
+            .permit(Event.EXPIRE, Session.EXPIRED);
+        config.configure(Session.EXPIRED)
+            .permit(Event.RENEW, Session.ACTIVE);
+        replay = new TriggerLogReplay<>(config, Session.class, Event.class, null, true);
+
+        Random random = new Random(42);
+        Event[] all = Event.values();
+        events = new Event[length];
+        int[] ordinals = new int[length];
+        for (int i = 0; i < length; i++) {
+            events[i] = all[random.nextInt(all.length)];
+            ordinals[i] = events[i].ordinal();
+        }
+        log = IntBuffer.wrap(ordinals);
+        states = IntBuffer.allocate(length);
+        pool = new ForkJoinPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Session sequential() {
+        return replay.replay(Session.ACTIVE, events);
+    }
+
+    @Benchmark
+    public Session parallel() {
+        return replay.replay(Session.ACTIVE, log, pool);
+    }
+
+    @Benchmark
+    public Session parallelRecordingStates() {
+        return replay.replay(Session.ACTIVE, log, states, pool);
+    }
+}
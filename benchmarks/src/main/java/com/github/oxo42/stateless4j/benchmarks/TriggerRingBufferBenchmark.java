@@ -0,0 +1,142 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import com.github.oxo42.stateless4j.StateMachineFleet;
+import com.github.oxo42.stateless4j.TriggerRingBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 1, 2, 4 and 8 producers publishing triggers for randomly chosen entities of a fleet through a
+ * {@link TriggerRingBuffer}, drained by one consumer thread that counts the changed entities in its batch end
+ * callback.
+ * <p>
+ * Each benchmark runs in throughput mode and in sample time mode, which reports the percentiles of the time a publish
+ * takes, including waiting for the consumer to free a slot when the ring buffer is full; the p0.99 line is the p99
+ * latency. Every slot also carries the time it was published, and the consumer records the time from publishing to
+ * applying the trigger in a power of two histogram, whose percentiles are printed at the end of every trial. The
+ * consumer takes a thread of its own, so the results for 8 producers need at least 9 hardware threads.
+ * {@code -prof gc} shows that publishing and draining allocate nothing.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TriggerRingBufferBenchmark {
+
+    public enum Light { OFF, ON }
+
+    public enum Switch { TOGGLE }
+
+    @Param({"100000"})
+    public int entities;
+
+    @Param({"4096"})
+    public int capacity;
+
+    private TriggerRingBuffer<Light, Switch, Void> ring;
+    private final AtomicLong committed = new AtomicLong();
+    // publish to apply latencies, counted by the bit length of their nanoseconds; only written by the consumer
+    private final long[] applyLatencies = new long[64];
+    private volatile boolean running;
+    private Thread consumer;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<Light, Switch, Void> config = new StateMachineConfig<>();
+        config.configure(Light.OFF)
+            .permit(Switch.TOGGLE, Light.ON);
+        config.configure(Light.ON)
+            .permit(Switch.TOGGLE, Light.OFF);
+        StateMachineFleet<Light, Switch, Void> fleet = new StateMachineFleet<>(config, Light.class, entities, Light.OFF);
+        Arrays.fill(applyLatencies, 0);
+        ring = new TriggerRingBuffer<>(fleet, capacity, 1, slot -> {
+            long latency = System.nanoTime() - slot.getArgument(0);
+            applyLatencies[64 - Long.numberOfLeadingZeros(Math.max(latency, 0))]++;
+            return null;
+        });
+        // stands in for writing the changed entities to storage in one go
+        ring.onBatchEnd((changed, count) -> committed.lazySet(committed.get() + count));
+        running = true;
+        consumer = new Thread(() -> {
+            while (running) {
+                if (ring.drain() == 0) {
+                    Thread.yield();
+                }
+            }
+        });
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running = false;
+        consumer.join();
+        System.out.println("publish to apply latency: p50 < " + applyPercentile(0.5) + " ns, p99 < "
+            + applyPercentile(0.99) + " ns, p99.9 < " + applyPercentile(0.999) + " ns");
+    }
+
+    /**
+     * The upper bound of the histogram bucket holding the given fraction of the publish to apply latencies
+     */
+    private long applyPercentile(double fraction) {
+        long total = 0;
+        for (long count : applyLatencies) {
+            total += count;
+        }
+        long seen = 0;
+        for (int bits = 0; bits < applyLatencies.length; bits++) {
+            seen += applyLatencies[bits];
+            if (seen >= total * fraction) {
+                return bits == 63 ? Long.MAX_VALUE : 1L << bits;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void publish() {
+        ring.publish(ThreadLocalRandom.current().nextInt(entities), Switch.TOGGLE, System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void oneProducer() {
+        publish();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void twoProducers() {
+        publish();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourProducers() {
+        publish();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void eightProducers() {
+        publish();
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An entry, exit or transition action that completes asynchronously.
+ * <p>
+ * It is stored alongside the synchronous actions, so it can be used wherever they are. {@link AsyncStateMachine}
+ * recognises it and waits for its completion without blocking a thread; everywhere else it is started and waited
+ * for, so a plain {@link StateMachine} blocks until it completes.
+ */
+final class AsyncAction<S, T, C> implements BiConsumer<Transition<S, T>, C>, Consumer<C> {
+
+    static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private static volatile ScheduledThreadPoolExecutor timer;
+
+    private final Function<C, ? extends CompletionStage<?>> action;
+    private final long timeout;
+    private final TimeUnit unit;
+    private final AsyncFailurePolicy failurePolicy;
+
+    AsyncAction(Function<C, ? extends CompletionStage<?>> action, long timeout, TimeUnit unit, AsyncFailurePolicy failurePolicy) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative, was " + timeout);
+        }
+        this.action = action;
+        this.timeout = timeout;
+        this.unit = unit;
+        this.failurePolicy = failurePolicy;
+    }
+
+    private static ScheduledThreadPoolExecutor timer() {
+        ScheduledThreadPoolExecutor result = timer;
+        if (result == null) {
+            synchronized (AsyncAction.class) {
+                result = timer;
+                if (result == null) {
+                    result = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        Thread thread = new Thread(runnable, "stateless4j-async-action-timeout");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    result.setRemoveOnCancelPolicy(true);
+                    timer = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Start the action
+     *
+     * @param context The context
+     * @return Completes when the action has completed, timed out or failed, according to the failure policy
+     */
+    CompletableFuture<Void> start(C context) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        CompletionStage<?> stage;
+        try {
+            stage = action.apply(context);
+        } catch (RuntimeException e) {
+            stage = null;
+            completion.completeExceptionally(e);
+        }
+        if (stage != null) {
+            stage.whenComplete((result, failure) -> {
+                if (failure == null) {
+                    completion.complete(null);
+                } else {
+                    completion.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure);
+                }
+            });
+            if (timeout > 0 && !completion.isDone()) {
+                ScheduledFuture<?> expiry = timer().schedule(() -> completion.completeExceptionally(
+                    new TimeoutException("Asynchronous action did not complete within " + timeout + " " + unit.toString().toLowerCase(Locale.ROOT))),
+                    timeout, unit);
+                completion.whenComplete((result, failure) -> expiry.cancel(false));
+            }
+        } else if (!completion.isDone()) {
+            completion.completeExceptionally(new NullPointerException("Asynchronous action returned null"));
+        }
+        if (failurePolicy == AsyncFailurePolicy.CONTINUE) {
+            return completion.isDone() ? DONE : completion.handle((result, failure) -> null);
+        }
+        return completion;
+    }
+
+    @Override
+    public void accept(Transition<S, T> transition, C context) {
+        accept(context);
+    }
+
+    @Override
+    public void accept(C context) {
+        try {
+            start(context).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an asynchronous action", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    /**
+     * Run actions in order, waiting for the asynchronous ones without blocking
+     *
+     * @param actions    The actions
+     * @param from       The index of the first action to run
+     * @param transition The transition
+     * @param context    The context
+     * @param executor   Runs the actions following an asynchronous action that did not complete at once
+     * @return Completes once all actions have
+     */
+    static <S, T, C> CompletableFuture<Void> runStaged(BiConsumer<Transition<S, T>, C>[] actions, int from,
+        Transition<S, T> transition, C context, Executor executor) {
+        for (int i = from; i < actions.length; i++) {
+            BiConsumer<Transition<S, T>, C> action = actions[i];
+            if (action instanceof AsyncAction) {
+                CompletableFuture<Void> completion = ((AsyncAction<S, T, C>) action).start(context);
+                if (!completion.isDone()) {
+                    int next = i + 1;
+                    return completion.thenComposeAsync(v -> runStaged(actions, next, transition, context, executor), executor);
+                }
+                completion.join();
+            } else {
+                action.accept(transition, context);
+            }
+        }
+        return DONE;
+    }
+}
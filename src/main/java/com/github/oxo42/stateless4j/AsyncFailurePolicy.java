@@ -0,0 +1,20 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * What happens to a transition when one of its asynchronous actions fails or times out
+ *
+ * @see StateConfiguration#onEntryAsync(java.util.function.Function, long, java.util.concurrent.TimeUnit, AsyncFailurePolicy)
+ */
+public enum AsyncFailurePolicy {
+
+    /**
+     * The remaining actions of the transition are skipped and the firing fails with the exception of the action. A
+     * failure before the state was changed, i.e. in an exit or transition action, leaves the state unchanged.
+     */
+    ABORT,
+
+    /**
+     * The failure is ignored and the transition goes on with its next action
+     */
+    CONTINUE
+}
@@ -0,0 +1,465 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Trace;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Fires the triggers of a {@link StateMachine} one at a time on an executor, like an actor processing its mailbox.
+ * <p>
+ * {@link #fire(Object)} can be called from any thread and never blocks: it appends the trigger to a lock-free
+ * multi-producer, single-consumer queue and, unless the machine is already scheduled, submits a drain of the queue to
+ * the executor. At most one drain of a machine runs at a time, so the wrapped machine is only ever used by one thread
+ * at a time and needs no locking, and a single thread pool can serve any number of machines. A drain fires at most
+ * {@code maxBatchPerDrain} triggers and then submits a new drain for the rest, so that a busy machine does not keep
+ * a pool thread from the other machines.
+ * <p>
+ * The queue is unbounded unless a capacity is given. A bounded mailbox applies its {@link MailboxPolicy} to triggers
+ * fired while it is full, and then takes a lock; triggers it discards are counted and reported to the
+ * {@link com.github.oxo42.stateless4j.delegates.Trace} of the machine.
+ * <p>
+ * Triggers fired by the actions of the machine are appended to its own queue, so they run after the current
+ * transition has completed. An exception thrown while firing a trigger is passed to the error handler and the drain
+ * goes on with the next trigger; an {@link Error} is passed on wrapped in a {@link CompletionException}. An exception
+ * thrown by the error handler itself is passed to the uncaught exception handler of the executor thread, and does not
+ * stop the machine either.
+ * <p>
+ * Asynchronous actions, see {@link StateConfiguration#onEntryAsync(java.util.function.Function)}, are waited for
+ * without blocking: the drain stops until the action completes and then goes on, on the executor, with the rest of
+ * the transition and the next trigger. The state only changes once the exit and transition actions have completed.
+ * <p>
+ * The wrapped machine must not be fired directly. Its state can be read from other threads if it is a
+ * {@link SingleWriterStateMachine}. Any executor can run the drains; when actions block, e.g. on I/O, an executor
+ * starting a virtual thread per task, see {@link VirtualThreads}, lets many machines wait at once without holding
+ * platform threads.
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ * @param <C> The type of the context
+ */
+public final class AsyncStateMachine<S, T, C> {
+
+    /**
+     * The number of triggers a drain fires before yielding the executor thread, unless given otherwise
+     */
+    public static final int DEFAULT_MAX_BATCH_PER_DRAIN = 64;
+
+    private static final class Node<S, T> {
+        T trigger;
+        CompletableFuture<Transition<S, T>> completion;
+        volatile Node<S, T> next;
+
+        Node(T trigger, CompletableFuture<Transition<S, T>> completion) {
+            this.trigger = trigger;
+            this.completion = completion;
+        }
+    }
+
+    private final StateMachine<S, T, C> machine;
+    private final Executor executor;
+    private final int maxBatchPerDrain;
+    private final Runnable drain = this::drain;
+
+    // producers swap the tail, the draining thread alone moves the head, which is a consumed node
+    private final AtomicReference<Node<S, T>> tail;
+    private Node<S, T> head;
+    // replaces the lock-free queue if the capacity is bounded
+    private final BoundedMailbox<Node<S, T>> mailbox;
+    private volatile Thread drainingThread;
+    // set while a trigger waits for an asynchronous action, whose continuation runs on any executor thread
+    private volatile boolean staging;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    private volatile BiConsumer<T, RuntimeException> errorHandler = (trigger, e) -> Failures.uncaught(e);
+
+    // only written by the draining thread
+    private volatile long drains;
+    private volatile long drainedTriggers;
+    private volatile long totalDrainNanos;
+    private volatile long maxDrainNanos;
+
+    /**
+     * Wrap a state machine, draining at most {@link #DEFAULT_MAX_BATCH_PER_DRAIN} triggers at a time
+     *
+     * @param machine  The state machine, which must not be fired directly any more
+     * @param executor The executor running the drains
+     */
+    public AsyncStateMachine(StateMachine<S, T, C> machine, Executor executor) {
+        this(machine, executor, DEFAULT_MAX_BATCH_PER_DRAIN);
+    }
+
+    /**
+     * Wrap a state machine
+     *
+     * @param machine          The state machine, which must not be fired directly any more
+     * @param executor         The executor running the drains
+     * @param maxBatchPerDrain The number of triggers a drain fires before submitting a new drain for the rest
+     */
+    public AsyncStateMachine(StateMachine<S, T, C> machine, Executor executor, int maxBatchPerDrain) {
+        this(machine, executor, maxBatchPerDrain, Integer.MAX_VALUE, MailboxPolicy.BLOCK);
+    }
+
+    /**
+     * Wrap a state machine, queueing at most {@code capacity} triggers
+     *
+     * @param machine          The state machine, which must not be fired directly any more
+     * @param executor         The executor running the drains
+     * @param maxBatchPerDrain The number of triggers a drain fires before submitting a new drain for the rest
+     * @param capacity         The number of triggers the mailbox holds, {@link Integer#MAX_VALUE} for an unbounded
+     *                         lock-free queue
+     * @param policy           What to do with a trigger fired while the mailbox is full
+     */
+    public AsyncStateMachine(StateMachine<S, T, C> machine, Executor executor, int maxBatchPerDrain, int capacity,
+        MailboxPolicy policy) {
+        Objects.requireNonNull(machine, "machine must not be null");
+        Objects.requireNonNull(executor, "executor must not be null");
+        if (maxBatchPerDrain <= 0) {
+            throw new IllegalArgumentException("maxBatchPerDrain must be positive, was " + maxBatchPerDrain);
+        }
+        this.machine = machine;
+        this.executor = executor;
+        this.maxBatchPerDrain = maxBatchPerDrain;
+        this.mailbox = capacity == Integer.MAX_VALUE ? null : new BoundedMailbox<>(capacity, policy, new MailboxListener());
+        Node<S, T> stub = new Node<>(null, null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * The wrapped state machine
+     *
+     * @return The state machine
+     */
+    public StateMachine<S, T, C> getMachine() {
+        return machine;
+    }
+
+    /**
+     * Queue a trigger to be fired on the executor. Returns at once, unless the mailbox is full and its policy is
+     * {@link MailboxPolicy#BLOCK}.
+     *
+     * @param trigger The trigger to fire
+     * @return {@link FireResult#QUEUED}, or {@link FireResult#REJECTED} if the mailbox was full
+     * @throws IllegalStateException If the policy is {@link MailboxPolicy#BLOCK} and the mailbox is full when an
+     *                               action of the machine fires a trigger, or while the machine waits for an
+     *                               asynchronous action
+     */
+    public FireResult fire(T trigger) {
+        return enqueue(new Node<>(trigger, null));
+    }
+
+    /**
+     * Queue a trigger to be fired on the executor, and return a future completed once it has been fired, including
+     * all exit, transition and entry actions. Returns at once.
+     * <p>
+     * The future is completed on the executor thread, so dependent actions that must not delay the next trigger
+     * should be attached with the {@code ...Async} methods of {@link CompletableFuture}. It completes exceptionally
+     * with the exception thrown while firing the trigger, e.g. the {@link IllegalStateException} of an unhandled
+     * trigger, which is then not passed to the error handler. For internal transitions and ignored triggers the
+     * source and destination of the transition are the same state. A trigger rejected or dropped by a full
+     * mailbox completes the future with a {@link RejectedExecutionException}; a trigger merged into an equal queued
+     * one completes it with the transition of that one.
+     *
+     * @param trigger The trigger to fire
+     * @return The transition the trigger caused
+     */
+    public CompletableFuture<Transition<S, T>> fireAsync(T trigger) {
+        CompletableFuture<Transition<S, T>> completion = new CompletableFuture<>();
+        enqueue(new Node<>(trigger, completion));
+        return completion;
+    }
+
+    private FireResult enqueue(Node<S, T> node) {
+        if (mailbox != null) {
+            // waiting for room while the machine is draining on this thread, or waiting for an action that may
+            // be the caller, would never return
+            FireResult result = mailbox.offer(node, Thread.currentThread() != drainingThread && !staging);
+            if (result == FireResult.QUEUED) {
+                schedule();
+            }
+            return result;
+        }
+        queueDepth.incrementAndGet();
+        tail.getAndSet(node).next = node;
+        schedule();
+        return FireResult.QUEUED;
+    }
+
+    private final class MailboxListener implements BoundedMailbox.Listener<Node<S, T>> {
+
+        @Override
+        public boolean coalesce(Node<S, T> queued, Node<S, T> offered) {
+            if (!Objects.equals(queued.trigger, offered.trigger)) {
+                return false;
+            }
+            CompletableFuture<Transition<S, T>> completion = offered.completion;
+            if (completion != null) {
+                if (queued.completion == null) {
+                    queued.completion = completion;
+                } else {
+                    queued.completion.whenComplete((transition, failure) -> {
+                        if (failure == null) {
+                            completion.complete(transition);
+                        } else {
+                            completion.completeExceptionally(failure);
+                        }
+                    });
+                }
+                offered.completion = null;
+            }
+            return true;
+        }
+
+        @Override
+        public void discarded(Node<S, T> node, MailboxPolicy reason) {
+            if (node.completion != null) {
+                node.completion.completeExceptionally(new RejectedExecutionException(
+                    reason == MailboxPolicy.DROP_OLDEST
+                        ? "The trigger was dropped from the full mailbox for a newer one"
+                        : "The mailbox is full"));
+            }
+            Trace<S, T> trace = machine.getTrace();
+            if (trace != null) {
+                trace.discarded(node.trigger, reason, mailbox.size());
+            }
+        }
+    }
+
+    /**
+     * Replace the handler of exceptions thrown while firing a trigger, which by default passes them to the
+     * uncaught exception handler of the executor thread
+     *
+     * @param errorHandler Called with the trigger and the exception, on the executor thread. An exception it throws
+     *                     is passed to the uncaught exception handler of the thread.
+     */
+    public void onError(BiConsumer<T, RuntimeException> errorHandler) {
+        Objects.requireNonNull(errorHandler, "errorHandler must not be null");
+        this.errorHandler = errorHandler;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drain);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private Node<S, T> poll() {
+        if (mailbox != null) {
+            return mailbox.poll();
+        }
+        Node<S, T> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        // the previous head is dropped, the polled node becomes the consumed head once it has been fired
+        head = next;
+        return next;
+    }
+
+    /**
+     * Fire the trigger of a node
+     *
+     * @return False if the trigger waits for an asynchronous action, which resumes the drain once it completes
+     */
+    private boolean fire(Node<S, T> node) {
+        T trigger = node.trigger;
+        CompletableFuture<Transition<S, T>> completion = node.completion;
+        node.trigger = null;
+        node.completion = null;
+        S source = machine.stateAccessor.get();
+        CompletableFuture<FireResult> fired = fireStaged(trigger);
+        if (fired.isDone()) {
+            fired(trigger, completion, source, fired);
+            return true;
+        }
+        staging = true;
+        Runnable resume = () -> {
+            try {
+                fired(trigger, completion, source, fired);
+            } finally {
+                staging = false;
+                drain();
+            }
+        };
+        fired.whenComplete((result, failure) -> {
+            try {
+                executor.execute(resume);
+            } catch (RuntimeException e) {
+                // the executor rejected the continuation, e.g. once shut down; resume on the completing thread, so
+                // that the machine does not stay scheduled forever
+                resume.run();
+            }
+        });
+        return false;
+    }
+
+    private CompletableFuture<FireResult> fireStaged(T trigger) {
+        try {
+            return machine.fireStaged(trigger, true, executor);
+        } catch (RuntimeException | Error e) {
+            CompletableFuture<FireResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private void fired(T trigger, CompletableFuture<Transition<S, T>> completion, S source, CompletableFuture<FireResult> fired) {
+        try {
+            fired.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            if (completion == null) {
+                Failures.report(cause, failure -> errorHandler.accept(trigger, failure));
+            } else {
+                completion.completeExceptionally(Failures.asRuntimeException(cause));
+            }
+            return;
+        }
+        if (completion != null) {
+            completion.complete(new Transition<>(source, machine.stateAccessor.get(), trigger));
+        }
+    }
+
+    private void drain() {
+        drainingThread = Thread.currentThread();
+        long start = System.nanoTime();
+        int fired = 0;
+        boolean waiting = false;
+        try {
+            while (fired < maxBatchPerDrain) {
+                Node<S, T> node = poll();
+                if (node == null) {
+                    break;
+                }
+                if (mailbox == null) {
+                    queueDepth.decrementAndGet();
+                }
+                fired++;
+                if (!fire(node)) {
+                    waiting = true;
+                    break;
+                }
+            }
+        } finally {
+            // runs even if something escaped the loop, so that the machine is released and drained again
+            long elapsed = System.nanoTime() - start;
+            drains++;
+            drainedTriggers += fired;
+            totalDrainNanos += elapsed;
+            if (elapsed > maxDrainNanos) {
+                maxDrainNanos = elapsed;
+            }
+            drainingThread = null;
+            if (!waiting) {
+                // otherwise it stays scheduled, the completion of the action resumes draining
+                scheduled.set(false);
+                // a trigger appended since the last poll may have seen the drain still scheduled
+                if (mailbox == null ? tail.get() != head : mailbox.size() > 0) {
+                    schedule();
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of triggers queued and not yet fired
+     *
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return mailbox == null ? queueDepth.get() : mailbox.size();
+    }
+
+    /**
+     * The number of triggers the mailbox holds
+     *
+     * @return The capacity, {@link Integer#MAX_VALUE} if the mailbox is unbounded
+     */
+    public int getCapacity() {
+        return mailbox == null ? Integer.MAX_VALUE : mailbox.getCapacity();
+    }
+
+    /**
+     * The number of triggers the full mailbox rejected so far
+     *
+     * @return The number of rejected triggers
+     */
+    public long getRejectedTriggers() {
+        return mailbox == null ? 0 : mailbox.getRejected();
+    }
+
+    /**
+     * The number of queued triggers the full mailbox dropped for newer ones so far, see
+     * {@link MailboxPolicy#DROP_OLDEST}
+     *
+     * @return The number of dropped triggers
+     */
+    public long getDroppedTriggers() {
+        return mailbox == null ? 0 : mailbox.getDropped();
+    }
+
+    /**
+     * The number of triggers the full mailbox merged into equal queued ones so far, see {@link MailboxPolicy#COALESCE}
+     *
+     * @return The number of coalesced triggers
+     */
+    public long getCoalescedTriggers() {
+        return mailbox == null ? 0 : mailbox.getCoalesced();
+    }
+
+    /**
+     * The number of drains run so far
+     *
+     * @return The number of drains
+     */
+    public long getDrains() {
+        return drains;
+    }
+
+    /**
+     * The number of triggers fired by the drains so far
+     *
+     * @return The number of drained triggers
+     */
+    public long getDrainedTriggers() {
+        return drainedTriggers;
+    }
+
+    /**
+     * The time spent in drains so far, divided by {@link #getDrains()} gives the average drain latency
+     *
+     * @return The total drain time, in nanoseconds
+     */
+    public long getTotalDrainNanos() {
+        return totalDrainNanos;
+    }
+
+    /**
+     * The longest time a single drain took so far
+     *
+     * @return The maximum drain time, in nanoseconds
+     */
+    public long getMaxDrainNanos() {
+        return maxDrainNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "AsyncStateMachine {{ QueueDepth = %d, Drains = %d, DrainedTriggers = %d, RejectedTriggers = %d }}",
+            getQueueDepth(), drains, drainedTriggers, getRejectedTriggers());
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * The outcome of firing triggers for a batch of entities, see
+ * {@link StateMachineFleet#fireBatch(int[], Object, java.util.function.IntFunction)} and
+ * {@link StateMachineFleet#fireBatchParallel(int[], Object, java.util.function.IntFunction, java.util.concurrent.Executor)}
+ */
+public final class BatchResult {
+
+    private final int handled;
+    private final int unhandled;
+
+    BatchResult(int handled, int unhandled) {
+        this.handled = handled;
+        this.unhandled = unhandled;
+    }
+
+    /**
+     * The number of entities for which the trigger was permitted, including ignored triggers
+     *
+     * @return The number of handled triggers
+     */
+    public int getHandled() {
+        return handled;
+    }
+
+    /**
+     * The number of entities for which the trigger was not permitted, and whose state was left unchanged
+     *
+     * @return The number of unhandled triggers
+     */
+    public int getUnhandled() {
+        return unhandled;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult { Handled = " + handled + ", Unhandled = " + unhandled + " }";
+    }
+}
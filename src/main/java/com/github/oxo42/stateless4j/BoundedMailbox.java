@@ -0,0 +1,255 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A first-in first-out queue holding at most {@code capacity} elements, which applies a {@link MailboxPolicy} to
+ * elements offered while it is full.
+ * <p>
+ * The elements are kept in a ring array that grows up to the capacity, so an unbounded mailbox only takes the memory
+ * of the elements it holds. All operations take a lock.
+ *
+ * @param <E> The type of the elements
+ */
+final class BoundedMailbox<E> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Told about the elements a mailbox merges or discards
+     *
+     * @param <E> The type of the elements
+     */
+    interface Listener<E> {
+
+        /**
+         * Merge an offered element into a queued one, for {@link MailboxPolicy#COALESCE}. Called while the mailbox is
+         * locked.
+         *
+         * @param queued  The queued element
+         * @param offered The offered element
+         * @return True if the elements are equal and the offered one was merged, false to try the next queued element
+         */
+        boolean coalesce(E queued, E offered);
+
+        /**
+         * Called with an element that was rejected, dropped or merged, once the mailbox is unlocked
+         *
+         * @param element The discarded element
+         * @param reason  {@link MailboxPolicy#REJECT} if the element was rejected, whatever the policy of the
+         *                mailbox, otherwise the policy that dropped or merged it
+         */
+        void discarded(E element, MailboxPolicy reason);
+    }
+
+    private final int capacity;
+    private final MailboxPolicy policy;
+    private final Listener<E> listener;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private Object[] elements;
+    private int head;
+    private int size;
+    private boolean closed;
+
+    // only written while locked
+    private volatile int depth;
+    private volatile long rejected;
+    private volatile long dropped;
+    private volatile long coalesced;
+
+    BoundedMailbox(int capacity, MailboxPolicy policy, Listener<E> listener) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+        }
+        Objects.requireNonNull(policy, "policy must not be null");
+        Objects.requireNonNull(listener, "listener must not be null");
+        this.capacity = capacity;
+        this.policy = policy;
+        this.listener = listener;
+        this.elements = new Object[Integer.highestOneBit(Math.min(capacity, INITIAL_CAPACITY) * 2 - 1)];
+    }
+
+    /**
+     * Append an element, applying the policy if the mailbox is full
+     *
+     * @param element  The element
+     * @param mayBlock False if waiting for room could keep the elements from being taken, e.g. if the calling thread
+     *                 is the one taking them
+     * @return {@link FireResult#QUEUED} if the element was queued or merged, {@link FireResult#REJECTED} if not
+     * @throws IllegalStateException If the mailbox is closed, or if it would have to block and must not
+     */
+    FireResult offer(E element, boolean mayBlock) {
+        E discarded = null;
+        MailboxPolicy reason = null;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Offering a trigger to a closed mailbox");
+            }
+            if (size == capacity) {
+                switch (policy) {
+                    case BLOCK:
+                        if (!mayBlock) {
+                            throw new IllegalStateException("The mailbox is full, and waiting for room while its consumer is busy would never return");
+                        }
+                        try {
+                            while (size == capacity && !closed) {
+                                notFull.await();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            discarded = element;
+                            reason = MailboxPolicy.REJECT;
+                            rejected++;
+                            return FireResult.REJECTED;
+                        }
+                        if (closed) {
+                            throw new IllegalStateException("Offering a trigger to a closed mailbox");
+                        }
+                        break;
+                    case DROP_OLDEST:
+                        discarded = removeFirst();
+                        reason = MailboxPolicy.DROP_OLDEST;
+                        dropped++;
+                        break;
+                    case COALESCE:
+                        discarded = element;
+                        if (coalesce(element)) {
+                            reason = MailboxPolicy.COALESCE;
+                            coalesced++;
+                            return FireResult.QUEUED;
+                        }
+                        reason = MailboxPolicy.REJECT;
+                        rejected++;
+                        return FireResult.REJECTED;
+                    default:
+                        discarded = element;
+                        reason = MailboxPolicy.REJECT;
+                        rejected++;
+                        return FireResult.REJECTED;
+                }
+            }
+            addLast(element);
+            return FireResult.QUEUED;
+        } finally {
+            lock.unlock();
+            if (discarded != null) {
+                listener.discarded(discarded, reason);
+            }
+        }
+    }
+
+    private boolean coalesce(E element) {
+        for (int i = 0; i < size; i++) {
+            if (listener.coalesce(elementAt(i), element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementAt(int i) {
+        return (E) elements[(head + i) & (elements.length - 1)];
+    }
+
+    private void addLast(E element) {
+        if (size == elements.length) {
+            Object[] grown = new Object[elements.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = elementAt(i);
+            }
+            elements = grown;
+            head = 0;
+        }
+        elements[(head + size) & (elements.length - 1)] = element;
+        depth = ++size;
+        notEmpty.signal();
+    }
+
+    private E removeFirst() {
+        E element = elementAt(0);
+        elements[head] = null;
+        head = (head + 1) & (elements.length - 1);
+        depth = --size;
+        notFull.signal();
+        return element;
+    }
+
+    /**
+     * Take the oldest element
+     *
+     * @return The element, or null if the mailbox is empty
+     */
+    E poll() {
+        lock.lock();
+        try {
+            return size == 0 ? null : removeFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the oldest element, waiting until there is one
+     *
+     * @return The element, or null once the mailbox is closed and empty
+     * @throws InterruptedException If interrupted while waiting
+     */
+    E take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (size == 0) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            return removeFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting elements; those already queued can still be taken
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    MailboxPolicy getPolicy() {
+        return policy;
+    }
+
+    int size() {
+        return depth;
+    }
+
+    long getRejected() {
+        return rejected;
+    }
+
+    long getDropped() {
+        return dropped;
+    }
+
+    long getCoalesced() {
+        return coalesced;
+    }
+}
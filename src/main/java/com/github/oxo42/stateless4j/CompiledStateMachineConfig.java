@@ -0,0 +1,409 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, table driven form of a {@link StateMachineConfig}, created by {@link StateMachineConfig#compile()}.
+ * <p>
+ * Every state and trigger is assigned a dense index (the ordinal for enum types), and the trigger behaviours of
+ * all states are stored in a flat array indexed by {@code stateIndex * triggerCount + triggerIndex}, so finding
+ * the handlers of a trigger is a single array load instead of two hash lookups. The behaviours a state inherits
+ * from its superstates are merged into its own entries, so the lookup does not depend on the depth of the state.
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ * @param <C> The type of the context
+ */
+public final class CompiledStateMachineConfig<S, T, C> {
+
+    private final Index<S> states;
+    private final Index<T> triggers;
+    private final int triggerCount;
+
+    private final StateRepresentation<S, T, C>[] representations;
+    private final int[] superstates;
+    private final int ancestorWords;
+    private final long[] ancestors; // per state, ancestorWords words with the bits of the state and its superstates
+    private final HandlerChain<S, T, C>[] handlers; // flattened over superstates, null if the trigger is not handled
+    private final List<T>[] permittedTriggers; // per state, the triggers that are accepted whatever the context
+    private final int[][] conditionalTriggers; // per state, the indices of the triggers that are only accepted by guards
+    private final int[][] planDestinations; // per source, the sorted indices of the static destinations
+    private final TransitionPlan<S, T, C>[][] plans; // per source, parallel to planDestinations
+    // per source, lazily, the plans of dynamic destinations by destination index; plans are immutable, so racing
+    // threads at worst build the same plan twice
+    private final TransitionPlan<S, T, C>[][] dynamicPlans;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    CompiledStateMachineConfig(Map<S, StateRepresentation<S, T, C>> stateConfiguration) {
+        Set<S> stateKeys = new LinkedHashSet<>(stateConfiguration.keySet());
+        Set<T> triggerKeys = new LinkedHashSet<>();
+        for (StateRepresentation<S, T, C> representation : stateConfiguration.values()) {
+            for (List<TriggerBehaviour<S, T, C>> behaviours : representation.getTriggerBehaviours().values()) {
+                for (TriggerBehaviour<S, T, C> behaviour : behaviours) {
+                    triggerKeys.add(behaviour.getTrigger());
+                    if (behaviour instanceof TransitioningTriggerBehaviour) {
+                        stateKeys.add(behaviour.transitionsTo(null, null));
+                    }
+                }
+            }
+        }
+        this.states = new Index<>(stateKeys);
+        this.triggers = new Index<>(triggerKeys);
+        this.triggerCount = triggers.size();
+
+        int stateCount = states.size();
+        this.representations = new StateRepresentation[stateCount];
+        this.superstates = new int[stateCount];
+        this.handlers = new HandlerChain[stateCount * triggerCount];
+        for (int s = 0; s < stateCount; s++) {
+            S state = states.get(s);
+            StateRepresentation<S, T, C> representation = stateConfiguration.get(state);
+            if (representation == null) {
+                representation = new StateRepresentation<>(state);
+                representation.freeze();
+            }
+            representations[s] = representation;
+        }
+        for (int s = 0; s < stateCount; s++) {
+            StateRepresentation<S, T, C> superstate = representations[s].getSuperstate();
+            superstates[s] = superstate == null ? -1 : states.indexOf(superstate.getUnderlyingState());
+        }
+        byte[] flattened = new byte[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            flattenHandlers(s, flattened);
+        }
+
+        this.ancestorWords = (stateCount + 63) >>> 6;
+        this.ancestors = new long[stateCount * ancestorWords];
+        for (int s = 0; s < stateCount; s++) {
+            for (int a = s; a >= 0; a = superstates[a]) {
+                ancestors[s * ancestorWords + (a >>> 6)] |= 1L << a;
+            }
+        }
+
+        this.permittedTriggers = new List[stateCount];
+        this.conditionalTriggers = new int[stateCount][];
+        for (int s = 0; s < stateCount; s++) {
+            List<T> unconditional = new ArrayList<>();
+            int[] conditional = new int[triggerCount];
+            int conditionalCount = 0;
+            for (int t = 0; t < triggerCount; t++) {
+                HandlerChain<S, T, C> chain = handlers[s * triggerCount + t];
+                if (chain == null) {
+                    continue;
+                }
+                if (chain.isUnconditional()) {
+                    unconditional.add(triggers.get(t));
+                } else {
+                    conditional[conditionalCount++] = t;
+                }
+            }
+            permittedTriggers[s] = Collections.unmodifiableList(unconditional);
+            conditionalTriggers[s] = Arrays.copyOf(conditional, conditionalCount);
+        }
+
+        this.dynamicPlans = new TransitionPlan[stateCount][];
+        this.planDestinations = new int[stateCount][];
+        this.plans = new TransitionPlan[stateCount][];
+        for (int s = 0; s < stateCount; s++) {
+            planDestinations[s] = staticDestinations(s);
+            plans[s] = new TransitionPlan[planDestinations[s].length];
+            for (int i = 0; i < plans[s].length; i++) {
+                plans[s][i] = TransitionPlan.between(representations[s], representations[planDestinations[s][i]]);
+            }
+        }
+    }
+
+    /**
+     * Fill the handler table of a state, after the one of its superstate: the state's own behaviours for a trigger
+     * are linked in front of the inherited ones, and triggers the state does not declare share the superstate's chain.
+     */
+    private void flattenHandlers(int state, byte[] flattened) {
+        if (flattened[state] == 2) {
+            return;
+        }
+        if (flattened[state] == 1) {
+            throw new IllegalStateException("State '" + states.get(state) + "' is its own superstate");
+        }
+        flattened[state] = 1;
+        int superstate = superstates[state];
+        if (superstate >= 0) {
+            flattenHandlers(superstate, flattened);
+            System.arraycopy(handlers, superstate * triggerCount, handlers, state * triggerCount, triggerCount);
+        }
+        for (Map.Entry<T, List<TriggerBehaviour<S, T, C>>> entry : representations[state].getTriggerBehaviours().entrySet()) {
+            int slot = state * triggerCount + triggers.indexOf(entry.getKey());
+            handlers[slot] = new HandlerChain<>(states.get(state), entry.getKey(), entry.getValue(), handlers[slot]);
+        }
+        flattened[state] = 2;
+    }
+
+    /**
+     * The sorted indices of the states a state can transition to without consulting the context, including the
+     * transitions inherited from its superstates
+     */
+    private int[] staticDestinations(int state) {
+        BitSet destinations = new BitSet(states.size());
+        for (int t = 0; t < triggerCount; t++) {
+            for (HandlerChain<S, T, C> link = handlers[state * triggerCount + t]; link != null; link = link.getInherited()) {
+                for (TriggerBehaviour<S, T, C> candidate : link.getBehaviours()) {
+                    if (candidate instanceof TransitioningTriggerBehaviour) {
+                        destinations.set(states.indexOf(candidate.transitionsTo(null, null)));
+                    }
+                }
+            }
+        }
+        return destinations.stream().toArray();
+    }
+
+    /**
+     * The states known to this configuration, in index order
+     *
+     * @return The states known to this configuration
+     */
+    public List<S> getStates() {
+        return states.keys();
+    }
+
+    /**
+     * The triggers known to this configuration, in index order
+     *
+     * @return The triggers known to this configuration
+     */
+    public List<T> getTriggers() {
+        return triggers.keys();
+    }
+
+    /**
+     * Return the dense index of a state. For enum states this is the ordinal.
+     *
+     * @param state The state
+     * @return The index of the state, or -1 if the state is not known to this configuration
+     */
+    public int indexOfState(S state) {
+        return states.indexOf(state);
+    }
+
+    /**
+     * Return the dense index of a trigger. For enum triggers this is the ordinal.
+     *
+     * @param trigger The trigger
+     * @return The index of the trigger, or -1 if the trigger is not handled by any state
+     */
+    public int indexOfTrigger(T trigger) {
+        return triggers.indexOf(trigger);
+    }
+
+    /**
+     * Return StateRepresentation for the specified state. Never returns null.
+     *
+     * @param state The state
+     * @return StateRepresentation for the specified state
+     */
+    public StateRepresentation<S, T, C> getRepresentation(S state) {
+        int index = states.indexOf(state);
+        return index < 0 ? new StateRepresentation<>(state) : representations[index];
+    }
+
+    /**
+     * Determine if a state is equal to, or a substate of, another state. A single bit test for the states known to
+     * this configuration.
+     *
+     * @param current The state to test
+     * @param state   The state to test for
+     * @return True if {@code current} is equal to, or a substate of, {@code state}
+     */
+    public boolean isInState(S current, S state) {
+        int c = states.indexOf(current);
+        if (c < 0) {
+            return current.equals(state);
+        }
+        int a = states.indexOf(state);
+        return a >= 0 && (ancestors[c * ancestorWords + (a >>> 6)] & (1L << a)) != 0;
+    }
+
+    /**
+     * The triggers that are permitted in a state. For states without guarded behaviours this is a shared,
+     * unmodifiable list computed by {@link StateMachineConfig#compile()}; otherwise only the guards of the triggers
+     * that have no unguarded behaviour are evaluated.
+     *
+     * @param state   The state
+     * @param context The context the guards are evaluated against
+     * @return The permitted triggers, which must not be modified
+     */
+    public List<T> getPermittedTriggers(S state, C context) {
+        int s = states.indexOf(state);
+        if (s < 0) {
+            return Collections.emptyList();
+        }
+        int[] conditional = conditionalTriggers[s];
+        if (conditional.length == 0) {
+            return permittedTriggers[s];
+        }
+        List<T> result = new ArrayList<>(permittedTriggers[s].size() + conditional.length);
+        result.addAll(permittedTriggers[s]);
+        for (int t : conditional) {
+            if (handlers[s * triggerCount + t].isAnyGuardMet(context)) {
+                result.add(triggers.get(t));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the trigger behaviour that handles a trigger in a state, taking superstates and guards into account
+     *
+     * @param state   The state
+     * @param trigger The trigger
+     * @param context The context the guards are evaluated against
+     * @return The handling trigger behaviour, or null if the trigger is not handled
+     */
+    public TriggerBehaviour<S, T, C> tryFindHandler(S state, T trigger, C context) {
+        int s = states.indexOf(state);
+        int t = triggers.indexOf(trigger);
+        if (s < 0 || t < 0) {
+            return null;
+        }
+        HandlerChain<S, T, C> chain = handlers[s * triggerCount + t];
+        return chain == null ? null : chain.resolve(context);
+    }
+
+    /**
+     * True if a state or one of its superstates has behaviours for a trigger, whether or not their guards are met
+     *
+     * @param state   The state
+     * @param trigger The trigger
+     * @return True if the trigger is configured
+     */
+    public boolean isConfiguredFor(S state, T trigger) {
+        int s = states.indexOf(state);
+        int t = triggers.indexOf(trigger);
+        return s >= 0 && t >= 0 && handlers[s * triggerCount + t] != null;
+    }
+
+    /**
+     * The handlers of a trigger in a state, by index
+     *
+     * @param stateIndex   The index of the state
+     * @param triggerIndex The index of the trigger
+     * @return The handlers, or null if the trigger is not handled in the state
+     */
+    HandlerChain<S, T, C> getHandlerChain(int stateIndex, int triggerIndex) {
+        return handlers[stateIndex * triggerCount + triggerIndex];
+    }
+
+    /**
+     * Return the exit and entry actions of a transition. Plans for the transitions declared in the configuration
+     * are built by {@link StateMachineConfig#compile()}; any other plan between known states, e.g. to a dynamic
+     * destination, is built on first use and kept.
+     *
+     * @param source      The state transitioned from
+     * @param destination The state transitioned to
+     * @return The transition plan
+     */
+    TransitionPlan<S, T, C> getTransitionPlan(S source, S destination) {
+        int s = states.indexOf(source);
+        int d = states.indexOf(destination);
+        if (s >= 0 && d >= 0) {
+            int i = Arrays.binarySearch(planDestinations[s], d);
+            if (i >= 0) {
+                return plans[s][i];
+            }
+            return dynamicPlan(s, d);
+        }
+        return TransitionPlan.between(getRepresentation(source), getRepresentation(destination));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private TransitionPlan<S, T, C> dynamicPlan(int s, int d) {
+        TransitionPlan<S, T, C>[] row = dynamicPlans[s];
+        if (row == null) {
+            row = new TransitionPlan[representations.length];
+            dynamicPlans[s] = row;
+        }
+        TransitionPlan<S, T, C> plan = row[d];
+        if (plan == null) {
+            plan = TransitionPlan.between(representations[s], representations[d]);
+            row[d] = plan;
+        }
+        return plan;
+    }
+
+    /**
+     * Dense numbering of a set of keys. Enum keys are numbered by ordinal, so looking them up needs neither
+     * {@code hashCode} nor {@code equals}.
+     */
+    static final class Index<K> {
+
+        private final K[] keys;
+        private final List<K> keyList;
+        private final Map<K, Integer> positions; // null when the keys are the constants of one enum
+
+        @SuppressWarnings("unchecked")
+        Index(Collection<K> used) {
+            Class<?> enumType = enumTypeOf(used);
+            if (enumType != null) {
+                this.keys = (K[]) enumType.getEnumConstants();
+                this.positions = null;
+            } else {
+                this.keys = (K[]) used.toArray();
+                this.positions = new HashMap<>();
+                for (int i = 0; i < keys.length; i++) {
+                    positions.put(keys[i], i);
+                }
+            }
+            this.keyList = Collections.unmodifiableList(Arrays.asList(keys));
+        }
+
+        private static Class<?> enumTypeOf(Collection<?> used) {
+            Class<?> enumType = null;
+            for (Object key : used) {
+                if (!(key instanceof Enum)) {
+                    return null;
+                }
+                Class<?> type = ((Enum<?>) key).getDeclaringClass();
+                if (enumType != null && enumType != type) {
+                    return null;
+                }
+                enumType = type;
+            }
+            return enumType;
+        }
+
+        int indexOf(K key) {
+            if (key == null) {
+                return -1;
+            }
+            if (positions == null) {
+                if (!(key instanceof Enum)) {
+                    return -1;
+                }
+                int ordinal = ((Enum<?>) key).ordinal();
+                return ordinal < keys.length && keys[ordinal] == key ? ordinal : -1;
+            }
+            Integer position = positions.get(key);
+            return position == null ? -1 : position;
+        }
+
+        K get(int index) {
+            return keys[index];
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        List<K> keys() {
+            return keyList;
+        }
+    }
+}
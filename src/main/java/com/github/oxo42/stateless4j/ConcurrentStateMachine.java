@@ -0,0 +1,223 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Trace;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * A state machine that can be fired from several threads at once without locking.
+ * <p>
+ * The state is kept in an {@link AtomicReference}. Firing a trigger finds its handler in the current state, evaluates
+ * the guards and the destination, and then commits the transition with a compare-and-set from the state the handler
+ * was found in. If another thread changed the state in the meantime the compare-and-set fails and the trigger is
+ * resolved again against the new state, so guards may be evaluated several times and must not have side effects.
+ * <p>
+ * Exit, transition and entry actions are only run once the transition is committed, by the thread that committed it,
+ * and never more than once. The state is therefore visible to other threads, and further transitions from it may be
+ * committed, before the entry actions of the transition that led to it have completed; actions that must not overlap
+ * need their own coordination. Internal transitions and ignored triggers do not change the state and run their action
+ * without a compare-and-set.
+ * <p>
+ * {@link #getState()}, {@link #isInState(Object)}, {@link #canFire(Object)} and {@link #getPermittedTriggers()} only
+ * read the atomic state and the compiled configuration, and never block. The configuration is compiled when the
+ * machine is created, and can no longer be changed. The context is shared by all threads, so guards and actions using
+ * it must be thread-safe.
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ * @param <C> The type of the context
+ */
+public final class ConcurrentStateMachine<S, T, C> {
+
+    private final CompiledStateMachineConfig<S, T, C> compiled;
+    private final AtomicReference<S> state;
+    private final C context;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile Trace<S, T> trace = null;
+
+    private volatile BiConsumer<S, T> unhandledTriggerAction = (state, trigger) -> {
+        throw new IllegalStateException(
+            String.format(
+                "No valid leaving transitions are permitted from state '%s' for trigger '%s'. Consider ignoring the trigger.",
+                state, trigger)
+        );
+    };
+
+    /**
+     * Construct a state machine. The configuration is compiled, and can no longer be changed.
+     *
+     * @param initialState The initial state
+     * @param context      The context, shared by all threads
+     * @param config       State machine configuration
+     */
+    public ConcurrentStateMachine(S initialState, C context, StateMachineConfig<S, T, C> config) {
+        Objects.requireNonNull(initialState, "initialState must not be null");
+        Objects.requireNonNull(config, "config must not be null");
+        this.compiled = config.compile();
+        this.state = new AtomicReference<>(initialState);
+        this.context = context;
+    }
+
+    /**
+     * Fire initial transition into the initial state.
+     * All super-states are entered too.
+     *
+     * This method can be called only once, before state machine is used.
+     */
+    public void fireInitialTransition() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Firing initial transition after state machine has been started");
+        }
+        S initialState = state.get();
+        compiled.getRepresentation(initialState).enter(new Transition<>(null, initialState, null), context);
+    }
+
+    public C getContext() {
+        return context;
+    }
+
+    /**
+     * The current state
+     *
+     * @return The current state
+     */
+    public S getState() {
+        return state.get();
+    }
+
+    /**
+     * The currently-permissible trigger values
+     *
+     * @return The currently-permissible trigger values, which must not be modified
+     */
+    public List<T> getPermittedTriggers() {
+        return compiled.getPermittedTriggers(state.get(), context);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, see {@link StateMachine#fire(Object)}. The
+     * transition is committed atomically, and its actions are run by the calling thread once it is.
+     *
+     * @param trigger The trigger to fire
+     */
+    public void fire(T trigger) {
+        fire(trigger, true);
+    }
+
+    /**
+     * Fire the specified trigger like {@link #fire(Object)}, but report a trigger that cannot be handled in the
+     * current state through the result instead of the unhandled trigger action
+     *
+     * @param trigger The trigger to fire
+     * @return How the trigger was handled
+     */
+    public FireResult tryFire(T trigger) {
+        return fire(trigger, false);
+    }
+
+    private FireResult fire(T trigger, boolean reportUnhandled) {
+        if (!started.get()) {
+            started.set(true);
+        }
+        Trace<S, T> trace = this.trace;
+        if (trace != null) {
+            trace.trigger(trigger);
+        }
+
+        while (true) {
+            S source = state.get();
+            TriggerBehaviour<S, T, C> triggerBehaviour = compiled.tryFindHandler(source, trigger, context);
+            if (triggerBehaviour == null) {
+                FireResult result = compiled.isConfiguredFor(source, trigger) ? FireResult.GUARD_REJECTED : FireResult.UNHANDLED;
+                if (reportUnhandled) {
+                    unhandledTriggerAction.accept(source, trigger);
+                }
+                return result;
+            }
+
+            if (triggerBehaviour.isInternal()) {
+                triggerBehaviour.performAction(context);
+                return triggerBehaviour.isIgnored() ? FireResult.IGNORED : FireResult.ACCEPTED;
+            }
+
+            S destination = triggerBehaviour.transitionsTo(source, context);
+            if (!state.compareAndSet(source, destination)) {
+                continue; // another thread won, resolve the trigger again in its state
+            }
+
+            TransitionPlan<S, T, C> plan = compiled.getTransitionPlan(source, destination);
+            Transition<S, T> transition = plan.transitionFor(source, destination, trigger);
+            plan.exit(transition, context);
+            triggerBehaviour.performAction(context);
+            plan.enter(transition, context);
+            if (trace != null) {
+                trace.transition(trigger, source, destination);
+            }
+            return FireResult.ACCEPTED;
+        }
+    }
+
+    /**
+     * Override the default behaviour of throwing an exception when an unhandled trigger is fired
+     *
+     * @param unhandledTriggerAction An action to call when an unhandled trigger is fired
+     */
+    public void onUnhandledTrigger(final BiConsumer<S, T> unhandledTriggerAction) {
+        Objects.requireNonNull(unhandledTriggerAction, "unhandledTriggerAction must not be null");
+        this.unhandledTriggerAction = unhandledTriggerAction;
+    }
+
+    /**
+     * Determine if the state machine is in the supplied state
+     *
+     * @param state The state to test for
+     * @return True if the current state is equal to, or a substate of, the supplied state
+     */
+    public boolean isInState(S state) {
+        return compiled.isInState(this.state.get(), state);
+    }
+
+    /**
+     * Returns true if {@code trigger} can be fired  in the current state
+     *
+     * @param trigger Trigger to test
+     * @return True if the trigger can be fired, false otherwise
+     */
+    public boolean canFire(T trigger) {
+        return compiled.tryFindHandler(state.get(), trigger, context) != null;
+    }
+
+    /**
+     * Set tracer delegate, see {@link StateMachine#setTrace(Trace)}. The delegate is called by the firing threads,
+     * concurrently if triggers are fired concurrently.
+     *
+     * @param trace Trace delegate or null, if trace should be disabled
+     */
+    public void setTrace(Trace<S, T> trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * A human-readable representation of the state machine
+     *
+     * @return A description of the current state and permitted triggers
+     */
+    @Override
+    public String toString() {
+        S current = state.get();
+        List<String> parameters = new ArrayList<>();
+
+        for (T trigger : compiled.getPermittedTriggers(current, context)) {
+            parameters.add(trigger.toString());
+        }
+
+        return String.format(
+            "ConcurrentStateMachine {{ State = %s, PermittedTriggers = {{ %s }}}}",
+            current,
+            String.join(",", parameters));
+    }
+}
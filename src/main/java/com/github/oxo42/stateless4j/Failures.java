@@ -0,0 +1,52 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Reports the failures of the drains of {@link AsyncStateMachine}, {@link KeyedDispatcher} and
+ * {@link TriggerRingBuffer}, as described by {@link AsyncStateMachine}, so that whatever an action throws, the drain
+ * goes on with its next trigger
+ */
+final class Failures {
+
+    private Failures() {
+    }
+
+    /**
+     * The failure to pass to an error handler: an exception as it is, an {@link Error} wrapped in a
+     * {@link CompletionException}
+     *
+     * @param failure The failure
+     * @return The exception
+     */
+    static RuntimeException asRuntimeException(Throwable failure) {
+        return failure instanceof RuntimeException ? (RuntimeException) failure : new CompletionException(failure);
+    }
+
+    /**
+     * Pass a failure to an error handler, and an exception the error handler throws to the uncaught exception handler
+     * of the current thread
+     *
+     * @param failure      The failure
+     * @param errorHandler The error handler
+     */
+    static void report(Throwable failure, Consumer<RuntimeException> errorHandler) {
+        try {
+            errorHandler.accept(asRuntimeException(failure));
+        } catch (Throwable e) {
+            uncaught(e);
+        }
+    }
+
+    /**
+     * Pass a failure to the uncaught exception handler of the current thread, which is what the error handlers do
+     * unless replaced
+     *
+     * @param failure The failure
+     */
+    static void uncaught(Throwable failure) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * The outcome of firing a trigger for an entity whose state is kept by the caller: how the trigger was handled, and
+ * the state the entity is in afterwards
+ *
+ * @param <S> The type used to represent the states
+ * @see StateMachineEngine#tryFire(Object, Object, Object)
+ */
+public final class FireOutcome<S> {
+
+    private final FireResult result;
+    private final S state;
+
+    FireOutcome(FireResult result, S state) {
+        this.result = result;
+        this.state = state;
+    }
+
+    /**
+     * How the trigger was handled
+     *
+     * @return {@link FireResult#ACCEPTED}, {@link FireResult#IGNORED}, {@link FireResult#UNHANDLED} or
+     * {@link FireResult#GUARD_REJECTED}
+     */
+    public FireResult getResult() {
+        return result;
+    }
+
+    /**
+     * The state of the entity after the trigger was handled. The state it was fired in if the trigger was not
+     * permitted, or was ignored or handled by an internal transition.
+     *
+     * @return The state
+     */
+    public S getState() {
+        return state;
+    }
+
+    /**
+     * True if the trigger was accepted or ignored, see {@link FireResult#isHandled()}
+     *
+     * @return True if the trigger was handled
+     */
+    public boolean isHandled() {
+        return result.isHandled();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FireOutcome {{ Result = %s, State = %s }}", result, state);
+    }
+}
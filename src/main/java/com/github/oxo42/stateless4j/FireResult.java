@@ -0,0 +1,47 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * The outcome of {@link StateMachine#tryFire(Object)}, and of queueing a trigger in a mailbox
+ */
+public enum FireResult {
+
+    /**
+     * The trigger was handled by a transition or an internal transition
+     */
+    ACCEPTED,
+
+    /**
+     * The trigger was ignored in the current state
+     */
+    IGNORED,
+
+    /**
+     * No state in the current hierarchy is configured for the trigger
+     */
+    UNHANDLED,
+
+    /**
+     * The trigger is configured for the current state, but none of its guards are met
+     */
+    GUARD_REJECTED,
+
+    /**
+     * The trigger was fired during a transition in {@link FiringMode#QUEUED} mode, and will be fired once the
+     * transition has completed, or was queued in a mailbox
+     */
+    QUEUED,
+
+    /**
+     * The trigger was not queued because the bounded mailbox was full, see {@link MailboxPolicy}
+     */
+    REJECTED;
+
+    /**
+     * True if the trigger was accepted or ignored
+     *
+     * @return True if the trigger was handled
+     */
+    public boolean isHandled() {
+        return this == ACCEPTED || this == IGNORED;
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * How a {@link StateMachine} handles a trigger fired by one of its own actions
+ *
+ * @see StateMachine#setFiringMode(FiringMode)
+ */
+public enum FiringMode {
+
+    /**
+     * The trigger is fired at once, in the middle of the transition whose action fired it
+     */
+    IMMEDIATE,
+
+    /**
+     * The trigger is queued and fired once the current transition has completed, so every transition runs to
+     * completion and cascading triggers do not grow the stack. Firing a queued trigger reports
+     * {@link FireResult#QUEUED}; if it turns out to be unhandled when it is fired with {@link StateMachine#fire(Object)},
+     * the unhandled trigger action is called at that point. If an action throws, the triggers still queued are dropped.
+     */
+    QUEUED
+}
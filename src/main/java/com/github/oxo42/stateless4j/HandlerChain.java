@@ -0,0 +1,122 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.List;
+
+/**
+ * The trigger behaviours that may handle one trigger in one state, flattened over the superstate hierarchy.
+ * <p>
+ * Each link holds the behaviours a single state declares for the trigger; the next link holds those of the nearest
+ * superstate that declares any. A state that declares nothing for the trigger shares the chain of its superstate,
+ * so the compiled tables find the chain of any state with a single probe. Links are only followed when none of the
+ * guards of a nearer state are met, which keeps the precedence of {@link StateRepresentation#tryFindHandler}.
+ */
+final class HandlerChain<S, T, C> {
+
+    private final S state;
+    private final T trigger;
+    private final TriggerBehaviour<S, T, C>[] behaviours;
+    private final TriggerBehaviour<S, T, C> unconditional; // the only behaviour of this link, if it is unguarded
+    private final HandlerChain<S, T, C> inherited;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    HandlerChain(S state, T trigger, List<TriggerBehaviour<S, T, C>> behaviours, HandlerChain<S, T, C> inherited) {
+        this.state = state;
+        this.trigger = trigger;
+        this.behaviours = behaviours.toArray(new TriggerBehaviour[0]);
+        this.unconditional = this.behaviours.length == 1 && this.behaviours[0].isUnguarded() ? this.behaviours[0] : null;
+        this.inherited = inherited;
+    }
+
+    /**
+     * The behaviours declared by the state of this link
+     *
+     * @return The behaviours, not to be modified
+     */
+    TriggerBehaviour<S, T, C>[] getBehaviours() {
+        return behaviours;
+    }
+
+    /**
+     * The behaviour that handles the trigger whatever the context, i.e. the only behaviour of the nearest state if it
+     * is unguarded
+     *
+     * @return The behaviour, or null if the handling behaviour depends on guards
+     */
+    TriggerBehaviour<S, T, C> getUnconditional() {
+        return unconditional;
+    }
+
+    /**
+     * The link of the nearest superstate that declares behaviours for the trigger
+     *
+     * @return The inherited link, or null
+     */
+    HandlerChain<S, T, C> getInherited() {
+        return inherited;
+    }
+
+    /**
+     * True if any behaviour of the chain is unguarded, so the trigger is always accepted
+     *
+     * @return True if the trigger is accepted whatever the context
+     */
+    boolean isUnconditional() {
+        for (HandlerChain<S, T, C> link = this; link != null; link = link.inherited) {
+            for (TriggerBehaviour<S, T, C> behaviour : link.behaviours) {
+                if (behaviour.isUnguarded()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if the guard of any behaviour of the chain is met
+     *
+     * @param context The context the guards are evaluated against
+     * @return True if the trigger is accepted
+     */
+    boolean isAnyGuardMet(C context) {
+        for (HandlerChain<S, T, C> link = this; link != null; link = link.inherited) {
+            for (TriggerBehaviour<S, T, C> behaviour : link.behaviours) {
+                if (behaviour.isGuardConditionMet(context)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the behaviour whose guard is met, starting with the nearest state
+     *
+     * @param context The context the guards are evaluated against
+     * @return The handling behaviour, or null if no guard is met
+     */
+    TriggerBehaviour<S, T, C> resolve(C context) {
+        for (HandlerChain<S, T, C> link = this; link != null; link = link.inherited) {
+            if (link.unconditional != null) {
+                return link.unconditional;
+            }
+            TriggerBehaviour<S, T, C> result = link.resolveLocal(context);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private TriggerBehaviour<S, T, C> resolveLocal(C context) {
+        TriggerBehaviour<S, T, C> result = null;
+        for (TriggerBehaviour<S, T, C> behaviour : behaviours) {
+            if (behaviour.isGuardConditionMet(context)) {
+                if (result != null) {
+                    throw StateRepresentation.multiplePermittedTransitions(state, trigger);
+                }
+                result = behaviour;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.function.Predicate;
+
+public class IgnoredTriggerBehaviour<S, T, C> extends InternalTriggerBehaviour<S, T, C> {
+
+  public IgnoredTriggerBehaviour(T trigger, Predicate<C> guard) {
+    super(trigger, guard, x -> {
+    });
+  }
+
+  @Override
+  public boolean isIgnored() {
+    return true;
+  }
+}
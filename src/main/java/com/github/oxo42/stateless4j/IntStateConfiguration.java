@@ -0,0 +1,280 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The configuration of one state of an {@link IntStateMachineConfig}, see {@link StateConfiguration}
+ *
+ * @param <C> The type of the context
+ */
+public class IntStateConfiguration<C> {
+
+    private static final String GUARD_IS_NULL = "guard must not be null";
+    private static final String ENTRY_ACTION_IS_NULL = "entryAction must not be null";
+    private static final String EXIT_ACTION_IS_NULL = "exitAction must not be null";
+    private static final String ACTION_IS_NULL = "action must not be null";
+
+    private final IntStateMachineConfig<C> config;
+    private final int state;
+
+    IntStateConfiguration(IntStateMachineConfig<C> config, int state) {
+        this.config = config;
+        this.state = state;
+    }
+
+    /**
+     * Accept the specified trigger and transition to the destination state
+     *
+     * @param trigger          The accepted trigger
+     * @param destinationState The state that the trigger will cause a transition to
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permit(int trigger, int destinationState) {
+        enforceNotIdentityTransition(destinationState);
+        return publicPermitIf(trigger, destinationState, TriggerBehaviour.noGuard(), c -> {
+        });
+    }
+
+    /**
+     * Accept the specified trigger and transition to the destination state.
+     * <p>
+     * Additionally a given action is performed when transitioning. This action will be called after
+     * the onExit action of the current state and before the onEntry action of
+     * the destination state.
+     *
+     * @param trigger          The accepted trigger
+     * @param destinationState The state that the trigger will cause a transition to
+     * @param action           The action to be performed "during" transition
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permit(int trigger, int destinationState, Consumer<C> action) {
+        enforceNotIdentityTransition(destinationState);
+        return publicPermitIf(trigger, destinationState, TriggerBehaviour.noGuard(), action);
+    }
+
+    /**
+     * Accept the specified trigger and transition to the destination state if guard is true
+     *
+     * @param trigger          The accepted trigger
+     * @param destinationState The state that the trigger will cause a transition to
+     * @param guard            Function that must return true in order for the trigger to be accepted
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permitIf(int trigger, int destinationState, Predicate<C> guard) {
+        enforceNotIdentityTransition(destinationState);
+        return publicPermitIf(trigger, destinationState, guard, c -> {
+        });
+    }
+
+    /**
+     * Accept the specified trigger and transition to the destination state if guard is true
+     * <p>
+     * Additionally a given action is performed when transitioning. This action will be called after
+     * the onExit action of the current state and before the onEntry action of
+     * the destination state.
+     *
+     * @param trigger          The accepted trigger
+     * @param destinationState The state that the trigger will cause a transition to
+     * @param guard            Function that must return true in order for the trigger to be accepted
+     * @param action           The action to be performed "during" transition
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permitIf(int trigger, int destinationState, Predicate<C> guard, Consumer<C> action) {
+        enforceNotIdentityTransition(destinationState);
+        return publicPermitIf(trigger, destinationState, guard, action);
+    }
+
+    /**
+     * Accept the specified trigger and transition to the destination state if guard true, otherwise ignore
+     *
+     * @param trigger          The accepted trigger
+     * @param destinationState The state that the trigger will cause a transition to
+     * @param guard            Function that must return true in order for the trigger to be accepted
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permitIfElseIgnore(int trigger, int destinationState, Predicate<C> guard) {
+        enforceNotIdentityTransition(destinationState);
+        ignoreIf(trigger, guard.negate());
+        return publicPermitIf(trigger, destinationState, guard, c -> {
+        });
+    }
+
+    /**
+     * Accept the specified trigger, execute action and stay in state
+     * <p>
+     * Applies to the current state only. No exit or entry actions will be
+     * executed and the state will not change. The only thing that happens is
+     * the execution of a given action.
+     *
+     * @param trigger The accepted trigger
+     * @param action  The action to be performed
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permitInternal(int trigger, Consumer<C> action) {
+        return permitInternalIf(trigger, TriggerBehaviour.noGuard(), action);
+    }
+
+    /**
+     * Accept the specified trigger, execute action and stay in state, if the guard returns true
+     *
+     * @param trigger The accepted trigger
+     * @param guard   Function that must return true in order for the trigger to be accepted
+     * @param action  The action to be performed
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permitInternalIf(int trigger, Predicate<C> guard, Consumer<C> action) {
+        Objects.requireNonNull(guard, GUARD_IS_NULL);
+        Objects.requireNonNull(action, ACTION_IS_NULL);
+        config.addTriggerBehaviour(state, IntTriggerBehaviour.internal(config.checkTrigger(trigger), guard, action));
+        return this;
+    }
+
+    /**
+     * Accept the specified trigger, execute exit actions and re-execute entry actions. Reentry behaves as though the
+     * configured state transitions to an identical sibling state
+     *
+     * @param trigger The accepted trigger
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permitReentry(int trigger) {
+        return publicPermitIf(trigger, state, TriggerBehaviour.noGuard(), c -> {
+        });
+    }
+
+    /**
+     * Accept the specified trigger, execute exit actions and re-execute entry actions. Reentry behaves as though the
+     * configured state transitions to an identical sibling state
+     * <p>
+     * Additionally a given action is performed when transitioning. This action will be called after
+     * the onExit action and before the onEntry action (of the re-entered state).
+     *
+     * @param trigger The accepted trigger
+     * @param action  The action to be performed "during" transition
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permitReentry(int trigger, Consumer<C> action) {
+        return publicPermitIf(trigger, state, TriggerBehaviour.noGuard(), action);
+    }
+
+    /**
+     * Accept the specified trigger, execute exit actions and re-execute entry actions, if the guard returns true
+     *
+     * @param trigger The accepted trigger
+     * @param guard   Function that must return true in order for the trigger to be accepted
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permitReentryIf(int trigger, Predicate<C> guard) {
+        return publicPermitIf(trigger, state, guard, c -> {
+        });
+    }
+
+    /**
+     * Accept the specified trigger, execute exit actions and re-execute entry actions, if the guard returns true
+     * <p>
+     * Additionally a given action is performed when transitioning. This action will be called after
+     * the onExit action and before the onEntry action (of the re-entered state).
+     *
+     * @param trigger The accepted trigger
+     * @param guard   Function that must return true in order for the trigger to be accepted
+     * @param action  The action to be performed "during" transition
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> permitReentryIf(int trigger, Predicate<C> guard, Consumer<C> action) {
+        return publicPermitIf(trigger, state, guard, action);
+    }
+
+    /**
+     * ignore the specified trigger when in the configured state
+     *
+     * @param trigger The trigger to ignore
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> ignore(int trigger) {
+        return ignoreIf(trigger, TriggerBehaviour.noGuard());
+    }
+
+    /**
+     * ignore the specified trigger when in the configured state, if the guard returns true
+     *
+     * @param trigger The trigger to ignore
+     * @param guard   Function that must return true in order for the trigger to be ignored
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> ignoreIf(int trigger, Predicate<C> guard) {
+        Objects.requireNonNull(guard, GUARD_IS_NULL);
+        config.addTriggerBehaviour(state, IntTriggerBehaviour.ignored(config.checkTrigger(trigger), guard));
+        return this;
+    }
+
+    /**
+     * Specify an action that will execute when transitioning into the configured state
+     *
+     * @param entryAction Action to execute
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> onEntry(Consumer<C> entryAction) {
+        Objects.requireNonNull(entryAction, ENTRY_ACTION_IS_NULL);
+        config.addEntryAction(state, IntStateMachineConfig.NONE, entryAction);
+        return this;
+    }
+
+    /**
+     * Specify an action that will execute when transitioning into the configured state
+     *
+     * @param trigger     The trigger by which the state must be entered in order for the action to execute
+     * @param entryAction Action to execute
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> onEntryFrom(int trigger, Consumer<C> entryAction) {
+        Objects.requireNonNull(entryAction, ENTRY_ACTION_IS_NULL);
+        config.addEntryAction(state, config.checkTrigger(trigger), entryAction);
+        return this;
+    }
+
+    /**
+     * Specify an action that will execute when transitioning from the configured state
+     *
+     * @param exitAction Action to execute
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> onExit(Consumer<C> exitAction) {
+        Objects.requireNonNull(exitAction, EXIT_ACTION_IS_NULL);
+        config.addExitAction(state, exitAction);
+        return this;
+    }
+
+    /**
+     * Sets the superstate that the configured state is a substate of
+     * <p>
+     * Substates inherit the allowed transitions of their superstate.
+     * When entering directly into a substate from outside of the superstate,
+     * entry actions for the superstate are executed.
+     * Likewise when leaving from the substate to outside the supserstate,
+     * exit actions for the superstate will execute.
+     *
+     * @param superstate The superstate
+     * @return The receiver
+     */
+    public IntStateConfiguration<C> substateOf(int superstate) {
+        config.setSuperstate(state, config.checkState(superstate));
+        return this;
+    }
+
+    void enforceNotIdentityTransition(int destination) {
+        if (destination == state) {
+            throw new IllegalStateException(
+                "Permit() (and PermitIf()) require that the destination state is not equal to the source state. To accept a trigger without changing state, use either ignore(), permitInternal() or "
+                    + "permitReentry().");
+        }
+    }
+
+    IntStateConfiguration<C> publicPermitIf(int trigger, int destinationState, Predicate<C> guard, Consumer<C> action) {
+        Objects.requireNonNull(action, ACTION_IS_NULL);
+        Objects.requireNonNull(guard, GUARD_IS_NULL);
+        config.addTriggerBehaviour(state, IntTriggerBehaviour.transitioning(
+            config.checkTrigger(trigger), config.checkState(destinationState), guard, action));
+        return this;
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.IntAction2;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A {@link StateMachine} whose states and triggers are primitive ints, e.g. codes read off a binary protocol.
+ * <p>
+ * Behaves like {@link StateMachine}, but neither the state nor the trigger are ever boxed, and finding the handler of
+ * a trigger is an array lookup per state of the hierarchy.
+ *
+ * @param <C> The type of the context
+ */
+public class IntStateMachine<C> {
+
+    protected final IntStateMachineConfig<C> config;
+    protected final C context;
+    private final int initialState;
+    private int state;
+    private boolean isStarted = false;
+
+    protected IntAction2 unhandledTriggerAction = (state, trigger) -> {
+        throw new IllegalStateException(
+            String.format(
+                "No valid leaving transitions are permitted from state '%s' for trigger '%s'. Consider ignoring the trigger.",
+                state, trigger)
+        );
+    };
+
+    /**
+     * Construct a state machine
+     *
+     * @param initialState The initial state
+     * @param context      The context handed to guards and actions
+     * @param config       State machine configuration
+     */
+    public IntStateMachine(int initialState, C context, IntStateMachineConfig<C> config) {
+        Objects.requireNonNull(config, "config must not be null");
+        this.config = config;
+        this.context = context;
+        this.initialState = config.checkState(initialState);
+        this.state = initialState;
+    }
+
+    /**
+     * Fire initial transition into the initial state.
+     * All super-states are entered too.
+     *
+     * This method can be called only once, before state machine is used.
+     */
+    public void fireInitialTransition() {
+        if (isStarted || state != initialState) {
+            throw new IllegalStateException("Firing initial transition after state machine has been started");
+        }
+        isStarted = true;
+        config.enter(IntStateMachineConfig.NONE, state, IntStateMachineConfig.NONE, context);
+    }
+
+    public IntStateMachineConfig<C> configuration() {
+        return config;
+    }
+
+    public C getContext() {
+        return context;
+    }
+
+    /**
+     * The current state
+     *
+     * @return The current state
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * The currently-permissible trigger values
+     *
+     * @return The currently-permissible trigger values in ascending order
+     */
+    public int[] getPermittedTriggers() {
+        return config.getPermittedTriggers(state, context);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger. The target state is determined by the configuration
+     * of the current state. Actions associated with leaving the current state and entering the new one will be invoked
+     *
+     * @param trigger The trigger to fire
+     */
+    public void fire(int trigger) {
+        if (!tryFire(trigger).isHandled()) {
+            unhandledTriggerAction.doIt(state, trigger);
+        }
+    }
+
+    /**
+     * Fire the specified trigger like {@link #fire(int)}, but report a trigger that cannot be handled in the current
+     * state through the result instead of the unhandled trigger action. Triggers outside the range of the
+     * configuration are unhandled.
+     *
+     * @param trigger The trigger to fire
+     * @return How the trigger was handled
+     */
+    public FireResult tryFire(int trigger) {
+        isStarted = true;
+        if (!config.isTrigger(trigger)) {
+            return FireResult.UNHANDLED;
+        }
+
+        int source = state;
+        IntTriggerBehaviour<C> triggerBehaviour = config.tryFindHandler(source, trigger, context);
+        if (triggerBehaviour == null) {
+            return config.isConfiguredFor(source, trigger) ? FireResult.GUARD_REJECTED : FireResult.UNHANDLED;
+        }
+
+        if (triggerBehaviour.isInternal()) {
+            triggerBehaviour.performAction(context);
+            return triggerBehaviour.isIgnored() ? FireResult.IGNORED : FireResult.ACCEPTED;
+        }
+
+        int destination = triggerBehaviour.getDestination();
+        config.exit(source, destination, context);
+        triggerBehaviour.performAction(context);
+        state = destination;
+        config.enter(source, destination, trigger, context);
+        return FireResult.ACCEPTED;
+    }
+
+    /**
+     * Override the default behaviour of throwing an exception when an unhandled trigger is fired
+     *
+     * @param unhandledTriggerAction An action to call with the state and the trigger when an unhandled trigger is fired
+     */
+    public void onUnhandledTrigger(IntAction2 unhandledTriggerAction) {
+        Objects.requireNonNull(unhandledTriggerAction, "unhandledTriggerAction must not be null");
+        this.unhandledTriggerAction = unhandledTriggerAction;
+    }
+
+    /**
+     * Determine if the state machine is in the supplied state
+     *
+     * @param state The state to test for
+     * @return True if the current state is equal to, or a substate of, the supplied state
+     */
+    public boolean isInState(int state) {
+        return config.isInState(this.state, state);
+    }
+
+    /**
+     * Returns true if {@code trigger} can be fired  in the current state
+     *
+     * @param trigger Trigger to test
+     * @return True if the trigger can be fired, false otherwise
+     */
+    public boolean canFire(int trigger) {
+        return config.isTrigger(trigger) && config.tryFindHandler(state, trigger, context) != null;
+    }
+
+    /**
+     * A human-readable representation of the state machine
+     *
+     * @return A description of the current state and permitted triggers
+     */
+    @Override
+    public String toString() {
+        return String.format(
+            "IntStateMachine {{ State = %s, PermittedTriggers = {{ %s }}}}",
+            state,
+            Arrays.toString(getPermittedTriggers()).replaceAll("[\\[\\] ]", ""));
+    }
+}
@@ -0,0 +1,273 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The configuration of an {@link IntStateMachine}, whose states and triggers are the ints {@code 0 .. stateCount - 1}
+ * and {@code 0 .. triggerCount - 1}.
+ * <p>
+ * States are configured with the same vocabulary as {@link StateMachineConfig}, but everything is kept in arrays
+ * indexed by state, and by state and trigger, so firing a trigger neither boxes nor hashes.
+ *
+ * @param <C> The type of the context
+ */
+public class IntStateMachineConfig<C> {
+
+    /**
+     * Stands for no state, e.g. the superstate of a state at the top of the hierarchy
+     */
+    public static final int NONE = -1;
+
+    private final int stateCount;
+    private final int triggerCount;
+    private final int[] superstates;
+    private final IntTriggerBehaviour<C>[][] behaviours; // by state * triggerCount + trigger, null if not configured
+    private final Consumer<C>[][] entryActions;
+    private final int[][] entryTriggers; // trigger an entry action is restricted to, or NONE
+    private final Consumer<C>[][] exitActions;
+
+    /**
+     * Create a configuration for a fixed number of states and triggers
+     *
+     * @param stateCount   The number of states
+     * @param triggerCount The number of triggers
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public IntStateMachineConfig(int stateCount, int triggerCount) {
+        if (stateCount <= 0 || triggerCount <= 0) {
+            throw new IllegalArgumentException("stateCount and triggerCount must be positive");
+        }
+        this.stateCount = stateCount;
+        this.triggerCount = triggerCount;
+        this.superstates = new int[stateCount];
+        Arrays.fill(superstates, NONE);
+        this.behaviours = new IntTriggerBehaviour[stateCount * triggerCount][];
+        this.entryActions = new Consumer[stateCount][0];
+        this.entryTriggers = new int[stateCount][0];
+        this.exitActions = new Consumer[stateCount][0];
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public int getTriggerCount() {
+        return triggerCount;
+    }
+
+    /**
+     * Begin configuration of the entry/exit actions and allowed transitions
+     * when the state machine is in a particular state
+     *
+     * @param state The state to configure
+     * @return A configuration object through which the state can be configured
+     */
+    public IntStateConfiguration<C> configure(int state) {
+        return new IntStateConfiguration<>(this, checkState(state));
+    }
+
+    /**
+     * The superstate of a state
+     *
+     * @param state The state
+     * @return The superstate, or {@link #NONE}
+     */
+    public int getSuperstate(int state) {
+        return superstates[checkState(state)];
+    }
+
+    int checkState(int state) {
+        if (state < 0 || state >= stateCount) {
+            throw new IllegalArgumentException("State " + state + " is not between 0 and " + (stateCount - 1));
+        }
+        return state;
+    }
+
+    int checkTrigger(int trigger) {
+        if (!isTrigger(trigger)) {
+            throw new IllegalArgumentException("Trigger " + trigger + " is not between 0 and " + (triggerCount - 1));
+        }
+        return trigger;
+    }
+
+    boolean isTrigger(int trigger) {
+        return trigger >= 0 && trigger < triggerCount;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void addTriggerBehaviour(int state, IntTriggerBehaviour<C> behaviour) {
+        int slot = state * triggerCount + behaviour.getTrigger();
+        IntTriggerBehaviour<C>[] configured = behaviours[slot];
+        int length = configured == null ? 0 : configured.length;
+        IntTriggerBehaviour<C>[] added = new IntTriggerBehaviour[length + 1];
+        if (configured != null) {
+            System.arraycopy(configured, 0, added, 0, length);
+        }
+        added[length] = behaviour;
+        behaviours[slot] = added;
+    }
+
+    void addEntryAction(int state, int trigger, Consumer<C> action) {
+        int length = entryActions[state].length;
+        entryActions[state] = Arrays.copyOf(entryActions[state], length + 1);
+        entryActions[state][length] = action;
+        entryTriggers[state] = Arrays.copyOf(entryTriggers[state], length + 1);
+        entryTriggers[state][length] = trigger;
+    }
+
+    void addExitAction(int state, Consumer<C> action) {
+        int length = exitActions[state].length;
+        exitActions[state] = Arrays.copyOf(exitActions[state], length + 1);
+        exitActions[state][length] = action;
+    }
+
+    void setSuperstate(int state, int superstate) {
+        for (int s = superstate; s != NONE; s = superstates[s]) {
+            if (s == state) {
+                throw new IllegalStateException("State '" + state + "' is its own superstate");
+            }
+        }
+        superstates[state] = superstate;
+    }
+
+    /**
+     * Determine if a state is equal to, or a substate of, another state
+     *
+     * @param current The state to test, may be {@link #NONE}
+     * @param state   The state to test for
+     * @return True if {@code current} is {@code state} or one of its substates
+     */
+    public boolean isInState(int current, int state) {
+        for (int s = current; s != NONE; s = superstates[s]) {
+            if (s == state) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the behaviour handling a trigger, starting with the state itself and moving up to its superstates
+     *
+     * @return The behaviour, or null if no guard is met
+     */
+    IntTriggerBehaviour<C> tryFindHandler(int state, int trigger, C context) {
+        for (int s = state; s != NONE; s = superstates[s]) {
+            IntTriggerBehaviour<C>[] possible = behaviours[s * triggerCount + trigger];
+            if (possible == null) {
+                continue;
+            }
+            if (possible.length == 1 && possible[0].isUnguarded()) {
+                return possible[0];
+            }
+            IntTriggerBehaviour<C> result = null;
+            for (IntTriggerBehaviour<C> behaviour : possible) {
+                if (behaviour.isGuardConditionMet(context)) {
+                    if (result != null) {
+                        throw StateRepresentation.multiplePermittedTransitions(s, trigger);
+                    }
+                    result = behaviour;
+                }
+            }
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    boolean isConfiguredFor(int state, int trigger) {
+        for (int s = state; s != NONE; s = superstates[s]) {
+            if (behaviours[s * triggerCount + trigger] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run the exit actions of a transition, from the source state up to, but excluding, the first superstate that
+     * also contains the destination
+     */
+    void exit(int source, int destination, C context) {
+        if (source == destination) {
+            executeExitActions(source, context);
+            return;
+        }
+        for (int s = source; s != NONE && !isInState(destination, s); s = superstates[s]) {
+            executeExitActions(s, context);
+        }
+    }
+
+    /**
+     * Run the entry actions of a transition, from the outermost superstate of the destination that does not contain
+     * the source down to the destination
+     */
+    void enter(int source, int destination, int trigger, C context) {
+        if (source == destination) {
+            executeEntryActions(destination, trigger, context);
+        } else {
+            enterUnlessIncluded(source, destination, trigger, context);
+        }
+    }
+
+    private void enterUnlessIncluded(int source, int state, int trigger, C context) {
+        if (!isInState(source, state)) {
+            int superstate = superstates[state];
+            if (superstate != NONE) {
+                enterUnlessIncluded(source, superstate, trigger, context);
+            }
+            executeEntryActions(state, trigger, context);
+        }
+    }
+
+    private void executeEntryActions(int state, int trigger, C context) {
+        Consumer<C>[] actions = entryActions[state];
+        int[] triggers = entryTriggers[state];
+        for (int i = 0; i < actions.length; i++) {
+            if (triggers[i] == NONE || (triggers[i] == trigger && trigger != NONE)) {
+                actions[i].accept(context);
+            }
+        }
+    }
+
+    private void executeExitActions(int state, C context) {
+        for (Consumer<C> action : exitActions[state]) {
+            action.accept(context);
+        }
+    }
+
+    /**
+     * The triggers whose guards are met in a state or one of its superstates
+     *
+     * @param state   The state
+     * @param context The context the guards are evaluated against
+     * @return The permitted triggers in ascending order
+     */
+    public int[] getPermittedTriggers(int state, C context) {
+        checkState(state);
+        int[] permitted = new int[triggerCount];
+        int count = 0;
+        for (int trigger = 0; trigger < triggerCount; trigger++) {
+            if (isPermitted(state, trigger, context)) {
+                permitted[count++] = trigger;
+            }
+        }
+        return Arrays.copyOf(permitted, count);
+    }
+
+    private boolean isPermitted(int state, int trigger, C context) {
+        for (int s = state; s != NONE; s = superstates[s]) {
+            IntTriggerBehaviour<C>[] possible = behaviours[s * triggerCount + trigger];
+            if (possible != null) {
+                for (IntTriggerBehaviour<C> behaviour : possible) {
+                    if (behaviour.isGuardConditionMet(context)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
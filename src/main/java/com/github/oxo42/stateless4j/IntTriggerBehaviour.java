@@ -0,0 +1,71 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A trigger behaviour of an {@link IntStateMachineConfig}: a transition to another state, an internal transition or
+ * an ignored trigger.
+ */
+final class IntTriggerBehaviour<C> {
+
+    private final int trigger;
+    private final int destination; // IntStateMachineConfig.NONE for internal transitions
+    private final Predicate<C> guard;
+    private final Consumer<C> action;
+    private final boolean ignored;
+
+    private IntTriggerBehaviour(int trigger, int destination, Predicate<C> guard, Consumer<C> action, boolean ignored) {
+        this.trigger = trigger;
+        this.destination = destination;
+        this.guard = guard;
+        this.action = action;
+        this.ignored = ignored;
+    }
+
+    static <C> IntTriggerBehaviour<C> transitioning(int trigger, int destination, Predicate<C> guard, Consumer<C> action) {
+        return new IntTriggerBehaviour<>(trigger, destination, guard, action, false);
+    }
+
+    static <C> IntTriggerBehaviour<C> internal(int trigger, Predicate<C> guard, Consumer<C> action) {
+        return new IntTriggerBehaviour<>(trigger, IntStateMachineConfig.NONE, guard, action, false);
+    }
+
+    static <C> IntTriggerBehaviour<C> ignored(int trigger, Predicate<C> guard) {
+        return new IntTriggerBehaviour<>(trigger, IntStateMachineConfig.NONE, guard, context -> {
+        }, true);
+    }
+
+    int getTrigger() {
+        return trigger;
+    }
+
+    /**
+     * The state transitioned to
+     *
+     * @return The destination state, or {@link IntStateMachineConfig#NONE} for internal transitions
+     */
+    int getDestination() {
+        return destination;
+    }
+
+    boolean isInternal() {
+        return destination == IntStateMachineConfig.NONE;
+    }
+
+    boolean isIgnored() {
+        return ignored;
+    }
+
+    boolean isUnguarded() {
+        return guard == TriggerBehaviour.noGuard();
+    }
+
+    boolean isGuardConditionMet(C context) {
+        return guard == TriggerBehaviour.noGuard() || guard.test(context);
+    }
+
+    void performAction(C context) {
+        action.accept(context);
+    }
+}
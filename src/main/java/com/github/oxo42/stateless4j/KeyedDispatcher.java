@@ -0,0 +1,370 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action3;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Handles the triggers of many keyed state machines on a fixed number of stripes, each run by a single thread.
+ * <p>
+ * All triggers dispatched for a key while earlier ones are still queued or running go to the same stripe, so the
+ * triggers of one machine are handled strictly in the order they were dispatched, while machines on different stripes
+ * run in parallel and no lock is shared between stripes. A key is routed to its home stripe, derived from its hash
+ * code, unless the home stripe is hot: when the home stripe has at least {@code rebalanceThreshold} triggers queued,
+ * the key goes to the least loaded stripe instead. A key only changes stripe once it is idle, i.e. all of its
+ * triggers have been handled, so rebalancing never reorders its triggers.
+ * <p>
+ * The handler is called on the stripe threads. {@link #forMachines(int, Function)} fires the triggers at one
+ * {@link StateMachine} per key, {@link #forEngine(int, StateMachineEngine, KeyedStateStore)} at a shared engine with
+ * the states kept in a {@link KeyedStateStore}. An exception thrown by the handler is passed to the error handler and
+ * the stripe goes on with its next trigger, as the drain of an {@link AsyncStateMachine} does. Interrupting a stripe
+ * thread does not stop it either, so every key keeps a live stripe until the dispatcher is closed.
+ * <p>
+ * {@link #close()} stops accepting triggers; the triggers already queued are still handled before the stripe threads
+ * stop.
+ * <p>
+ * The queue of every stripe is unbounded unless a capacity is given; a full queue applies its {@link MailboxPolicy},
+ * coalescing equal triggers for the same key, and the triggers it discards are counted.
+ *
+ * @param <K> The type of the keys of the machines
+ * @param <T> The type used to represent the triggers
+ */
+public final class KeyedDispatcher<K, T> implements AutoCloseable {
+
+    /**
+     * The home stripe depth from which idle keys are routed to the least loaded stripe, unless given otherwise
+     */
+    public static final int DEFAULT_REBALANCE_THRESHOLD = 1024;
+
+    private static final class Task<K, T> {
+        final K key;
+        final T trigger;
+
+        Task(K key, T trigger) {
+            this.key = key;
+            this.trigger = trigger;
+        }
+    }
+
+    // the stripe of a key and its triggers not yet handled; removed once none are left
+    private static final class Assignment {
+        final int stripe;
+        int pending;
+
+        Assignment(int stripe) {
+            this.stripe = stripe;
+        }
+    }
+
+    private final BiConsumer<K, T> handler;
+    private final int rebalanceThreshold;
+    private final BoundedMailbox<Task<K, T>>[] queues;
+    private final AtomicInteger[] depths;
+    private final Thread[] threads;
+    private final ConcurrentHashMap<K, Assignment> assignments = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private volatile Action3<K, T, RuntimeException> errorHandler = (key, trigger, e) -> Failures.uncaught(e);
+
+    /**
+     * Create a dispatcher with {@link #DEFAULT_REBALANCE_THRESHOLD} and starts its stripe threads
+     *
+     * @param stripes The number of stripes
+     * @param handler Handles a trigger of a key, called on the stripe thread of the key
+     */
+    public KeyedDispatcher(int stripes, BiConsumer<K, T> handler) {
+        this(stripes, DEFAULT_REBALANCE_THRESHOLD, runnable -> new Thread(runnable), handler);
+    }
+
+    /**
+     * Create a dispatcher with unbounded stripe queues and start its stripe threads
+     *
+     * @param stripes            The number of stripes
+     * @param rebalanceThreshold The home stripe depth from which idle keys are routed to the least loaded stripe,
+     *                           {@link Integer#MAX_VALUE} to always use the home stripe
+     * @param threadFactory      Creates the stripe threads
+     * @param handler            Handles a trigger of a key, called on the stripe thread of the key
+     */
+    public KeyedDispatcher(int stripes, int rebalanceThreshold, ThreadFactory threadFactory, BiConsumer<K, T> handler) {
+        this(stripes, rebalanceThreshold, Integer.MAX_VALUE, MailboxPolicy.BLOCK, threadFactory, handler);
+    }
+
+    /**
+     * Create a dispatcher and start its stripe threads
+     *
+     * @param stripes            The number of stripes
+     * @param rebalanceThreshold The home stripe depth from which idle keys are routed to the least loaded stripe,
+     *                           {@link Integer#MAX_VALUE} to always use the home stripe
+     * @param capacity           The number of triggers the queue of every stripe holds
+     * @param policy             What to do with a trigger dispatched to a full stripe queue
+     * @param threadFactory      Creates the stripe threads
+     * @param handler            Handles a trigger of a key, called on the stripe thread of the key
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public KeyedDispatcher(int stripes, int rebalanceThreshold, int capacity, MailboxPolicy policy,
+        ThreadFactory threadFactory, BiConsumer<K, T> handler) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive, was " + stripes);
+        }
+        if (rebalanceThreshold <= 0) {
+            throw new IllegalArgumentException("rebalanceThreshold must be positive, was " + rebalanceThreshold);
+        }
+        Objects.requireNonNull(threadFactory, "threadFactory must not be null");
+        Objects.requireNonNull(handler, "handler must not be null");
+        this.handler = handler;
+        this.rebalanceThreshold = rebalanceThreshold;
+        this.queues = new BoundedMailbox[stripes];
+        this.depths = new AtomicInteger[stripes];
+        this.threads = new Thread[stripes];
+        for (int i = 0; i < stripes; i++) {
+            queues[i] = new BoundedMailbox<>(capacity, policy, new StripeListener(i));
+            depths[i] = new AtomicInteger();
+        }
+        for (int i = 0; i < stripes; i++) {
+            int stripe = i;
+            threads[i] = threadFactory.newThread(() -> run(stripe));
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Create a dispatcher firing the triggers of every key at its own state machine
+     *
+     * @param stripes  The number of stripes
+     * @param machines Returns the machine of a key, called on the stripe thread of the key
+     * @param <K>      The type of the keys of the machines
+     * @param <S>      The type used to represent the states
+     * @param <T>      The type used to represent the triggers
+     * @param <C>      The type of the context
+     * @return The dispatcher
+     */
+    public static <K, S, T, C> KeyedDispatcher<K, T> forMachines(int stripes, Function<K, StateMachine<S, T, C>> machines) {
+        Objects.requireNonNull(machines, "machines must not be null");
+        return new KeyedDispatcher<>(stripes, (key, trigger) -> machines.apply(key).fire(trigger));
+    }
+
+    /**
+     * Create a dispatcher firing the triggers of every key with a shared engine, reading and writing the states in
+     * a store. A trigger that is not permitted throws an {@link IllegalStateException}, passed to the error handler.
+     *
+     * @param stripes The number of stripes
+     * @param engine  The engine
+     * @param store   Keeps the states and contexts of the keys, called on the stripe thread of the key
+     * @param <K>     The type of the keys of the machines
+     * @param <S>     The type used to represent the states
+     * @param <T>     The type used to represent the triggers
+     * @param <C>     The type of the context
+     * @return The dispatcher
+     */
+    public static <K, S, T, C> KeyedDispatcher<K, T> forEngine(int stripes, StateMachineEngine<S, T, C> engine,
+        KeyedStateStore<K, S, C> store) {
+        Objects.requireNonNull(engine, "engine must not be null");
+        Objects.requireNonNull(store, "store must not be null");
+        return new KeyedDispatcher<>(stripes, (key, trigger) -> {
+            S current = store.getState(key);
+            S next = engine.fire(current, trigger, store.getContext(key));
+            if (!next.equals(current)) {
+                store.setState(key, next);
+            }
+        });
+    }
+
+    /**
+     * Queue a trigger for a key. Returns at once, unless the stripe queue is full and its policy is
+     * {@link MailboxPolicy#BLOCK}.
+     *
+     * @param key     The key of the machine
+     * @param trigger The trigger
+     * @return {@link FireResult#QUEUED}, or {@link FireResult#REJECTED} if the stripe queue was full
+     * @throws IllegalStateException If the dispatcher is closed, or if the policy is {@link MailboxPolicy#BLOCK} and
+     *                               the handler dispatches to its own full stripe
+     */
+    public FireResult dispatch(K key, T trigger) {
+        Objects.requireNonNull(key, "key must not be null");
+        if (closed) {
+            throw new IllegalStateException("Dispatching a trigger after the dispatcher was closed");
+        }
+        Assignment assignment = assignments.compute(key, (k, existing) -> {
+            Assignment result = existing == null ? new Assignment(chooseStripe(k)) : existing;
+            result.pending++;
+            return result;
+        });
+        int stripe = assignment.stripe;
+        depths[stripe].incrementAndGet();
+        try {
+            return queues[stripe].offer(new Task<>(key, trigger), Thread.currentThread() != threads[stripe]);
+        } catch (RuntimeException e) {
+            completed(key, stripe);
+            throw e;
+        }
+    }
+
+    private void completed(K key, int stripe) {
+        assignments.computeIfPresent(key, (k, assignment) -> --assignment.pending == 0 ? null : assignment);
+        depths[stripe].decrementAndGet();
+    }
+
+    private final class StripeListener implements BoundedMailbox.Listener<Task<K, T>> {
+
+        private final int stripe;
+
+        StripeListener(int stripe) {
+            this.stripe = stripe;
+        }
+
+        @Override
+        public boolean coalesce(Task<K, T> queued, Task<K, T> offered) {
+            return queued.key.equals(offered.key) && Objects.equals(queued.trigger, offered.trigger);
+        }
+
+        @Override
+        public void discarded(Task<K, T> task, MailboxPolicy reason) {
+            completed(task.key, stripe);
+        }
+    }
+
+    private int chooseStripe(K key) {
+        int hash = key.hashCode();
+        int home = Math.floorMod(hash ^ (hash >>> 16), queues.length);
+        if (depths[home].get() < rebalanceThreshold) {
+            return home;
+        }
+        int least = home;
+        for (int i = 0; i < depths.length; i++) {
+            if (depths[i].get() < depths[least].get()) {
+                least = i;
+            }
+        }
+        return least;
+    }
+
+    private void run(int stripe) {
+        BoundedMailbox<Task<K, T>> queue = queues[stripe];
+        while (true) {
+            Task<K, T> task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                // the keys of the stripe keep being routed to it, so it only stops once closed and drained
+                continue;
+            }
+            if (task == null) {
+                return;
+            }
+            try {
+                handler.accept(task.key, task.trigger);
+            } catch (RuntimeException | Error e) {
+                Failures.report(e, failure -> errorHandler.doIt(task.key, task.trigger, failure));
+            } finally {
+                completed(task.key, stripe);
+            }
+        }
+    }
+
+    /**
+     * Replace the handler of exceptions thrown while handling a trigger, which by default passes them to the
+     * uncaught exception handler of the stripe thread
+     *
+     * @param errorHandler Called with the key, the trigger and the exception, on the stripe thread. An exception it
+     *                     throws is passed to the uncaught exception handler of the thread.
+     */
+    public void onError(Action3<K, T, RuntimeException> errorHandler) {
+        Objects.requireNonNull(errorHandler, "errorHandler must not be null");
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * The number of stripes
+     *
+     * @return The number of stripes
+     */
+    public int getStripeCount() {
+        return queues.length;
+    }
+
+    /**
+     * The number of triggers queued on, or being handled by, a stripe
+     *
+     * @param stripe The stripe, from 0 to {@link #getStripeCount()} - 1
+     * @return The depth of the stripe
+     */
+    public int getQueueDepth(int stripe) {
+        return depths[stripe].get();
+    }
+
+    /**
+     * The number of triggers the full stripe queues rejected so far
+     *
+     * @return The number of rejected triggers
+     */
+    public long getRejectedTriggers() {
+        long rejected = 0;
+        for (BoundedMailbox<Task<K, T>> queue : queues) {
+            rejected += queue.getRejected();
+        }
+        return rejected;
+    }
+
+    /**
+     * The number of queued triggers the full stripe queues dropped for newer ones so far, see
+     * {@link MailboxPolicy#DROP_OLDEST}
+     *
+     * @return The number of dropped triggers
+     */
+    public long getDroppedTriggers() {
+        long dropped = 0;
+        for (BoundedMailbox<Task<K, T>> queue : queues) {
+            dropped += queue.getDropped();
+        }
+        return dropped;
+    }
+
+    /**
+     * The number of triggers the full stripe queues merged into equal queued triggers for the same key so far, see
+     * {@link MailboxPolicy#COALESCE}
+     *
+     * @return The number of coalesced triggers
+     */
+    public long getCoalescedTriggers() {
+        long coalesced = 0;
+        for (BoundedMailbox<Task<K, T>> queue : queues) {
+            coalesced += queue.getCoalesced();
+        }
+        return coalesced;
+    }
+
+    /**
+     * The stripe the triggers of a key currently go to
+     *
+     * @param key The key of the machine
+     * @return The stripe, or -1 if the key is idle and its next trigger will choose a stripe
+     */
+    public int getStripe(K key) {
+        Assignment assignment = assignments.get(key);
+        return assignment == null ? -1 : assignment.stripe;
+    }
+
+    /**
+     * Stop accepting triggers, and wait for the stripe threads to handle those already queued and stop. If the calling
+     * thread is interrupted while waiting, it returns at once with its interrupt flag set, and the stripe threads go
+     * on handling the queued triggers in the background.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (BoundedMailbox<Task<K, T>> queue : queues) {
+            queue.close();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
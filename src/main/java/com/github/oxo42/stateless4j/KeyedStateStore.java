@@ -0,0 +1,37 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * Where the states and contexts of keyed entities are kept, e.g. a map, a cache or a database table, for firing their
+ * triggers with a shared {@link StateMachineEngine}
+ *
+ * @param <K> The type of the keys of the entities
+ * @param <S> The type used to represent the states
+ * @param <C> The type of the context
+ * @see KeyedDispatcher#forEngine(int, StateMachineEngine, KeyedStateStore)
+ */
+public interface KeyedStateStore<K, S, C> {
+
+    /**
+     * The current state of an entity
+     *
+     * @param key The key of the entity
+     * @return The state
+     */
+    S getState(K key);
+
+    /**
+     * Store the new state of an entity. Only called when the state changed.
+     *
+     * @param key   The key of the entity
+     * @param state The state
+     */
+    void setState(K key, S state);
+
+    /**
+     * The context of an entity, which its guards and actions are called with
+     *
+     * @param key The key of the entity
+     * @return The context
+     */
+    C getContext(K key);
+}
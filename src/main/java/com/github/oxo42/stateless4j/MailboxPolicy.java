@@ -0,0 +1,32 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * What a bounded mailbox does with a trigger offered while it is full
+ *
+ * @see AsyncStateMachine#AsyncStateMachine(StateMachine, java.util.concurrent.Executor, int, int, MailboxPolicy)
+ * @see KeyedDispatcher#KeyedDispatcher(int, int, int, MailboxPolicy, java.util.concurrent.ThreadFactory, java.util.function.BiConsumer)
+ */
+public enum MailboxPolicy {
+
+    /**
+     * The producer waits until a trigger has been taken from the mailbox. If it is interrupted while waiting, the
+     * trigger is rejected and the interrupt status is kept.
+     */
+    BLOCK,
+
+    /**
+     * The trigger is not queued and firing it reports {@link FireResult#REJECTED}
+     */
+    REJECT,
+
+    /**
+     * The oldest queued trigger is discarded to make room for the new one
+     */
+    DROP_OLDEST,
+
+    /**
+     * If an equal trigger for the same machine is already queued, the new one is merged into it and is fired at the
+     * position of the queued one; otherwise the trigger is rejected
+     */
+    COALESCE
+}
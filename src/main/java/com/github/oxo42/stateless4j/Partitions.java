@@ -0,0 +1,73 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Splits work into partitions run as separate tasks of an executor, for the parallel batches of
+ * {@link StateMachineFleet} and the parallel replays of {@link TriggerLogReplay}
+ */
+final class Partitions {
+
+    private Partitions() {
+    }
+
+    /**
+     * The number of partitions to split work into: a few per thread of the executor, which even out partitions with
+     * more work, but none smaller than {@code minSize}
+     *
+     * @param executor The executor running the partitions
+     * @param length   The number of items of work
+     * @param minSize  The smallest number of items worth a partition of its own
+     * @return The number of partitions, at least 1
+     */
+    static int count(Executor executor, int length, int minSize) {
+        int parallelism = executor instanceof ForkJoinPool
+            ? ((ForkJoinPool) executor).getParallelism()
+            : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(parallelism * 4, length / minSize));
+    }
+
+    /**
+     * Run every partition as a task of the executor and wait for all of them. If a task fails, the others still run
+     * to completion and the first failure is rethrown afterwards.
+     *
+     * @param partitions The number of partitions
+     * @param executor   The executor running the partitions
+     * @param task       Runs a partition, given its index, and returns a count
+     * @return The sum of the counts of the partitions
+     */
+    static int runAll(int partitions, Executor executor, IntUnaryOperator task) {
+        List<CompletableFuture<Integer>> tasks = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            int partition = p;
+            tasks.add(CompletableFuture.supplyAsync(() -> task.applyAsInt(partition), executor));
+        }
+        int sum = 0;
+        Throwable failure = null;
+        for (CompletableFuture<Integer> future : tasks) {
+            try {
+                sum += future.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() == null ? e : e.getCause();
+                }
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new CompletionException(failure);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A state machine fired by a single thread and read by any number of threads.
+ * <p>
+ * Only one thread, e.g. an event loop, may fire triggers. Once a transition has completed, including its entry
+ * actions, the writer publishes an immutable {@link StateSnapshot} through a volatile field. {@link #getState()},
+ * {@link #isInState(Object)}, {@link #getPermittedTriggers()} and {@link #canFire(Object)} read the last published
+ * snapshot, so other threads never take a lock and never see a state whose transition is still between its exit and
+ * entry actions. A snapshot can also be taken with {@link #getSnapshot()} to read the state and its version
+ * consistently. While the writer is firing a trigger, the same methods called on the writer thread, e.g. from an
+ * action, read the current state instead, like those of a {@link StateMachine}; the snapshot is only published once
+ * the transition has completed.
+ * <p>
+ * The configuration is compiled when the machine is created, and can no longer be changed. {@link #canFire(Object)}
+ * and {@link #getPermittedTriggers()} evaluate guards on the calling thread, so reading them from other threads is
+ * only safe if the guards only read data that is safely published; for states without guards neither reads the
+ * context.
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ * @param <C> The type of the context
+ */
+public class SingleWriterStateMachine<S, T, C> extends StateMachine<S, T, C> {
+
+    private final CompiledStateMachineConfig<S, T, C> compiled;
+    private volatile StateSnapshot<S, T, C> snapshot;
+    // the thread firing a trigger, or null; only the writer sets it, and only ever to itself, so a reader may see a
+    // stale value but never its own thread
+    private Thread writer;
+
+    /**
+     * Construct a state machine. The configuration is compiled, and can no longer be changed.
+     *
+     * @param initialState The initial state
+     * @param context      The context
+     * @param config       State machine configuration
+     */
+    public SingleWriterStateMachine(S initialState, C context, StateMachineConfig<S, T, C> config) {
+        super(initialState, context, config);
+        this.compiled = config.compile();
+        this.snapshot = new StateSnapshot<>(initialState, compiled, 0);
+    }
+
+    @Override
+    public void fireInitialTransition() {
+        Thread previous = writer;
+        writer = Thread.currentThread();
+        try {
+            super.fireInitialTransition();
+        } finally {
+            writer = previous;
+        }
+    }
+
+    @Override
+    protected void publicFire(T trigger) {
+        Thread previous = writer;
+        writer = Thread.currentThread();
+        try {
+            super.publicFire(trigger);
+        } finally {
+            writer = previous;
+        }
+    }
+
+    @Override
+    protected FireResult publicTryFire(T trigger) {
+        Thread previous = writer;
+        writer = Thread.currentThread();
+        try {
+            return super.publicTryFire(trigger);
+        } finally {
+            writer = previous;
+        }
+    }
+
+    @Override
+    CompletableFuture<FireResult> fireStaged(T trigger, boolean reportUnhandled, Executor executor) {
+        Thread previous = writer;
+        writer = Thread.currentThread();
+        try {
+            // the actions following an asynchronous one run on the executor, which becomes the writer while they do
+            return super.fireStaged(trigger, reportUnhandled, task -> executor.execute(() -> {
+                Thread resumed = writer;
+                writer = Thread.currentThread();
+                try {
+                    task.run();
+                } finally {
+                    writer = resumed;
+                }
+            }));
+        } finally {
+            writer = previous;
+        }
+    }
+
+    @Override
+    void transitionCompleted(S destination) {
+        StateSnapshot<S, T, C> last = snapshot;
+        snapshot = new StateSnapshot<>(destination, compiled, last.getVersion() + 1);
+    }
+
+    /**
+     * The state to read: the current one on the writer thread while it is firing, the published one otherwise
+     */
+    private S readState() {
+        return writer == Thread.currentThread() ? super.getState() : snapshot.getState();
+    }
+
+    /**
+     * The last published snapshot
+     *
+     * @return The snapshot
+     */
+    public StateSnapshot<S, T, C> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The state of the last published snapshot, or the current state when called by the writer while it is firing
+     *
+     * @return The current state
+     */
+    @Override
+    public S getState() {
+        return readState();
+    }
+
+    @Override
+    public List<T> getPermittedTriggers() {
+        return compiled.getPermittedTriggers(readState(), context);
+    }
+
+    @Override
+    public boolean isInState(S state) {
+        return compiled.isInState(readState(), state);
+    }
+
+    @Override
+    public boolean canFire(T trigger) {
+        return compiled.tryFindHandler(readState(), trigger, context) != null;
+    }
+}
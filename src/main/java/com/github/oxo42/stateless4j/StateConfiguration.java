@@ -1,6 +1,8 @@
 package com.github.oxo42.stateless4j;
 
 import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -13,6 +15,8 @@ public class StateConfiguration<S, T, C> {
     private static final String EXIT_ACTION_IS_NULL = "exitAction must not be null";
     private static final String ACTION_IS_NULL = "action must not be null";
     private static final String TRIGGER_IS_NULL = "trigger must not be null";
+    private static final String UNIT_IS_NULL = "unit must not be null";
+    private static final String FAILURE_POLICY_IS_NULL = "failurePolicy must not be null";
     private static final String DESTINATION_STATE_SELECTOR_IS_NULL = "destinationStateSelector must not be null";
 
     private final StateRepresentation<S, T, C> representation;
@@ -54,6 +58,43 @@ public class StateConfiguration<S, T, C> {
         return publicPermit(trigger, destinationState, action);
     }
 
+    /**
+     * Accept the specified trigger and transition to the destination state, performing an asynchronous action when
+     * transitioning. An {@link AsyncStateMachine} waits for the returned stage without blocking, and only then
+     * changes the state; other state machines block until it completes.
+     *
+     * @param trigger          The accepted trigger
+     * @param destinationState The state that the trigger will cause a transition to
+     * @param action           The action to be performed, returning a stage that completes when the action has
+     * @return The receiver
+     */
+    public StateConfiguration<S, T, C> permitAsync(T trigger, S destinationState,
+        final Function<C, ? extends CompletionStage<?>> action) {
+        return permitAsync(trigger, destinationState, action, 0, TimeUnit.MILLISECONDS, AsyncFailurePolicy.ABORT);
+    }
+
+    /**
+     * Accept the specified trigger and transition to the destination state, performing an asynchronous action when
+     * transitioning, see {@link #permitAsync(Object, Object, Function)}
+     *
+     * @param trigger          The accepted trigger
+     * @param destinationState The state that the trigger will cause a transition to
+     * @param action           The action to be performed, returning a stage that completes when the action has
+     * @param timeout          The time after which the action fails if it has not completed, 0 for no timeout
+     * @param unit             The unit of the timeout
+     * @param failurePolicy    What happens to the transition if the action fails or times out
+     * @return The receiver
+     */
+    public StateConfiguration<S, T, C> permitAsync(T trigger, S destinationState,
+        final Function<C, ? extends CompletionStage<?>> action, long timeout, TimeUnit unit,
+        AsyncFailurePolicy failurePolicy) {
+        Objects.requireNonNull(action, ACTION_IS_NULL);
+        Objects.requireNonNull(unit, UNIT_IS_NULL);
+        Objects.requireNonNull(failurePolicy, FAILURE_POLICY_IS_NULL);
+        enforceNotIdentityTransition(destinationState);
+        return publicPermit(trigger, destinationState, new AsyncAction<S, T, C>(action, timeout, unit, failurePolicy));
+    }
+
     /**
      * Accept the specified trigger and transition to the destination state if guard is true
      *
@@ -130,7 +171,7 @@ public class StateConfiguration<S, T, C> {
      * @return The receiver
      */
     public StateConfiguration<S, T, C> permitInternal(T trigger, Consumer<C> action) {
-        return permitInternalIf(trigger, x -> true, action);
+        return permitInternalIf(trigger, TriggerBehaviour.noGuard(), action);
     }
 
     /**
@@ -229,7 +270,7 @@ public class StateConfiguration<S, T, C> {
      * @return The receiver
      */
     public StateConfiguration<S, T, C> ignore(T trigger) {
-        return ignoreIf(trigger, x -> true);
+        return ignoreIf(trigger, TriggerBehaviour.noGuard());
     }
 
     /**
@@ -241,8 +282,7 @@ public class StateConfiguration<S, T, C> {
      */
     public StateConfiguration<S, T, C> ignoreIf(T trigger, Predicate<C> guard) {
         Objects.requireNonNull(guard, GUARD_IS_NULL);
-        representation.addTriggerBehaviour(new InternalTriggerBehaviour<>(trigger, guard, x -> {
-        }));
+        representation.addTriggerBehaviour(new IgnoredTriggerBehaviour<>(trigger, guard));
         return this;
     }
 
@@ -269,6 +309,37 @@ public class StateConfiguration<S, T, C> {
         return this;
     }
 
+    /**
+     * Specify an asynchronous action that will execute when transitioning into the configured state. An
+     * {@link AsyncStateMachine} waits for the returned stage without blocking before running the next action; other
+     * state machines block until it completes.
+     *
+     * @param entryAction Action to execute, returning a stage that completes when the action has
+     * @return The receiver
+     */
+    public StateConfiguration<S, T, C> onEntryAsync(final Function<C, ? extends CompletionStage<?>> entryAction) {
+        return onEntryAsync(entryAction, 0, TimeUnit.MILLISECONDS, AsyncFailurePolicy.ABORT);
+    }
+
+    /**
+     * Specify an asynchronous action that will execute when transitioning into the configured state, see
+     * {@link #onEntryAsync(Function)}
+     *
+     * @param entryAction   Action to execute, returning a stage that completes when the action has
+     * @param timeout       The time after which the action fails if it has not completed, 0 for no timeout
+     * @param unit          The unit of the timeout
+     * @param failurePolicy What happens to the transition if the action fails or times out
+     * @return The receiver
+     */
+    public StateConfiguration<S, T, C> onEntryAsync(final Function<C, ? extends CompletionStage<?>> entryAction,
+        long timeout, TimeUnit unit, AsyncFailurePolicy failurePolicy) {
+        Objects.requireNonNull(entryAction, ENTRY_ACTION_IS_NULL);
+        Objects.requireNonNull(unit, UNIT_IS_NULL);
+        Objects.requireNonNull(failurePolicy, FAILURE_POLICY_IS_NULL);
+        representation.addEntryAction(new AsyncAction<>(entryAction, timeout, unit, failurePolicy));
+        return this;
+    }
+
     /**
      * Specify an action that will execute when transitioning into the configured state
      *
@@ -317,6 +388,37 @@ public class StateConfiguration<S, T, C> {
         return this;
     }
 
+    /**
+     * Specify an asynchronous action that will execute when transitioning from the configured state. An
+     * {@link AsyncStateMachine} waits for the returned stage without blocking before running the next action; other
+     * state machines block until it completes.
+     *
+     * @param exitAction Action to execute, returning a stage that completes when the action has
+     * @return The receiver
+     */
+    public StateConfiguration<S, T, C> onExitAsync(final Function<C, ? extends CompletionStage<?>> exitAction) {
+        return onExitAsync(exitAction, 0, TimeUnit.MILLISECONDS, AsyncFailurePolicy.ABORT);
+    }
+
+    /**
+     * Specify an asynchronous action that will execute when transitioning from the configured state, see
+     * {@link #onExitAsync(Function)}
+     *
+     * @param exitAction    Action to execute, returning a stage that completes when the action has
+     * @param timeout       The time after which the action fails if it has not completed, 0 for no timeout
+     * @param unit          The unit of the timeout
+     * @param failurePolicy What happens to the transition if the action fails or times out
+     * @return The receiver
+     */
+    public StateConfiguration<S, T, C> onExitAsync(final Function<C, ? extends CompletionStage<?>> exitAction,
+        long timeout, TimeUnit unit, AsyncFailurePolicy failurePolicy) {
+        Objects.requireNonNull(exitAction, EXIT_ACTION_IS_NULL);
+        Objects.requireNonNull(unit, UNIT_IS_NULL);
+        Objects.requireNonNull(failurePolicy, FAILURE_POLICY_IS_NULL);
+        representation.addExitAction(new AsyncAction<>(exitAction, timeout, unit, failurePolicy));
+        return this;
+    }
+
     /**
      * Sets the superstate that the configured state is a substate of
      * <p>
@@ -404,12 +506,12 @@ public class StateConfiguration<S, T, C> {
     }
 
     StateConfiguration<S, T, C> publicPermit(T trigger, S destinationState) {
-        return publicPermitIf(trigger, destinationState, x -> true, x -> {
+        return publicPermitIf(trigger, destinationState, TriggerBehaviour.noGuard(), x -> {
         });
     }
 
     StateConfiguration<S, T, C> publicPermit(T trigger, S destinationState, Consumer<C> action) {
-        return publicPermitIf(trigger, destinationState, x -> true, action);
+        return publicPermitIf(trigger, destinationState, TriggerBehaviour.noGuard(), action);
     }
 
     StateConfiguration<S, T, C> publicPermitIf(T trigger, S destinationState, Predicate<C> guard) {
@@ -2,8 +2,11 @@ package com.github.oxo42.stateless4j;
 
 import com.github.oxo42.stateless4j.delegates.Trace;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -16,6 +19,8 @@ import java.util.function.Supplier;
  */
 public class StateMachine<S, T, C> {
 
+    private static final int INITIAL_QUEUE_CAPACITY = 8;
+
     protected final StateMachineConfig<S, T, C> config;
     protected final Supplier<S> stateAccessor;
     protected final Consumer<S> stateMutator;
@@ -24,6 +29,14 @@ public class StateMachine<S, T, C> {
     private Trace<S, T> trace = null;
     private boolean isStarted = false;
     private S initialState;
+    private StateRepresentation<S, T, C> currentRepresentation; // representation of the last state seen, see representationOf
+    private boolean unconfiguredRepresentation; // currentRepresentation is a stand-in, the state may be configured later
+    private FiringMode firingMode = FiringMode.IMMEDIATE;
+    private boolean firing; // a trigger is being fired in queued mode
+    private Object[] queuedTriggers; // ring queue of the triggers fired during a transition in queued mode
+    private boolean[] queuedReports; // whether the unhandled trigger action applies to the queued trigger
+    private int queueHead;
+    private int queueSize;
 
     protected BiConsumer<S, T> unhandledTriggerAction = (state, trigger) -> {
         throw new IllegalStateException(
@@ -80,13 +93,14 @@ public class StateMachine<S, T, C> {
      * This method can be called only once, before state machine is used.
      */
     public void fireInitialTransition() {
-        S currentState = getCurrentRepresentation().getUnderlyingState();
+        StateRepresentation<S, T, C> representation = getCurrentRepresentation();
+        S currentState = representation.getUnderlyingState();
         if (isStarted || !currentState.equals(initialState)) {
             throw new IllegalStateException("Firing initial transition after state machine has been started");
         }
         isStarted = true;
         Transition<S, T> initialTransition = new Transition<>(null, currentState, null);
-        getCurrentRepresentation().enter(initialTransition, context);
+        representation.enter(initialTransition, context);
     }
 
     public StateConfiguration<S, T, C> configure(S state) {
@@ -115,17 +129,54 @@ public class StateMachine<S, T, C> {
     }
 
     /**
-     * The currently-permissible trigger values
+     * The currently-permissible trigger values. When the configuration is compiled the returned list may be shared
+     * and cannot be modified.
      *
      * @return The currently-permissible trigger values
      */
     public List<T> getPermittedTriggers() {
+        CompiledStateMachineConfig<S, T, C> compiled = config.getCompiled();
+        if (compiled != null) {
+            return compiled.getPermittedTriggers(getState(), context);
+        }
         return getCurrentRepresentation().getPermittedTriggers(context);
     }
 
     StateRepresentation<S, T, C> getCurrentRepresentation() {
-        StateRepresentation<S, T, C> representation = config.getRepresentation(getState());
-        return representation == null ? new StateRepresentation<>(getState()) : representation;
+        return representationOf(stateAccessor.get());
+    }
+
+    /**
+     * Return the representation of a state. The last representation is cached, so as long as the state does not
+     * change neither the configuration nor the state storage are consulted again.
+     */
+    private StateRepresentation<S, T, C> representationOf(S state) {
+        StateRepresentation<S, T, C> representation = currentRepresentation;
+        if (representation == null || representation.getUnderlyingState() != state || unconfiguredRepresentation) {
+            CompiledStateMachineConfig<S, T, C> compiled = config.getCompiled();
+            if (compiled != null) {
+                representation = compiled.getRepresentation(state);
+                unconfiguredRepresentation = false;
+            } else {
+                StateRepresentation<S, T, C> configured = config.getRepresentation(state);
+                unconfiguredRepresentation = configured == null;
+                if (configured != null) {
+                    representation = configured;
+                } else if (representation == null || representation.getUnderlyingState() != state) {
+                    representation = new StateRepresentation<>(state);
+                }
+            }
+            currentRepresentation = representation;
+        }
+        return representation;
+    }
+
+    private TriggerBehaviour<S, T, C> tryFindHandler(StateRepresentation<S, T, C> representation, T trigger) {
+        CompiledStateMachineConfig<S, T, C> compiled = config.getCompiled();
+        if (compiled != null) {
+            return compiled.tryFindHandler(representation.getUnderlyingState(), trigger, context);
+        }
+        return representation.tryFindHandler(trigger, context);
     }
 
     /**
@@ -138,33 +189,259 @@ public class StateMachine<S, T, C> {
         publicFire(trigger);
     }
 
+    /**
+     * Fire the specified trigger like {@link #fire(Object)}, but report a trigger that cannot be handled in the
+     * current state through the result instead of the unhandled trigger action. Finding the handler and firing it
+     * take a single lookup, so there is no need to call {@link #canFire(Object)} first.
+     *
+     * @param trigger The trigger to fire
+     * @return How the trigger was handled
+     */
+    public FireResult tryFire(T trigger) {
+        return publicTryFire(trigger);
+    }
+
     protected void publicFire(T trigger) {
+        fire(trigger, true);
+    }
+
+    protected FireResult publicTryFire(T trigger) {
+        return fire(trigger, false);
+    }
+
+    private FireResult fire(T trigger, boolean reportUnhandled) {
+        if (firingMode != FiringMode.QUEUED) {
+            return fireNow(trigger, reportUnhandled);
+        }
+        if (firing) {
+            enqueue(trigger, reportUnhandled);
+            return FireResult.QUEUED;
+        }
+        firing = true;
+        try {
+            FireResult result = fireNow(trigger, reportUnhandled);
+            fireQueued();
+            return result;
+        } finally {
+            stopFiring();
+        }
+    }
+
+    private void fireQueued() {
+        while (queueSize > 0) {
+            @SuppressWarnings("unchecked")
+            T queued = (T) queuedTriggers[queueHead];
+            boolean report = queuedReports[queueHead];
+            queuedTriggers[queueHead] = null;
+            queueHead = (queueHead + 1) & (queuedTriggers.length - 1);
+            queueSize--;
+            fireNow(queued, report);
+        }
+    }
+
+    private void stopFiring() {
+        firing = false;
+        if (queueSize > 0) {
+            // an action threw, the triggers queued behind it are dropped
+            Arrays.fill(queuedTriggers, null);
+            queueHead = 0;
+            queueSize = 0;
+        }
+    }
+
+    private void enqueue(T trigger, boolean reportUnhandled) {
+        if (queuedTriggers == null) {
+            queuedTriggers = new Object[INITIAL_QUEUE_CAPACITY];
+            queuedReports = new boolean[INITIAL_QUEUE_CAPACITY];
+        } else if (queueSize == queuedTriggers.length) {
+            Object[] triggers = new Object[queueSize * 2];
+            boolean[] reports = new boolean[queueSize * 2];
+            for (int i = 0; i < queueSize; i++) {
+                int slot = (queueHead + i) & (queuedTriggers.length - 1);
+                triggers[i] = queuedTriggers[slot];
+                reports[i] = queuedReports[slot];
+            }
+            queuedTriggers = triggers;
+            queuedReports = reports;
+            queueHead = 0;
+        }
+        int tail = (queueHead + queueSize) & (queuedTriggers.length - 1);
+        queuedTriggers[tail] = trigger;
+        queuedReports[tail] = reportUnhandled;
+        queueSize++;
+    }
+
+    private FireResult fireNow(T trigger, boolean reportUnhandled) {
+        FireResult result = fireTransition(trigger);
+        if (reportUnhandled && !result.isHandled()) {
+            unhandledTriggerAction.accept(currentRepresentation.getUnderlyingState(), trigger);
+        }
+        return result;
+    }
+
+    private FireResult fireTransition(T trigger) {
         isStarted = true;
         if (trace != null) {
             trace.trigger(trigger);
         }
 
-        TriggerBehaviour<S, T, C> triggerBehaviour = getCurrentRepresentation().tryFindHandler(trigger, context);
+        StateRepresentation<S, T, C> representation = getCurrentRepresentation();
+        TriggerBehaviour<S, T, C> triggerBehaviour = tryFindHandler(representation, trigger);
         if (triggerBehaviour == null) {
-            unhandledTriggerAction.accept(getCurrentRepresentation().getUnderlyingState(), trigger);
-            return;
+            return isConfiguredFor(representation, trigger) ? FireResult.GUARD_REJECTED : FireResult.UNHANDLED;
         }
 
         if (triggerBehaviour.isInternal()) {
             triggerBehaviour.performAction(context);
+            return triggerBehaviour.isIgnored() ? FireResult.IGNORED : FireResult.ACCEPTED;
+        }
+
+        S source = representation.getUnderlyingState();
+        S destination = triggerBehaviour.transitionsTo(source, context);
+        CompiledStateMachineConfig<S, T, C> compiled = config.getCompiled();
+        if (compiled != null) {
+            TransitionPlan<S, T, C> plan = compiled.getTransitionPlan(source, destination);
+            Transition<S, T> transition = plan.transitionFor(source, destination, trigger);
+            plan.exit(transition, context);
+            triggerBehaviour.performAction(context);
+            setState(destination);
+            plan.enter(transition, context);
         } else {
-            S source = getState();
-            S destination = triggerBehaviour.transitionsTo(source, context);
             Transition<S, T> transition = new Transition<>(source, destination, trigger);
-
-            getCurrentRepresentation().exit(transition, context);
+            representation.exit(transition, context);
             triggerBehaviour.performAction(context);
             setState(destination);
-            getCurrentRepresentation().enter(transition, context);
-            if (trace != null) {
-                trace.transition(trigger, source, destination);
+            representationOf(destination).enter(transition, context);
+        }
+        if (trace != null) {
+            trace.transition(trigger, source, destination);
+        }
+        transitionCompleted(destination);
+        return FireResult.ACCEPTED;
+    }
+
+    /**
+     * Fire a trigger like {@link #fire(Object)}, but wait for asynchronous actions without blocking. The state is
+     * changed once the exit and transition actions have completed. In {@link FiringMode#QUEUED} mode, triggers
+     * fired by the actions are queued until the staged trigger has been handled, then fired one after another.
+     *
+     * @param trigger         The trigger to fire
+     * @param reportUnhandled True to call the unhandled trigger action if the trigger is not handled
+     * @param executor        Runs the actions following an asynchronous action that did not complete at once
+     * @return Completes once the trigger has been handled, exceptionally if an action failed
+     */
+    CompletableFuture<FireResult> fireStaged(T trigger, boolean reportUnhandled, Executor executor) {
+        if (firingMode != FiringMode.QUEUED) {
+            return fireStagedNow(trigger, reportUnhandled, executor);
+        }
+        if (firing) {
+            enqueue(trigger, reportUnhandled);
+            return CompletableFuture.completedFuture(FireResult.QUEUED);
+        }
+        firing = true;
+        CompletableFuture<FireResult> fired;
+        try {
+            fired = fireStagedNow(trigger, reportUnhandled, executor);
+        } catch (RuntimeException | Error e) {
+            stopFiring();
+            throw e;
+        }
+        // stop firing before the returned future completes, so that its dependents may fire again
+        return fired
+            .whenComplete((result, failure) -> {
+                if (failure != null) {
+                    stopFiring();
+                }
+            })
+            .thenApply(result -> {
+                try {
+                    fireQueued();
+                    return result;
+                } finally {
+                    stopFiring();
+                }
+            });
+    }
+
+    private CompletableFuture<FireResult> fireStagedNow(T trigger, boolean reportUnhandled, Executor executor) {
+        isStarted = true;
+        if (trace != null) {
+            trace.trigger(trigger);
+        }
+
+        StateRepresentation<S, T, C> representation = getCurrentRepresentation();
+        TriggerBehaviour<S, T, C> triggerBehaviour = tryFindHandler(representation, trigger);
+        if (triggerBehaviour == null) {
+            FireResult result = isConfiguredFor(representation, trigger) ? FireResult.GUARD_REJECTED : FireResult.UNHANDLED;
+            if (reportUnhandled) {
+                unhandledTriggerAction.accept(representation.getUnderlyingState(), trigger);
             }
+            return CompletableFuture.completedFuture(result);
+        }
+
+        if (triggerBehaviour.isInternal()) {
+            FireResult result = triggerBehaviour.isIgnored() ? FireResult.IGNORED : FireResult.ACCEPTED;
+            return triggerBehaviour.performActionStaged(context).thenApply(v -> result);
         }
+
+        S source = representation.getUnderlyingState();
+        S destination = triggerBehaviour.transitionsTo(source, context);
+        CompiledStateMachineConfig<S, T, C> compiled = config.getCompiled();
+        TransitionPlan<S, T, C> plan = compiled != null
+            ? compiled.getTransitionPlan(source, destination)
+            : TransitionPlan.between(representation, representationOf(destination));
+        Transition<S, T> transition = new Transition<>(source, destination, trigger);
+        // stages that completed at once are continued on the same thread, without chaining
+        CompletableFuture<Void> exited = plan.exitStaged(transition, context, executor);
+        if (!exited.isDone()) {
+            return exited.thenCompose(v -> performActionAndEnter(triggerBehaviour, plan, transition, executor));
+        }
+        exited.join();
+        return performActionAndEnter(triggerBehaviour, plan, transition, executor);
+    }
+
+    private CompletableFuture<FireResult> performActionAndEnter(TriggerBehaviour<S, T, C> triggerBehaviour,
+        TransitionPlan<S, T, C> plan, Transition<S, T> transition, Executor executor) {
+        CompletableFuture<Void> performed = triggerBehaviour.performActionStaged(context);
+        if (!performed.isDone()) {
+            return performed.thenCompose(v -> enter(plan, transition, executor));
+        }
+        performed.join();
+        return enter(plan, transition, executor);
+    }
+
+    private CompletableFuture<FireResult> enter(TransitionPlan<S, T, C> plan, Transition<S, T> transition, Executor executor) {
+        setState(transition.getDestination());
+        CompletableFuture<Void> entered = plan.enterStaged(transition, context, executor);
+        if (!entered.isDone()) {
+            return entered.thenApply(v -> transitioned(transition));
+        }
+        entered.join();
+        return CompletableFuture.completedFuture(transitioned(transition));
+    }
+
+    private FireResult transitioned(Transition<S, T> transition) {
+        if (trace != null) {
+            trace.transition(transition.getTrigger(), transition.getSource(), transition.getDestination());
+        }
+        transitionCompleted(transition.getDestination());
+        return FireResult.ACCEPTED;
+    }
+
+    /**
+     * Called once a transition, including its entry actions, has completed
+     *
+     * @param destination The state transitioned to
+     */
+    void transitionCompleted(S destination) {
+    }
+
+    private boolean isConfiguredFor(StateRepresentation<S, T, C> representation, T trigger) {
+        CompiledStateMachineConfig<S, T, C> compiled = config.getCompiled();
+        if (compiled != null) {
+            return compiled.isConfiguredFor(representation.getUnderlyingState(), trigger);
+        }
+        return representation.isConfiguredFor(trigger);
     }
 
     /**
@@ -177,6 +454,20 @@ public class StateMachine<S, T, C> {
         this.unhandledTriggerAction = unhandledTriggerAction::accept;
     }
 
+    /**
+     * Choose what happens when a trigger is fired by an action while another trigger is being fired. Defaults to
+     * {@link FiringMode#IMMEDIATE}.
+     *
+     * @param firingMode The firing mode
+     */
+    public void setFiringMode(FiringMode firingMode) {
+        Objects.requireNonNull(firingMode, "firingMode must not be null");
+        if (firing) {
+            throw new IllegalStateException("Changing the firing mode while a trigger is being fired");
+        }
+        this.firingMode = firingMode;
+    }
+
     /**
      * Determine if the state machine is in the supplied state
      *
@@ -184,6 +475,10 @@ public class StateMachine<S, T, C> {
      * @return True if the current state is equal to, or a substate of, the supplied state
      */
     public boolean isInState(S state) {
+        CompiledStateMachineConfig<S, T, C> compiled = config.getCompiled();
+        if (compiled != null) {
+            return compiled.isInState(getState(), state);
+        }
         return getCurrentRepresentation().isIncludedIn(state);
     }
 
@@ -194,7 +489,7 @@ public class StateMachine<S, T, C> {
      * @return True if the trigger can be fired, false otherwise
      */
     public boolean canFire(T trigger) {
-        return getCurrentRepresentation().canHandle(trigger, context);
+        return tryFindHandler(getCurrentRepresentation(), trigger) != null;
     }
 
     /**
@@ -207,6 +502,10 @@ public class StateMachine<S, T, C> {
         this.trace = trace;
     }
 
+    Trace<S, T> getTrace() {
+        return trace;
+    }
+
     /**
      * A human-readable representation of the state machine
      *
@@ -15,6 +15,7 @@ import java.util.Map;
 public class StateMachineConfig<S, T, C> {
 
   private final Map<S, StateRepresentation<S, T, C>> stateConfiguration = new HashMap<>();
+  private CompiledStateMachineConfig<S, T, C> compiled; // null until compile() is called
 
   /**
    * Return StateRepresentation for the specified state. May return null.
@@ -33,6 +34,9 @@ public class StateMachineConfig<S, T, C> {
    * @return StateRepresentation for the specified state.
    */
   private StateRepresentation<S, T, C> getOrCreateRepresentation(S state) {
+    if (compiled != null) {
+      throw new IllegalStateException("The configuration has been compiled and can no longer be changed");
+    }
     return stateConfiguration.computeIfAbsent(state, StateRepresentation::new);
   }
 
@@ -46,6 +50,43 @@ public class StateMachineConfig<S, T, C> {
     return new StateConfiguration<>(getOrCreateRepresentation(state), this::getOrCreateRepresentation);
   }
 
+  /**
+   * Freeze the configuration and build its table driven form. State machines created with this configuration use
+   * the compiled tables from then on. Any further attempt to change the configuration fails with an
+   * {@link IllegalStateException}.
+   * <p>
+   * Calling this method more than once returns the same compiled configuration.
+   *
+   * @return The compiled configuration
+   */
+  public CompiledStateMachineConfig<S, T, C> compile() {
+    if (compiled == null) {
+      for (StateRepresentation<S, T, C> representation : stateConfiguration.values()) {
+        representation.freeze();
+      }
+      compiled = new CompiledStateMachineConfig<>(stateConfiguration);
+    }
+    return compiled;
+  }
+
+  /**
+   * True once {@link #compile()} has been called
+   *
+   * @return True if the configuration is compiled
+   */
+  public boolean isCompiled() {
+    return compiled != null;
+  }
+
+  /**
+   * Return the compiled configuration, or null if {@link #compile()} has not been called.
+   *
+   * @return The compiled configuration, or null
+   */
+  CompiledStateMachineConfig<S, T, C> getCompiled() {
+    return compiled;
+  }
+
   public void generateDotFileInto(final OutputStream dotFile) throws IOException {
     generateDotFileInto(dotFile, false);
   }
@@ -0,0 +1,161 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Fires triggers for any number of entities whose states are kept by the caller.
+ * <p>
+ * A {@link StateMachine} binds one context and one state, so every entity needs its own machine. The engine instead
+ * takes the current state and the context as arguments and returns the new state, so a single engine, built from the
+ * compiled form of a configuration, serves all entities. It keeps no mutable state and can be shared between
+ * threads, as long as the actions and guards can; firing triggers for the same entity concurrently must be prevented
+ * by the caller.
+ * <p>
+ * Hierarchy, guard, entry, exit and transition action semantics are those of {@link StateMachine#fire(Object)}.
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ * @param <C> The type of the context
+ */
+public final class StateMachineEngine<S, T, C> {
+
+    private final CompiledStateMachineConfig<S, T, C> compiled;
+    // the outcomes for the states of the configuration, by result ordinal * state count + state index, filled lazily;
+    // outcomes are immutable, so racing threads at worst create the same outcome twice
+    private final FireOutcome<S>[] outcomes;
+
+    /**
+     * Create an engine for a configuration. The configuration is compiled, and can no longer be changed.
+     *
+     * @param config The configuration
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public StateMachineEngine(StateMachineConfig<S, T, C> config) {
+        Objects.requireNonNull(config, "config must not be null");
+        this.compiled = config.compile();
+        this.outcomes = new FireOutcome[FireResult.values().length * compiled.getStates().size()];
+    }
+
+    /**
+     * The compiled configuration the engine fires triggers with
+     *
+     * @return The compiled configuration
+     */
+    public CompiledStateMachineConfig<S, T, C> getCompiledConfig() {
+        return compiled;
+    }
+
+    /**
+     * Enter a state and all of its superstates, like {@link StateMachine#fireInitialTransition()}
+     *
+     * @param initialState The state to enter
+     * @param context      The context of the entity
+     */
+    public void fireInitialTransition(S initialState, C context) {
+        Objects.requireNonNull(initialState, "initialState must not be null");
+        compiled.getRepresentation(initialState).enter(new Transition<>(null, initialState, null), context);
+    }
+
+    /**
+     * Fire a trigger in a state. Actions associated with leaving the current state and entering the new one are
+     * invoked with the given context.
+     *
+     * @param current The current state of the entity
+     * @param trigger The trigger to fire
+     * @param context The context of the entity
+     * @return The state after the trigger was handled, the current state for ignored triggers and internal transitions
+     * @throws IllegalStateException If the trigger is not permitted in the current state
+     */
+    public S fire(S current, T trigger, C context) {
+        FireOutcome<S> outcome = tryFire(current, trigger, context);
+        if (!outcome.isHandled()) {
+            throw new IllegalStateException(
+                String.format(
+                    "No valid leaving transitions are permitted from state '%s' for trigger '%s'. Consider ignoring the trigger.",
+                    current, trigger)
+            );
+        }
+        return outcome.getState();
+    }
+
+    /**
+     * Fire a trigger in a state like {@link #fire(Object, Object, Object)}, but report a trigger that is not permitted
+     * through the outcome instead of throwing, like {@link StateMachine#tryFire(Object)}. There is no need to call
+     * {@link #canFire(Object, Object, Object)} first. The outcomes for the states of the configuration are shared, so
+     * no outcome is allocated for them.
+     *
+     * @param current The current state of the entity
+     * @param trigger The trigger to fire
+     * @param context The context of the entity
+     * @return How the trigger was handled, and the state after it was handled
+     */
+    public FireOutcome<S> tryFire(S current, T trigger, C context) {
+        TriggerBehaviour<S, T, C> triggerBehaviour = compiled.tryFindHandler(current, trigger, context);
+        if (triggerBehaviour == null) {
+            FireResult result = compiled.isConfiguredFor(current, trigger) ? FireResult.GUARD_REJECTED : FireResult.UNHANDLED;
+            return outcome(result, current);
+        }
+
+        if (triggerBehaviour.isInternal()) {
+            triggerBehaviour.performAction(context);
+            return outcome(triggerBehaviour.isIgnored() ? FireResult.IGNORED : FireResult.ACCEPTED, current);
+        }
+
+        S destination = triggerBehaviour.transitionsTo(current, context);
+        TransitionPlan<S, T, C> plan = compiled.getTransitionPlan(current, destination);
+        Transition<S, T> transition = plan.transitionFor(current, destination, trigger);
+        plan.exit(transition, context);
+        triggerBehaviour.performAction(context);
+        plan.enter(transition, context);
+        return outcome(FireResult.ACCEPTED, destination);
+    }
+
+    private FireOutcome<S> outcome(FireResult result, S state) {
+        int index = compiled.indexOfState(state);
+        if (index < 0) {
+            return new FireOutcome<>(result, state);
+        }
+        int slot = result.ordinal() * compiled.getStates().size() + index;
+        FireOutcome<S> outcome = outcomes[slot];
+        if (outcome == null) {
+            outcome = new FireOutcome<>(result, state);
+            outcomes[slot] = outcome;
+        }
+        return outcome;
+    }
+
+    /**
+     * Returns true if {@code trigger} can be fired in a state
+     *
+     * @param current The current state of the entity
+     * @param trigger Trigger to test
+     * @param context The context of the entity
+     * @return True if the trigger can be fired, false otherwise
+     */
+    public boolean canFire(S current, T trigger, C context) {
+        return compiled.tryFindHandler(current, trigger, context) != null;
+    }
+
+    /**
+     * Determine if a state is equal to, or a substate of, another state
+     *
+     * @param current The current state of the entity
+     * @param state   The state to test for
+     * @return True if the current state is equal to, or a substate of, the supplied state
+     */
+    public boolean isInState(S current, S state) {
+        return compiled.isInState(current, state);
+    }
+
+    /**
+     * The triggers permitted in a state
+     *
+     * @param current The current state of the entity
+     * @param context The context of the entity
+     * @return The permitted triggers, which must not be modified
+     */
+    public List<T> getPermittedTriggers(S current, C context) {
+        return compiled.getPermittedTriggers(current, context);
+    }
+}
@@ -0,0 +1,534 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+/**
+ * The states of a fixed number of entities driven by one configuration with enum states.
+ * <p>
+ * Instead of one {@link StateMachine} per entity, the fleet keeps the ordinal of the state of every entity in a
+ * column indexed by entity id, and fires triggers through one shared {@link StateMachineEngine}. The column is a
+ * {@code byte[]} for enums of up to 256 constants, a {@code short[]} for up to 65536 and an {@code int[]} otherwise,
+ * so an entity costs one to four bytes.
+ * <p>
+ * Triggers for different entities may be fired from different threads, as long as the actions and guards allow it;
+ * firing triggers for the same entity concurrently must be prevented by the caller.
+ *
+ * @param <S> The enum type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ * @param <C> The type of the context
+ */
+public final class StateMachineFleet<S extends Enum<S>, T, C> {
+
+    private static final int MIN_PARTITION_SIZE = 1024;
+
+    private final StateMachineEngine<S, T, C> engine;
+    private final S[] states;
+    private final int size;
+    private final byte[] bytes; // exactly one of the three columns is not null
+    private final short[] shorts;
+    private final int[] ints;
+
+    /**
+     * Create a fleet in which every entity starts in the same state. The configuration is compiled, and can no longer
+     * be changed.
+     *
+     * @param config       The configuration shared by all entities
+     * @param stateType    The enum type of the states
+     * @param size         The number of entities, whose ids are {@code 0 .. size - 1}
+     * @param initialState The state of every entity
+     */
+    public StateMachineFleet(StateMachineConfig<S, T, C> config, Class<S> stateType, int size, S initialState) {
+        Objects.requireNonNull(stateType, "stateType must not be null");
+        Objects.requireNonNull(initialState, "initialState must not be null");
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        this.engine = new StateMachineEngine<>(config);
+        this.states = stateType.getEnumConstants();
+        this.size = size;
+        List<S> configured = engine.getCompiledConfig().getStates();
+        for (int i = 0; i < configured.size(); i++) {
+            if (configured.get(i) != states[i]) {
+                throw new IllegalArgumentException("The states of the configuration are not the constants of " + stateType.getName());
+            }
+        }
+        if (states.length <= 1 << Byte.SIZE) {
+            bytes = new byte[size];
+            shorts = null;
+            ints = null;
+        } else if (states.length <= 1 << Short.SIZE) {
+            bytes = null;
+            shorts = new short[size];
+            ints = null;
+        } else {
+            bytes = null;
+            shorts = null;
+            ints = new int[size];
+        }
+        fill(initialState);
+    }
+
+    /**
+     * The engine through which the triggers are fired
+     *
+     * @return The engine
+     */
+    public StateMachineEngine<S, T, C> getEngine() {
+        return engine;
+    }
+
+    /**
+     * The number of entities
+     *
+     * @return The number of entities
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The current state of an entity
+     *
+     * @param entityId The id of the entity
+     * @return The current state
+     */
+    public S getState(int entityId) {
+        return states[ordinalOf(entityId)];
+    }
+
+    /**
+     * Set the state of an entity without running any action
+     *
+     * @param entityId The id of the entity
+     * @param state    The new state
+     */
+    public void setState(int entityId, S state) {
+        setOrdinal(entityId, state.ordinal());
+    }
+
+    /**
+     * Set the state of all entities without running any action
+     *
+     * @param state The new state
+     */
+    public void fill(S state) {
+        int ordinal = state.ordinal();
+        if (bytes != null) {
+            Arrays.fill(bytes, (byte) ordinal);
+        } else if (shorts != null) {
+            Arrays.fill(shorts, (short) ordinal);
+        } else {
+            Arrays.fill(ints, ordinal);
+        }
+    }
+
+    /**
+     * Enter the current state of an entity and all of its superstates, see {@link StateMachine#fireInitialTransition()}
+     *
+     * @param entityId The id of the entity
+     * @param context  The context of the entity
+     */
+    public void fireInitialTransition(int entityId, C context) {
+        engine.fireInitialTransition(getState(entityId), context);
+    }
+
+    /**
+     * Fire a trigger for an entity, see {@link StateMachineEngine#fire(Object, Object, Object)}
+     *
+     * @param entityId The id of the entity
+     * @param trigger  The trigger to fire
+     * @param context  The context of the entity
+     * @return The new state of the entity
+     * @throws IllegalStateException If the trigger is not permitted in the current state of the entity
+     */
+    public S fire(int entityId, T trigger, C context) {
+        S destination = engine.fire(getState(entityId), trigger, context);
+        setOrdinal(entityId, destination.ordinal());
+        return destination;
+    }
+
+    /**
+     * Fire a trigger for an entity, see {@link StateMachineEngine#tryFire(Object, Object, Object)}
+     *
+     * @param entityId The id of the entity
+     * @param trigger  The trigger to fire
+     * @param context  The context of the entity
+     * @return How the trigger was handled, and the new state of the entity
+     */
+    public FireOutcome<S> tryFire(int entityId, T trigger, C context) {
+        FireOutcome<S> outcome = engine.tryFire(getState(entityId), trigger, context);
+        if (outcome.isHandled()) {
+            setOrdinal(entityId, outcome.getState().ordinal());
+        }
+        return outcome;
+    }
+
+    /**
+     * Fire the same trigger for a batch of entities, like {@link #tryFire(int, Object, Object)} for each of them.
+     * <p>
+     * The entities are grouped by their current state, and each group is fired in one pass: the handler, and for
+     * unguarded transitions the exit and entry actions and the {@link Transition}, are resolved once per group instead
+     * of once per entity. Entities are therefore not fired in the order of {@code entityIds}, only in that order
+     * within a group. An entity listed more than once is fired again from the state its previous firing left it in.
+     * If an action throws, the entities fired before keep their new state.
+     *
+     * @param entityIds The ids of the entities
+     * @param trigger   The trigger to fire
+     * @param contexts  The context of an entity, by entity id
+     * @return The number of entities for which the trigger was and was not permitted
+     */
+    public BatchResult fireBatch(int[] entityIds, T trigger, IntFunction<C> contexts) {
+        int handled = fireGrouped(entityIds, triggerIndicesOf(entityIds, trigger), contexts);
+        return new BatchResult(handled, entityIds.length - handled);
+    }
+
+    /**
+     * Fire one trigger per entity for a batch of entities, {@code triggers[i]} for {@code entityIds[i]}, like
+     * {@link #tryFire(int, Object, Object)} for each of them.
+     * <p>
+     * The entities are grouped by their current state and trigger, see {@link #fireBatch(int[], Object, IntFunction)}.
+     * The triggers of an entity listed more than once are fired in the order they are listed. To keep that order the
+     * batch is fired in rounds: the first round fires the first occurrence of every entity, the second round the
+     * second occurrences, and so on, each round grouped on its own. A trigger of one entity may therefore be fired
+     * before a trigger of another entity listed earlier, and a batch in which an entity is listed n times is fired in
+     * n grouped passes. A batch without repeated entities is fired in a single pass.
+     *
+     * @param entityIds The ids of the entities
+     * @param triggers  The triggers to fire, parallel to {@code entityIds}
+     * @param contexts  The context of an entity, by entity id
+     * @return The number of triggers that were and were not permitted
+     */
+    public BatchResult fireBatch(int[] entityIds, T[] triggers, IntFunction<C> contexts) {
+        int handled = fireInOrder(entityIds, triggerIndicesOf(entityIds, triggers), contexts);
+        return new BatchResult(handled, entityIds.length - handled);
+    }
+
+    /**
+     * Fire the same trigger for a batch of entities on several threads, like
+     * {@link #fireBatch(int[], Object, IntFunction)}.
+     * <p>
+     * The id space is split into ranges, one partition per range, and the partitions are fired as separate tasks of
+     * the executor. Every entity belongs to exactly one partition, so no two tasks touch the same entity, and no lock
+     * is taken. Each task counts its own results, which are summed once all tasks completed. Contexts, guards and
+     * actions must allow being called from several threads at a time. If an action throws, the remaining partitions
+     * are still fired and the first exception is rethrown afterwards.
+     *
+     * @param entityIds The ids of the entities
+     * @param trigger   The trigger to fire
+     * @param contexts  The context of an entity, by entity id
+     * @param executor  The executor running the partitions, e.g. a {@link ForkJoinPool}
+     * @return The number of entities for which the trigger was and was not permitted
+     */
+    public BatchResult fireBatchParallel(int[] entityIds, T trigger, IntFunction<C> contexts, Executor executor) {
+        return fireParallel(entityIds, triggerIndicesOf(entityIds, trigger), false, contexts, executor);
+    }
+
+    /**
+     * Fire one trigger per entity for a batch of entities on several threads, like
+     * {@link #fireBatch(int[], Object[], IntFunction)}. The triggers of an entity are fired in the order they are
+     * listed, see {@link #fireBatchParallel(int[], Object, IntFunction, Executor)}.
+     *
+     * @param entityIds The ids of the entities
+     * @param triggers  The triggers to fire, parallel to {@code entityIds}
+     * @param contexts  The context of an entity, by entity id
+     * @param executor  The executor running the partitions, e.g. a {@link ForkJoinPool}
+     * @return The number of entities for which the trigger was and was not permitted
+     */
+    public BatchResult fireBatchParallel(int[] entityIds, T[] triggers, IntFunction<C> contexts, Executor executor) {
+        return fireParallel(entityIds, triggerIndicesOf(entityIds, triggers), true, contexts, executor);
+    }
+
+    private int[] triggerIndicesOf(int[] entityIds, T trigger) {
+        int[] triggerIndices = new int[entityIds.length];
+        Arrays.fill(triggerIndices, engine.getCompiledConfig().indexOfTrigger(trigger));
+        return triggerIndices;
+    }
+
+    private int[] triggerIndicesOf(int[] entityIds, T[] triggers) {
+        if (triggers.length != entityIds.length) {
+            throw new IllegalArgumentException("entityIds and triggers must have the same length");
+        }
+        CompiledStateMachineConfig<S, T, C> compiled = engine.getCompiledConfig();
+        int[] triggerIndices = new int[entityIds.length];
+        for (int i = 0; i < triggers.length; i++) {
+            triggerIndices[i] = compiled.indexOfTrigger(triggers[i]);
+        }
+        return triggerIndices;
+    }
+
+    private BatchResult fireParallel(int[] entityIds, int[] triggerIndices, boolean ordered, IntFunction<C> contexts,
+        Executor executor) {
+        Objects.requireNonNull(executor, "executor must not be null");
+        int partitions = Partitions.count(executor, entityIds.length, MIN_PARTITION_SIZE);
+        if (partitions == 1) {
+            int handled = ordered ? fireInOrder(entityIds, triggerIndices, contexts) : fireGrouped(entityIds, triggerIndices, contexts);
+            return new BatchResult(handled, entityIds.length - handled);
+        }
+
+        // counting sort by partition, keeping the order of the entities within a partition
+        int rangeSize = (size + partitions - 1) / partitions;
+        int[] starts = new int[partitions + 1];
+        for (int entityId : entityIds) {
+            starts[partitionOf(entityId, rangeSize) + 1]++;
+        }
+        for (int p = 1; p <= partitions; p++) {
+            starts[p] += starts[p - 1];
+        }
+        int[] partitionedIds = new int[entityIds.length];
+        int[] partitionedTriggers = new int[entityIds.length];
+        int[] next = Arrays.copyOf(starts, partitions);
+        for (int i = 0; i < entityIds.length; i++) {
+            int position = next[partitionOf(entityIds[i], rangeSize)]++;
+            partitionedIds[position] = entityIds[i];
+            partitionedTriggers[position] = triggerIndices[i];
+        }
+
+        int handled = Partitions.runAll(partitions, executor, p -> {
+            int from = starts[p];
+            int to = starts[p + 1];
+            if (from == to) {
+                return 0;
+            }
+            int[] ids = Arrays.copyOfRange(partitionedIds, from, to);
+            int[] triggers = Arrays.copyOfRange(partitionedTriggers, from, to);
+            return ordered ? fireInOrder(ids, triggers, contexts) : fireGrouped(ids, triggers, contexts);
+        });
+        return new BatchResult(handled, entityIds.length - handled);
+    }
+
+    private int partitionOf(int entityId, int rangeSize) {
+        if (entityId < 0 || entityId >= size) {
+            throw new IndexOutOfBoundsException("Entity " + entityId + " is not between 0 and " + (size - 1));
+        }
+        return entityId / rangeSize;
+    }
+
+    /**
+     * Fire a batch in rounds, the n-th round holding the n-th occurrence of every entity, so the triggers of an
+     * entity are fired in the order they are listed
+     */
+    private int fireInOrder(int[] entityIds, int[] triggerIndices, IntFunction<C> contexts) {
+        int[] occurrences = occurrences(entityIds);
+        if (occurrences == null) {
+            return fireGrouped(entityIds, triggerIndices, contexts);
+        }
+        int rounds = 0;
+        for (int occurrence : occurrences) {
+            rounds = Math.max(rounds, occurrence + 1);
+        }
+        int handled = 0;
+        for (int round = 0; round < rounds; round++) {
+            int count = 0;
+            for (int occurrence : occurrences) {
+                if (occurrence == round) {
+                    count++;
+                }
+            }
+            int[] ids = new int[count];
+            int[] triggers = new int[count];
+            for (int i = 0, j = 0; i < entityIds.length; i++) {
+                if (occurrences[i] == round) {
+                    ids[j] = entityIds[i];
+                    triggers[j++] = triggerIndices[i];
+                }
+            }
+            handled += fireGrouped(ids, triggers, contexts);
+        }
+        return handled;
+    }
+
+    /**
+     * Number the occurrences of every id, using an open addressing table sized after the batch
+     *
+     * @return For every position, how many times its id occurs before it, or null if no id occurs twice
+     */
+    private static int[] occurrences(int[] entityIds) {
+        int capacity = Integer.highestOneBit(Math.max(entityIds.length, 1) * 2 - 1) << 1;
+        int[] keys = new int[capacity];
+        int[] counts = new int[capacity];
+        Arrays.fill(keys, -1);
+        int[] occurrences = new int[entityIds.length];
+        boolean repeated = false;
+        for (int i = 0; i < entityIds.length; i++) {
+            int id = entityIds[i];
+            int slot = (id * 0x9E3779B9) & (capacity - 1);
+            while (keys[slot] != -1 && keys[slot] != id) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            keys[slot] = id;
+            occurrences[i] = counts[slot]++;
+            repeated |= occurrences[i] > 0;
+        }
+        return repeated ? occurrences : null;
+    }
+
+    /**
+     * Counting sort the entities by (state, trigger) and fire each group. Entities whose trigger is unknown to the
+     * configuration (index -1) are left unchanged.
+     */
+    private int fireGrouped(int[] entityIds, int[] triggerIndices, IntFunction<C> contexts) {
+        CompiledStateMachineConfig<S, T, C> compiled = engine.getCompiledConfig();
+        int triggerCount = compiled.getTriggers().size();
+        int[] keys = new int[entityIds.length];
+        int[] starts = new int[states.length * triggerCount + 1];
+        for (int i = 0; i < entityIds.length; i++) {
+            int t = triggerIndices[i];
+            keys[i] = t < 0 ? -1 : ordinalOf(entityIds[i]) * triggerCount + t;
+            if (t >= 0) {
+                starts[keys[i] + 1]++;
+            }
+        }
+        for (int k = 1; k < starts.length; k++) {
+            starts[k] += starts[k - 1];
+        }
+        int[] grouped = new int[starts[starts.length - 1]];
+        int[] next = Arrays.copyOf(starts, starts.length - 1);
+        for (int i = 0; i < entityIds.length; i++) {
+            if (keys[i] >= 0) {
+                grouped[next[keys[i]]++] = entityIds[i];
+            }
+        }
+
+        int handled = 0;
+        for (int key = 0; key < starts.length - 1; key++) {
+            if (starts[key] != starts[key + 1]) {
+                handled += fireGroup(compiled, key / triggerCount, key % triggerCount, grouped, starts[key], starts[key + 1], contexts);
+            }
+        }
+        return handled;
+    }
+
+    private int fireGroup(CompiledStateMachineConfig<S, T, C> compiled, int source, int t, int[] entityIds, int from, int to,
+        IntFunction<C> contexts) {
+        HandlerChain<S, T, C> chain = compiled.getHandlerChain(source, t);
+        if (chain == null) {
+            return 0;
+        }
+        S sourceState = states[source];
+        T trigger = compiled.getTriggers().get(t);
+        TriggerBehaviour<S, T, C> unconditional = chain.getUnconditional();
+        if (unconditional != null && unconditional.isInternal()) {
+            for (int i = from; i < to; i++) {
+                unconditional.performAction(contexts.apply(entityIds[i]));
+            }
+            return to - from;
+        }
+
+        // the transition is the same for the whole group unless it depends on guards
+        TransitionPlan<S, T, C> plan = null;
+        Transition<S, T> transition = null;
+        S destinationState = null;
+        if (unconditional instanceof TransitioningTriggerBehaviour) {
+            destinationState = unconditional.transitionsTo(sourceState, null);
+            plan = compiled.getTransitionPlan(sourceState, destinationState);
+            transition = plan.transitionFor(sourceState, destinationState, trigger);
+        }
+        int handled = 0;
+        for (int i = from; i < to; i++) {
+            int entityId = entityIds[i];
+            C context = contexts.apply(entityId);
+            if (ordinalOf(entityId) != source) {
+                // listed more than once and already moved by this batch
+                if (tryFire(entityId, trigger, context).isHandled()) {
+                    handled++;
+                }
+            } else if (plan != null) {
+                plan.exit(transition, context);
+                unconditional.performAction(context);
+                setOrdinal(entityId, destinationState.ordinal());
+                plan.enter(transition, context);
+                handled++;
+            } else {
+                TriggerBehaviour<S, T, C> triggerBehaviour = chain.resolve(context);
+                if (triggerBehaviour != null) {
+                    fire(compiled, entityId, sourceState, trigger, triggerBehaviour, context);
+                    handled++;
+                }
+            }
+        }
+        return handled;
+    }
+
+    private void fire(CompiledStateMachineConfig<S, T, C> compiled, int entityId, S source, T trigger,
+        TriggerBehaviour<S, T, C> triggerBehaviour, C context) {
+        if (triggerBehaviour.isInternal()) {
+            triggerBehaviour.performAction(context);
+            return;
+        }
+        S destination = triggerBehaviour.transitionsTo(source, context);
+        TransitionPlan<S, T, C> plan = compiled.getTransitionPlan(source, destination);
+        Transition<S, T> transition = plan.transitionFor(source, destination, trigger);
+        plan.exit(transition, context);
+        triggerBehaviour.performAction(context);
+        setOrdinal(entityId, destination.ordinal());
+        plan.enter(transition, context);
+    }
+
+    /**
+     * Returns true if {@code trigger} can be fired in the current state of an entity
+     *
+     * @param entityId The id of the entity
+     * @param trigger  Trigger to test
+     * @param context  The context of the entity
+     * @return True if the trigger can be fired, false otherwise
+     */
+    public boolean canFire(int entityId, T trigger, C context) {
+        return engine.canFire(getState(entityId), trigger, context);
+    }
+
+    /**
+     * Determine if an entity is in the supplied state
+     *
+     * @param entityId The id of the entity
+     * @param state    The state to test for
+     * @return True if the current state is equal to, or a substate of, the supplied state
+     */
+    public boolean isInState(int entityId, S state) {
+        return engine.isInState(getState(entityId), state);
+    }
+
+    /**
+     * Count the entities whose current state is equal to, or a substate of, a state
+     *
+     * @param state The state to test for
+     * @return The number of entities in the state
+     */
+    public int count(S state) {
+        boolean[] included = new boolean[states.length];
+        for (S candidate : states) {
+            included[candidate.ordinal()] = engine.isInState(candidate, state);
+        }
+        int count = 0;
+        for (int entityId = 0; entityId < size; entityId++) {
+            if (included[ordinalOf(entityId)]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int ordinalOf(int entityId) {
+        if (bytes != null) {
+            return bytes[entityId] & 0xFF;
+        }
+        if (shorts != null) {
+            return shorts[entityId] & 0xFFFF;
+        }
+        return ints[entityId];
+    }
+
+    void setOrdinal(int entityId, int ordinal) {
+        if (bytes != null) {
+            bytes[entityId] = (byte) ordinal;
+        } else if (shorts != null) {
+            shorts[entityId] = (short) ordinal;
+        } else {
+            ints[entityId] = ordinal;
+        }
+    }
+}
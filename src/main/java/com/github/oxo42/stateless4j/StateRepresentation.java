@@ -13,6 +13,7 @@ public class StateRepresentation<S, T, C> {
 
     private static final String ACTION_IS_NULL = "action must not be null";
     private static final String TRANSITION_IS_NULL = "transition must not be null";
+    private static final String FROZEN = "The configuration has been compiled and can no longer be changed";
     private final S state;
 
     private final Map<T, List<TriggerBehaviour<S, T, C>>> triggerBehaviours = new HashMap<>();
@@ -20,6 +21,7 @@ public class StateRepresentation<S, T, C> {
     private final List<BiConsumer<Transition<S, T>, C>> exitActions = new ArrayList<>();
     private final List<StateRepresentation<S, T, C>> substates = new ArrayList<>();
     private StateRepresentation<S, T, C> superstate; // null
+    private boolean frozen;
 
     public StateRepresentation(S state) {
         this.state = state;
@@ -41,28 +43,46 @@ public class StateRepresentation<S, T, C> {
         return result;
     }
 
+    /**
+     * True if this state or one of its superstates has behaviours for the trigger, whether or not their guards are met
+     *
+     * @param trigger The trigger
+     * @return True if the trigger is configured
+     */
+    public boolean isConfiguredFor(T trigger) {
+        return triggerBehaviours.containsKey(trigger) || (superstate != null && superstate.isConfiguredFor(trigger));
+    }
+
     TriggerBehaviour<S, T, C> tryFindLocalHandler(T trigger, C context) {
         List<TriggerBehaviour<S, T, C>> possible = triggerBehaviours.get(trigger);
         if (possible == null) {
             return null;
         }
+        if (possible.size() == 1 && possible.get(0).isUnguarded()) {
+            return possible.get(0);
+        }
 
-        List<TriggerBehaviour<S, T, C>> actual = new ArrayList<>();
-        for (TriggerBehaviour<S, T, C> triggerBehaviour : possible) {
+        // Indexed loop and no intermediate list: this runs on every fire() and canFire()
+        TriggerBehaviour<S, T, C> result = null;
+        for (int i = 0; i < possible.size(); i++) {
+            TriggerBehaviour<S, T, C> triggerBehaviour = possible.get(i);
             if (triggerBehaviour.isGuardConditionMet(context)) {
-                actual.add(triggerBehaviour);
+                if (result != null) {
+                    throw multiplePermittedTransitions(state, trigger);
+                }
+                result = triggerBehaviour;
             }
         }
+        return result;
+    }
 
-        if (actual.size() > 1) {
-            throw new IllegalStateException("Multiple permitted exit transitions are configured from state '" + state + "' for trigger '" + trigger + "'. Guard clauses must be mutually exclusive.");
-        }
-
-        return actual.isEmpty() ? null : actual.get(0);
+    static IllegalStateException multiplePermittedTransitions(Object state, Object trigger) {
+        return new IllegalStateException("Multiple permitted exit transitions are configured from state '" + state + "' for trigger '" + trigger + "'. Guard clauses must be mutually exclusive.");
     }
 
     public void addEntryAction(final T trigger, final BiConsumer<Transition<S, T>, C> action) {
         Objects.requireNonNull(action, ACTION_IS_NULL);
+        ensureNotFrozen();
 
         entryActions.add((t, c) -> {
             T trans_trigger = t.getTrigger();
@@ -74,16 +94,27 @@ public class StateRepresentation<S, T, C> {
 
     public void addEntryAction(BiConsumer<Transition<S, T>, C> action) {
         Objects.requireNonNull(action, ACTION_IS_NULL);
+        ensureNotFrozen();
         entryActions.add(action);
     }
 
     public void insertEntryAction(BiConsumer<Transition<S, T>, C> action) {
         Objects.requireNonNull(action, ACTION_IS_NULL);
+        ensureNotFrozen();
         entryActions.add(0, action);
     }
 
+    List<BiConsumer<Transition<S, T>, C>> getEntryActions() {
+        return entryActions;
+    }
+
+    List<BiConsumer<Transition<S, T>, C>> getExitActions() {
+        return exitActions;
+    }
+
     public void addExitAction(BiConsumer<Transition<S, T>, C> action) {
         Objects.requireNonNull(action, ACTION_IS_NULL);
+        ensureNotFrozen();
         exitActions.add(action);
     }
 
@@ -116,19 +147,20 @@ public class StateRepresentation<S, T, C> {
 
     void executeEntryActions(Transition<S, T> transition, C context) {
         Objects.requireNonNull(transition, TRANSITION_IS_NULL);
-        for (BiConsumer<Transition<S, T>, C> action : entryActions) {
-            action.accept(transition, context);
+        for (int i = 0; i < entryActions.size(); i++) {
+            entryActions.get(i).accept(transition, context);
         }
     }
 
     void executeExitActions(Transition<S, T> transition, C context) {
         Objects.requireNonNull(transition, TRANSITION_IS_NULL);
-        for (BiConsumer<Transition<S, T>, C> action : exitActions) {
-            action.accept(transition, context);
+        for (int i = 0; i < exitActions.size(); i++) {
+            exitActions.get(i).accept(transition, context);
         }
     }
 
     public void addTriggerBehaviour(TriggerBehaviour<S, T, C> triggerBehaviour) {
+        ensureNotFrozen();
         List<TriggerBehaviour<S, T, C>> allowed;
         if (!triggerBehaviours.containsKey(triggerBehaviour.getTrigger())) {
             allowed = new ArrayList<>();
@@ -138,11 +170,25 @@ public class StateRepresentation<S, T, C> {
         allowed.add(triggerBehaviour);
     }
 
+    /**
+     * Prevent further changes to this representation. Called when the owning configuration is compiled.
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    private void ensureNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException(FROZEN);
+        }
+    }
+
     public StateRepresentation<S, T, C> getSuperstate() {
         return superstate;
     }
 
     public void setSuperstate(StateRepresentation<S, T, C> value) {
+        ensureNotFrozen();
         superstate = value;
     }
 
@@ -152,6 +198,7 @@ public class StateRepresentation<S, T, C> {
 
     public void addSubstate(StateRepresentation<S, T, C> substate) {
         Objects.requireNonNull(substate, "substate must not be null");
+        ensureNotFrozen();
         substates.add(substate);
     }
 
@@ -0,0 +1,55 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * An immutable view of the state of a {@link SingleWriterStateMachine}, published once a transition has completed
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ * @param <C> The type of the context
+ */
+public final class StateSnapshot<S, T, C> {
+
+    private final S state;
+    private final CompiledStateMachineConfig<S, T, C> compiled;
+    private final long version;
+
+    StateSnapshot(S state, CompiledStateMachineConfig<S, T, C> compiled, long version) {
+        this.state = state;
+        this.compiled = compiled;
+        this.version = version;
+    }
+
+    /**
+     * The state
+     *
+     * @return The state
+     */
+    public S getState() {
+        return state;
+    }
+
+    /**
+     * The number of transitions completed before this snapshot was published. Reentrant transitions count,
+     * internal transitions and ignored triggers do not.
+     *
+     * @return The version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Determine if the snapshot is in the supplied state
+     *
+     * @param state The state to test for
+     * @return True if the state of the snapshot is equal to, or a substate of, the supplied state
+     */
+    public boolean isInState(S state) {
+        return compiled.isInState(this.state, state);
+    }
+
+    @Override
+    public String toString() {
+        return "StateSnapshot { State = " + state + ", Version = " + version + " }";
+    }
+}
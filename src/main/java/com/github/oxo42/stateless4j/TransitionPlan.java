@@ -0,0 +1,111 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * The exit and entry actions of a transition between two states, in execution order.
+ * <p>
+ * Equivalent to calling {@link StateRepresentation#exit} on the source and {@link StateRepresentation#enter} on
+ * the destination, but the walk up to the least common ancestor of the two states is done once, when the plan is
+ * built, instead of on every transition.
+ */
+final class TransitionPlan<S, T, C> {
+
+    private final BiConsumer<Transition<S, T>, C>[] exitActions;
+    private final BiConsumer<Transition<S, T>, C>[] entryActions;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private TransitionPlan(List<BiConsumer<Transition<S, T>, C>> exitActions, List<BiConsumer<Transition<S, T>, C>> entryActions) {
+        this.exitActions = exitActions.toArray(new BiConsumer[0]);
+        this.entryActions = entryActions.toArray(new BiConsumer[0]);
+    }
+
+    /**
+     * Build the plan of the transition between two states
+     *
+     * @param source      Representation of the state transitioned from
+     * @param destination Representation of the state transitioned to
+     * @return The transition plan
+     */
+    static <S, T, C> TransitionPlan<S, T, C> between(StateRepresentation<S, T, C> source, StateRepresentation<S, T, C> destination) {
+        S sourceState = source.getUnderlyingState();
+        S destinationState = destination.getUnderlyingState();
+        List<BiConsumer<Transition<S, T>, C>> exitActions = new ArrayList<>();
+        List<BiConsumer<Transition<S, T>, C>> entryActions = new ArrayList<>();
+
+        if (sourceState != null && sourceState.equals(destinationState)) {
+            exitActions.addAll(source.getExitActions());
+            entryActions.addAll(destination.getEntryActions());
+        } else {
+            for (StateRepresentation<S, T, C> s = source; s != null && !s.includes(destinationState); s = s.getSuperstate()) {
+                exitActions.addAll(s.getExitActions());
+            }
+            List<StateRepresentation<S, T, C>> entered = new ArrayList<>();
+            for (StateRepresentation<S, T, C> s = destination; s != null && !s.includes(sourceState); s = s.getSuperstate()) {
+                entered.add(s);
+            }
+            Collections.reverse(entered);
+            for (StateRepresentation<S, T, C> s : entered) {
+                entryActions.addAll(s.getEntryActions());
+            }
+        }
+        return new TransitionPlan<>(exitActions, entryActions);
+    }
+
+    /**
+     * True if the transition runs any exit or entry action
+     *
+     * @return True if there are actions to run
+     */
+    boolean hasActions() {
+        return exitActions.length > 0 || entryActions.length > 0;
+    }
+
+    /**
+     * The transition to hand to the exit and entry actions of this plan. It is only handed to them, so none is created
+     * if there are none.
+     *
+     * @param source      The source state
+     * @param destination The destination state
+     * @param trigger     The trigger
+     * @return The transition, or null if the plan has no actions
+     */
+    Transition<S, T> transitionFor(S source, S destination, T trigger) {
+        return hasActions() ? new Transition<>(source, destination, trigger) : null;
+    }
+
+    void exit(Transition<S, T> transition, C context) {
+        for (BiConsumer<Transition<S, T>, C> action : exitActions) {
+            action.accept(transition, context);
+        }
+    }
+
+    void enter(Transition<S, T> transition, C context) {
+        for (BiConsumer<Transition<S, T>, C> action : entryActions) {
+            action.accept(transition, context);
+        }
+    }
+
+    /**
+     * Run the exit actions, waiting for asynchronous ones without blocking
+     *
+     * @return Completes once all exit actions have
+     */
+    CompletableFuture<Void> exitStaged(Transition<S, T> transition, C context, Executor executor) {
+        return AsyncAction.runStaged(exitActions, 0, transition, context, executor);
+    }
+
+    /**
+     * Run the entry actions, waiting for asynchronous ones without blocking
+     *
+     * @return Completes once all entry actions have
+     */
+    CompletableFuture<Void> enterStaged(Transition<S, T> transition, C context, Executor executor) {
+        return AsyncAction.runStaged(entryActions, 0, transition, context, executor);
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.oxo42.stateless4j;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -19,6 +20,14 @@ public class TransitioningTriggerBehaviour<S, T, C> extends TriggerBehaviour<S,
         action.accept(context);
     }
 
+    @Override
+    CompletableFuture<Void> performActionStaged(C context) {
+        if (action instanceof AsyncAction) {
+            return ((AsyncAction<?, ?, C>) action).start(context);
+        }
+        return super.performActionStaged(context);
+    }
+
     @Override
     public S transitionsTo(S source, C context) {
         return destination;
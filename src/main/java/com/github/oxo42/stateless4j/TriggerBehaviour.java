@@ -1,9 +1,12 @@
 package com.github.oxo42.stateless4j;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
 public abstract class TriggerBehaviour<S, T, C> {
 
+    private static final Predicate<Object> NO_GUARD = context -> true;
+
     private final T trigger;
 
     /**
@@ -22,12 +25,47 @@ public abstract class TriggerBehaviour<S, T, C> {
 
     public abstract void performAction(C context);
 
+    /**
+     * Perform the action, without blocking if it is asynchronous
+     *
+     * @param context The context
+     * @return Completes once the action has
+     */
+    CompletableFuture<Void> performActionStaged(C context) {
+        performAction(context);
+        return AsyncAction.DONE;
+    }
+
     public boolean isInternal() {
         return false;
     }
 
+    public boolean isIgnored() {
+        return false;
+    }
+
+    /**
+     * The guard of behaviours that are accepted unconditionally
+     *
+     * @param <C> The type of the context
+     * @return A guard that is always met
+     */
+    @SuppressWarnings("unchecked")
+    static <C> Predicate<C> noGuard() {
+        return (Predicate<C>) NO_GUARD;
+    }
+
+    /**
+     * True if this behaviour was configured without a guard, so its guard condition is always met
+     *
+     * @return True if the behaviour is not guarded
+     */
+    public boolean isUnguarded() {
+        return guard == NO_GUARD;
+    }
+
     public boolean isGuardConditionMet(C context) {
-        return guard.test(context);
+        return guard == NO_GUARD || guard.test(context);
     }
 
     public abstract S transitionsTo(S source, C context);
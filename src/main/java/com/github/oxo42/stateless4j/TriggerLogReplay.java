@@ -0,0 +1,296 @@
+package com.github.oxo42.stateless4j;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Replays logs of triggers to find the states they lead to, splitting long logs over several threads.
+ * <p>
+ * The guards of the configuration are evaluated once per state and trigger, with a fixed context, when the replay is
+ * created, so every trigger becomes a table mapping each state to the next one and no action is run. A replay is
+ * therefore only faithful to {@link StateMachine#fire(Object)} when no guard depends on the context of an entity.
+ * <p>
+ * To replay a log in parallel it is cut into chunks. Each chunk is turned into the function mapping every state it
+ * may start in to the state it ends in, by applying its triggers to the distinct states still reachable (which
+ * usually collapse to one after a few triggers), and the functions are then composed in order. When the intermediate
+ * states are requested, each chunk is replayed a second time from its now known start state.
+ * <p>
+ * Logs are given as trigger ordinals in an {@link IntBuffer}, which may wrap an {@code int[]} or map a file with
+ * {@link java.nio.channels.FileChannel#map}. A single mapping holds at most 2 GB, so a larger file is mapped as several
+ * regions and replayed with {@link #replay(Enum, List, Executor)}, which carries the state from one region to the
+ * next. A replay keeps no mutable state and can be shared between threads.
+ *
+ * @param <S> The enum type used to represent the states
+ * @param <T> The enum type used to represent the triggers that cause state transitions
+ */
+public final class TriggerLogReplay<S extends Enum<S>, T extends Enum<T>> {
+
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+    private static final int DEDUPLICATION_INTERVAL = 16;
+
+    private final S[] states;
+    private final int failed; // pseudo state reached by a trigger that is not permitted, or -1 if they are ignored
+    private final int stateCount; // including the failed state
+    private final int[][] transitions; // by trigger ordinal, the next state of every state
+
+    /**
+     * Create a replay for a configuration. The configuration is compiled, and can no longer be changed.
+     *
+     * @param config          The configuration
+     * @param stateType       The enum type of the states
+     * @param triggerType     The enum type of the triggers
+     * @param guardContext    The context the guards are evaluated with
+     * @param ignoreUnhandled True to leave the state unchanged on a trigger that is not permitted, false to fail
+     * @param <C>             The type of the context
+     */
+    public <C> TriggerLogReplay(StateMachineConfig<S, T, C> config, Class<S> stateType, Class<T> triggerType,
+        C guardContext, boolean ignoreUnhandled) {
+        Objects.requireNonNull(config, "config must not be null");
+        CompiledStateMachineConfig<S, T, C> compiled = config.compile();
+        this.states = stateType.getEnumConstants();
+        this.failed = ignoreUnhandled ? -1 : states.length;
+        this.stateCount = ignoreUnhandled ? states.length : states.length + 1;
+        T[] triggers = triggerType.getEnumConstants();
+        this.transitions = new int[triggers.length][stateCount];
+        for (T trigger : triggers) {
+            int[] next = transitions[trigger.ordinal()];
+            for (S state : states) {
+                TriggerBehaviour<S, T, C> behaviour = compiled.tryFindHandler(state, trigger, guardContext);
+                if (behaviour == null) {
+                    next[state.ordinal()] = ignoreUnhandled ? state.ordinal() : failed;
+                } else {
+                    next[state.ordinal()] = behaviour.transitionsTo(state, guardContext).ordinal();
+                }
+            }
+            if (!ignoreUnhandled) {
+                next[failed] = failed;
+            }
+        }
+    }
+
+    /**
+     * Replay a log on the calling thread
+     *
+     * @param initialState The state before the first trigger
+     * @param triggers     The triggers
+     * @return The state after the last trigger
+     * @throws IllegalStateException If a trigger is not permitted and unhandled triggers are not ignored
+     */
+    public S replay(S initialState, T[] triggers) {
+        int state = initialState.ordinal();
+        for (int i = 0; i < triggers.length; i++) {
+            state = next(state, triggers[i].ordinal());
+            if (state == failed) {
+                throw notPermitted(i);
+            }
+        }
+        return states[state];
+    }
+
+    /**
+     * Replay a log of trigger ordinals, from its position to its limit, in parallel
+     *
+     * @param initialState    The state before the first trigger
+     * @param triggerOrdinals The ordinals of the triggers
+     * @param executor        The executor running the chunks, e.g. a {@link ForkJoinPool}
+     * @return The state after the last trigger
+     * @throws IllegalStateException If a trigger is not permitted and unhandled triggers are not ignored
+     */
+    public S replay(S initialState, IntBuffer triggerOrdinals, Executor executor) {
+        return replay(initialState, triggerOrdinals, null, executor);
+    }
+
+    /**
+     * Replay a log of trigger ordinals, from its position to its limit, in parallel, and record the state after every
+     * trigger. The position of a trigger that is not permitted is counted from the position of the log. To record the
+     * states of a log split over several buffers, replay each one from the state the previous one returned.
+     *
+     * @param initialState    The state before the first trigger
+     * @param triggerOrdinals The ordinals of the triggers
+     * @param stateOrdinals   Receives, from its position on, the ordinal of the state after every trigger; null to only
+     *                        compute the final state
+     * @param executor        The executor running the chunks, e.g. a {@link ForkJoinPool}
+     * @return The state after the last trigger
+     * @throws IllegalStateException If a trigger is not permitted and unhandled triggers are not ignored
+     */
+    public S replay(S initialState, IntBuffer triggerOrdinals, IntBuffer stateOrdinals, Executor executor) {
+        Objects.requireNonNull(initialState, "initialState must not be null");
+        Objects.requireNonNull(executor, "executor must not be null");
+        return states[replay(initialState.ordinal(), triggerOrdinals, stateOrdinals, executor, 0)];
+    }
+
+    /**
+     * Replay a log split over several buffers, e.g. the regions of a file too large to map at once, in parallel. The
+     * buffers are replayed in order, each from its position to its limit and starting in the state the previous one
+     * ended in. The position of a trigger that is not permitted is counted from the start of the first buffer.
+     *
+     * @param initialState    The state before the first trigger
+     * @param triggerOrdinals The buffers holding the ordinals of the triggers, in log order
+     * @param executor        The executor running the chunks, e.g. a {@link ForkJoinPool}
+     * @return The state after the last trigger
+     * @throws IllegalStateException If a trigger is not permitted and unhandled triggers are not ignored
+     */
+    public S replay(S initialState, List<IntBuffer> triggerOrdinals, Executor executor) {
+        Objects.requireNonNull(initialState, "initialState must not be null");
+        Objects.requireNonNull(executor, "executor must not be null");
+        int state = initialState.ordinal();
+        long position = 0;
+        for (IntBuffer buffer : triggerOrdinals) {
+            state = replay(state, buffer, null, executor, position);
+            position += buffer.remaining();
+        }
+        return states[state];
+    }
+
+    /**
+     * Replay one buffer in parallel, reporting the position of a trigger that is not permitted as
+     * {@code logPosition} plus its index from the position of the buffer
+     *
+     * @return The ordinal of the state after the last trigger
+     */
+    private int replay(int initialState, IntBuffer triggerOrdinals, IntBuffer stateOrdinals, Executor executor,
+        long logPosition) {
+        int offset = triggerOrdinals.position();
+        int length = triggerOrdinals.remaining();
+        int outputOffset = stateOrdinals == null ? 0 : stateOrdinals.position();
+        if (stateOrdinals != null && stateOrdinals.remaining() < length) {
+            throw new IllegalArgumentException("stateOrdinals has room for " + stateOrdinals.remaining() + " of " + length + " states");
+        }
+        int chunks = Partitions.count(executor, length, MIN_CHUNK_SIZE);
+        int[] starts = new int[chunks + 1];
+        for (int c = 0; c <= chunks; c++) {
+            starts[c] = offset + (int) ((long) length * c / chunks);
+        }
+
+        // the function of every chunk, then the state every chunk starts in
+        long base = logPosition - offset;
+        int[][] functions = new int[chunks][];
+        if (chunks > 1) {
+            Partitions.runAll(chunks, executor, c -> {
+                functions[c] = compose(triggerOrdinals, starts[c], starts[c + 1]);
+                return 0;
+            });
+        }
+        int[] chunkStates = new int[chunks + 1];
+        chunkStates[0] = initialState;
+        for (int c = 0; c < chunks; c++) {
+            if (functions[c] == null) {
+                chunkStates[c + 1] = replay(triggerOrdinals, starts[c], starts[c + 1], chunkStates[c], null, 0, base);
+            } else {
+                chunkStates[c + 1] = functions[c][chunkStates[c]];
+            }
+            if (chunkStates[c + 1] == failed && stateOrdinals == null) {
+                // find the trigger that was not permitted
+                replay(triggerOrdinals, starts[c], starts[c + 1], chunkStates[c], null, 0, base);
+            }
+        }
+
+        if (stateOrdinals != null) {
+            if (chunks == 1) {
+                replay(triggerOrdinals, starts[0], starts[1], chunkStates[0], stateOrdinals, outputOffset - offset, base);
+            } else {
+                Partitions.runAll(chunks, executor, c -> replay(triggerOrdinals, starts[c], starts[c + 1], chunkStates[c],
+                    stateOrdinals, outputOffset - offset, base));
+            }
+        }
+        return chunkStates[chunks];
+    }
+
+    private int next(int state, int triggerOrdinal) {
+        if (triggerOrdinal < 0 || triggerOrdinal >= transitions.length) {
+            return failed < 0 ? state : failed;
+        }
+        return transitions[triggerOrdinal][state];
+    }
+
+    private IllegalStateException notPermitted(long position) {
+        return new IllegalStateException("The trigger at position " + position + " is not permitted in the state it is fired in");
+    }
+
+    /**
+     * Replay the triggers in {@code [from, to)} sequentially, optionally writing every state at {@code index + shift},
+     * and reporting a trigger that is not permitted at position {@code index + base}
+     *
+     * @return The state after the last trigger
+     */
+    private int replay(IntBuffer triggerOrdinals, int from, int to, int state, IntBuffer stateOrdinals, int shift,
+        long base) {
+        for (int i = from; i < to; i++) {
+            state = next(state, triggerOrdinals.get(i));
+            if (state == failed) {
+                throw notPermitted(i + base);
+            }
+            if (stateOrdinals != null) {
+                stateOrdinals.put(i + shift, state);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * The function mapping every state to the state the triggers in {@code [from, to)} lead to from it
+     */
+    private int[] compose(IntBuffer triggerOrdinals, int from, int to) {
+        // image holds the distinct states still reachable, slotOf the index in image every start state ends up at
+        int[] image = new int[stateCount];
+        int[] slotOf = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            image[s] = s;
+            slotOf[s] = s;
+        }
+        int distinct = stateCount;
+        int[] seen = new int[stateCount];
+        int[] remap = new int[stateCount];
+        Arrays.fill(seen, -1);
+        for (int i = from; i < to; i++) {
+            int triggerOrdinal = triggerOrdinals.get(i);
+            if (triggerOrdinal >= 0 && triggerOrdinal < transitions.length) {
+                int[] next = transitions[triggerOrdinal];
+                for (int j = 0; j < distinct; j++) {
+                    image[j] = next[image[j]];
+                }
+            } else {
+                for (int j = 0; j < distinct; j++) {
+                    image[j] = next(image[j], triggerOrdinal);
+                }
+            }
+            if (distinct > 1 && (i - from) % DEDUPLICATION_INTERVAL == DEDUPLICATION_INTERVAL - 1) {
+                distinct = deduplicate(image, distinct, slotOf, seen, remap);
+            }
+        }
+        int[] function = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            function[s] = image[slotOf[s]];
+        }
+        return function;
+    }
+
+    private static int deduplicate(int[] image, int distinct, int[] slotOf, int[] seen, int[] remap) {
+        int kept = 0;
+        for (int j = 0; j < distinct; j++) {
+            int state = image[j];
+            if (seen[state] < 0) {
+                seen[state] = kept;
+                image[kept++] = state;
+            }
+            remap[j] = seen[state];
+        }
+        if (kept == distinct) {
+            for (int j = 0; j < kept; j++) {
+                seen[image[j]] = -1;
+            }
+            return distinct;
+        }
+        for (int s = 0; s < slotOf.length; s++) {
+            slotOf[s] = remap[slotOf[s]];
+        }
+        for (int j = 0; j < kept; j++) {
+            seen[image[j]] = -1;
+        }
+        return kept;
+    }
+}
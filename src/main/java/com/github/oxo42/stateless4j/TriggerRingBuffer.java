@@ -0,0 +1,474 @@
+package com.github.oxo42.stateless4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A preallocated ring of trigger slots through which many threads feed the triggers of a {@link StateMachineFleet},
+ * drained in batches by a single thread.
+ * <p>
+ * Producers claim a slot, fill in the entity id, the trigger and up to {@code argumentCount} primitive arguments, and
+ * publish it. A claim is a single atomic increment of a shared sequence; publishing marks the slot with the round it
+ * was written in, so slots can be published out of order and the drain stops at the first one that is not published
+ * yet. The slots are columns of primitive arrays allocated once, and no object is allocated per trigger by the ring
+ * buffer, nor by firing unguarded transitions without actions that take the {@link Transition}.
+ * <p>
+ * {@link #drain()} fires every published slot in sequence order, on the calling thread, which must be the only one
+ * draining. The triggers of an entity are therefore fired in the order their slots were claimed. The handler, the
+ * destination, the exit and entry actions and the {@link Transition} of unguarded transitions are resolved once per
+ * state and trigger when the ring buffer is created, from the compiled configuration; guarded and dynamic transitions
+ * are fired through {@link StateMachineFleet#tryFire(int, Object, Object)}. At the end of every batch the slots are
+ * released to the producers at once, and the batch end callback receives the ids of the entities whose state
+ * changed, e.g. to write them to storage in one go.
+ * <p>
+ * Triggers that are not permitted in the state of their entity are skipped and counted. An exception thrown by an
+ * action is passed to the error handler and the drain goes on with the next slot, as the drain of an
+ * {@link AsyncStateMachine} does. A slot is never fired twice: whatever escapes a drain, the slots it
+ * fired are released and its batch end callback is run.
+ *
+ * @param <S> The enum type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ * @param <C> The type of the context
+ */
+public final class TriggerRingBuffer<S extends Enum<S>, T, C> {
+
+    private static final byte UNHANDLED = 1;
+    private static final byte INTERNAL = 2;
+    private static final byte TRANSITION = 3;
+    private static final byte RESOLVE = 4;
+
+    private final StateMachineFleet<S, T, C> fleet;
+    private final CompiledStateMachineConfig<S, T, C> compiled;
+    private final List<T> triggers;
+    private final int stateCount;
+    private final int triggerCount;
+    private final Function<TriggerSlot<T>, C> contexts;
+
+    // the slots, as columns indexed by sequence & mask
+    private final int mask;
+    private final int indexShift;
+    private final int argumentCount;
+    private final int[] entityIds;
+    private final int[] triggerIndices;
+    private final long[] arguments;
+    private final AtomicIntegerArray publishedRounds;
+
+    // the next sequence to claim, and the first sequence not yet released by the drain
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+
+    // the resolved handlers, by state index * triggerCount + trigger index
+    private final byte[] kinds;
+    private final TriggerBehaviour<S, T, C>[] behaviours;
+    private final int[] destinations;
+    private final TransitionPlan<S, T, C>[] plans;
+    private final Transition<S, T>[] transitions;
+
+    // only used by the draining thread
+    private final TriggerSlot<T> slot = new TriggerSlot<>(this);
+    private final int[] changed;
+
+    private volatile ObjIntConsumer<int[]> batchEndCallback = null;
+
+    private volatile BiConsumer<TriggerSlot<T>, RuntimeException> errorHandler = (slot, e) -> Failures.uncaught(e);
+
+    // only written by the draining thread
+    private volatile long batches;
+    private volatile long drainedTriggers;
+    private volatile long unhandledTriggers;
+
+    /**
+     * Create a ring buffer feeding a fleet
+     *
+     * @param fleet         The fleet whose entities the triggers are fired for
+     * @param capacity      The number of slots, a power of two
+     * @param argumentCount The number of primitive arguments every slot holds
+     * @param contexts      The context of the entity of a slot, called on the draining thread before the slot is fired
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TriggerRingBuffer(StateMachineFleet<S, T, C> fleet, int capacity, int argumentCount,
+        Function<TriggerSlot<T>, C> contexts) {
+        Objects.requireNonNull(fleet, "fleet must not be null");
+        Objects.requireNonNull(contexts, "contexts must not be null");
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a positive power of two, was " + capacity);
+        }
+        if (argumentCount < 0) {
+            throw new IllegalArgumentException("argumentCount must not be negative, was " + argumentCount);
+        }
+        this.fleet = fleet;
+        this.contexts = contexts;
+        this.mask = capacity - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(capacity);
+        this.argumentCount = argumentCount;
+        this.entityIds = new int[capacity];
+        this.triggerIndices = new int[capacity];
+        this.arguments = new long[capacity * argumentCount];
+        this.publishedRounds = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            publishedRounds.set(i, -1);
+        }
+        this.changed = new int[capacity];
+
+        this.compiled = fleet.getEngine().getCompiledConfig();
+        List<S> states = compiled.getStates();
+        this.triggers = compiled.getTriggers();
+        this.stateCount = states.size();
+        this.triggerCount = triggers.size();
+        this.kinds = new byte[stateCount * triggerCount];
+        this.behaviours = new TriggerBehaviour[kinds.length];
+        this.destinations = new int[kinds.length];
+        this.plans = new TransitionPlan[kinds.length];
+        this.transitions = new Transition[kinds.length];
+        Arrays.fill(kinds, RESOLVE);
+        for (int s = 0; s < stateCount; s++) {
+            for (int t = 0; t < triggerCount; t++) {
+                resolve(states.get(s), s, t);
+            }
+        }
+    }
+
+    private void resolve(S source, int s, int t) {
+        int key = s * triggerCount + t;
+        HandlerChain<S, T, C> chain = compiled.getHandlerChain(s, t);
+        if (chain == null) {
+            kinds[key] = UNHANDLED;
+            return;
+        }
+        TriggerBehaviour<S, T, C> unconditional = chain.getUnconditional();
+        if (unconditional != null && unconditional.isInternal()) {
+            kinds[key] = INTERNAL;
+            behaviours[key] = unconditional;
+        } else if (unconditional instanceof TransitioningTriggerBehaviour) {
+            S destination = unconditional.transitionsTo(source, null);
+            TransitionPlan<S, T, C> plan = compiled.getTransitionPlan(source, destination);
+            kinds[key] = TRANSITION;
+            behaviours[key] = unconditional;
+            destinations[key] = destination.ordinal();
+            plans[key] = plan;
+            transitions[key] = plan.transitionFor(source, destination, triggers.get(t));
+        }
+    }
+
+    /**
+     * The fleet the triggers are fired for
+     *
+     * @return The fleet
+     */
+    public StateMachineFleet<S, T, C> getFleet() {
+        return fleet;
+    }
+
+    /**
+     * The number of slots
+     *
+     * @return The capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * The number of primitive arguments every slot holds
+     *
+     * @return The number of arguments
+     */
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    /**
+     * Claim the next slot, waiting while the ring buffer is full. The slot must be filled in with
+     * {@link #set(long, int, Object)} and then published with {@link #publish(long)}; the drain stops at a claimed
+     * slot until it is.
+     *
+     * @return The sequence of the claimed slot
+     */
+    public long claim() {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - released.get() > mask) {
+            Thread.yield();
+        }
+        return sequence;
+    }
+
+    /**
+     * Claim the next slot unless the ring buffer is full
+     *
+     * @return The sequence of the claimed slot, or -1 if all slots are taken
+     */
+    public long tryClaim() {
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence - released.get() > mask) {
+                return -1;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * Fill in the entity and the trigger of a claimed slot. The arguments keep the values they were last set to,
+     * unless set with {@link #setArgument(long, int, long)}.
+     *
+     * @param sequence The sequence of the slot
+     * @param entityId The id of the entity
+     * @param trigger  The trigger
+     */
+    public void set(long sequence, int entityId, T trigger) {
+        if (entityId < 0 || entityId >= fleet.size()) {
+            throw new IndexOutOfBoundsException("Entity " + entityId + " is not between 0 and " + (fleet.size() - 1));
+        }
+        int index = (int) sequence & mask;
+        entityIds[index] = entityId;
+        triggerIndices[index] = compiled.indexOfTrigger(trigger);
+    }
+
+    /**
+     * Set an argument of a claimed slot
+     *
+     * @param sequence The sequence of the slot
+     * @param argument The position of the argument, from 0 to {@link #getArgumentCount()} - 1
+     * @param value    The value
+     */
+    public void setArgument(long sequence, int argument, long value) {
+        if (argument < 0 || argument >= argumentCount) {
+            throw new IndexOutOfBoundsException("Argument " + argument + " is not between 0 and " + (argumentCount - 1));
+        }
+        arguments[((int) sequence & mask) * argumentCount + argument] = value;
+    }
+
+    /**
+     * Publish a filled in slot to the draining thread
+     *
+     * @param sequence The sequence of the slot
+     */
+    public void publish(long sequence) {
+        publishedRounds.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+    }
+
+    /**
+     * Claim, fill in and publish a slot, waiting while the ring buffer is full
+     *
+     * @param entityId The id of the entity
+     * @param trigger  The trigger
+     */
+    public void publish(int entityId, T trigger) {
+        long sequence = claim();
+        set(sequence, entityId, trigger);
+        publish(sequence);
+    }
+
+    /**
+     * Claim, fill in and publish a slot with one argument, waiting while the ring buffer is full
+     *
+     * @param entityId The id of the entity
+     * @param trigger  The trigger
+     * @param argument The first argument
+     */
+    public void publish(int entityId, T trigger, long argument) {
+        long sequence = claim();
+        set(sequence, entityId, trigger);
+        setArgument(sequence, 0, argument);
+        publish(sequence);
+    }
+
+    /**
+     * Replace the handler of exceptions thrown while firing a slot, which by default passes them to the uncaught
+     * exception handler of the draining thread
+     *
+     * @param errorHandler Called with the slot and the exception, on the draining thread. An exception it throws is
+     *                     passed to the uncaught exception handler of the thread.
+     */
+    public void onError(BiConsumer<TriggerSlot<T>, RuntimeException> errorHandler) {
+        Objects.requireNonNull(errorHandler, "errorHandler must not be null");
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Set the callback run at the end of every batch, after its slots have been released. It receives an array whose
+     * first elements are the ids of the entities whose state changed in the batch, in the order they changed and
+     * possibly more than once, and the number of these ids. The array is reused, and must not be kept.
+     *
+     * @param batchEndCallback The callback, or null for none
+     */
+    public void onBatchEnd(ObjIntConsumer<int[]> batchEndCallback) {
+        this.batchEndCallback = batchEndCallback;
+    }
+
+    /**
+     * Fire the published slots, up to the capacity of the ring buffer
+     *
+     * @return The number of slots fired
+     */
+    public int drain() {
+        return drain(mask + 1);
+    }
+
+    /**
+     * Fire the published slots in sequence order, up to the first claimed slot that is not published yet, as one
+     * batch. Must not be called by two threads at once.
+     *
+     * @param maxBatch The maximum number of slots to fire
+     * @return The number of slots fired
+     */
+    public int drain(int maxBatch) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be positive, was " + maxBatch);
+        }
+        long first = released.get();
+        long end = first;
+        long limit = first + Math.min(maxBatch, mask + 1);
+        while (end < limit && publishedRounds.get((int) end & mask) == (int) (end >>> indexShift)) {
+            end++;
+        }
+        if (end == first) {
+            return 0;
+        }
+
+        int changedCount = 0;
+        long unhandled = 0;
+        // the first slot not fired yet, advanced before a slot is fired so that a failing one is released too
+        long next = first;
+        try {
+            while (next < end) {
+                long sequence = next++;
+                int index = (int) sequence & mask;
+                int entityId = entityIds[index];
+                int source = fleet.ordinalOf(entityId);
+                slot.moveTo(sequence, index);
+                try {
+                    int destination = fire(entityId, source, triggerIndices[index]);
+                    if (destination < 0) {
+                        unhandled++;
+                    } else if (destination != source) {
+                        changed[changedCount++] = entityId;
+                    }
+                } catch (RuntimeException | Error e) {
+                    if (fleet.ordinalOf(entityId) != source) {
+                        // an entry action threw after the state was changed
+                        changed[changedCount++] = entityId;
+                    }
+                    Failures.report(e, failure -> errorHandler.accept(slot, failure));
+                }
+            }
+        } finally {
+            released.lazySet(next);
+
+            int count = (int) (next - first);
+            batches++;
+            drainedTriggers += count;
+            unhandledTriggers += unhandled;
+            ObjIntConsumer<int[]> batchEndCallback = this.batchEndCallback;
+            if (batchEndCallback != null) {
+                batchEndCallback.accept(changed, changedCount);
+            }
+        }
+        return (int) (next - first);
+    }
+
+    /**
+     * Fire the trigger of the current slot
+     *
+     * @return The ordinal of the new state of the entity, or -1 if the trigger is not permitted
+     */
+    private int fire(int entityId, int source, int t) {
+        if (t < 0) {
+            return -1;
+        }
+        if (source >= stateCount) {
+            return fireResolving(entityId, t);
+        }
+        int key = source * triggerCount + t;
+        switch (kinds[key]) {
+            case UNHANDLED:
+                return -1;
+            case INTERNAL:
+                behaviours[key].performAction(contexts.apply(slot));
+                return source;
+            case TRANSITION:
+                C context = contexts.apply(slot);
+                Transition<S, T> transition = transitions[key];
+                TransitionPlan<S, T, C> plan = plans[key];
+                plan.exit(transition, context);
+                behaviours[key].performAction(context);
+                fleet.setOrdinal(entityId, destinations[key]);
+                plan.enter(transition, context);
+                return destinations[key];
+            default:
+                return fireResolving(entityId, t);
+        }
+    }
+
+    private int fireResolving(int entityId, int t) {
+        FireOutcome<S> outcome = fleet.tryFire(entityId, triggers.get(t), contexts.apply(slot));
+        return outcome.isHandled() ? outcome.getState().ordinal() : -1;
+    }
+
+    int entityIdAt(int index) {
+        return entityIds[index];
+    }
+
+    T triggerAt(int index) {
+        int t = triggerIndices[index];
+        return t < 0 ? null : triggers.get(t);
+    }
+
+    long argumentAt(int index, int argument) {
+        if (argument < 0 || argument >= argumentCount) {
+            throw new IndexOutOfBoundsException("Argument " + argument + " is not between 0 and " + (argumentCount - 1));
+        }
+        return arguments[index * argumentCount + argument];
+    }
+
+    /**
+     * The number of slots claimed and not yet fired
+     *
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return (int) Math.max(0, claimed.get() - released.get());
+    }
+
+    /**
+     * The number of batches drained so far
+     *
+     * @return The number of batches
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * The number of slots fired so far
+     *
+     * @return The number of drained triggers
+     */
+    public long getDrainedTriggers() {
+        return drainedTriggers;
+    }
+
+    /**
+     * The number of slots whose trigger was not permitted in the state of their entity so far
+     *
+     * @return The number of unhandled triggers
+     */
+    public long getUnhandledTriggers() {
+        return unhandledTriggers;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "TriggerRingBuffer {{ Capacity = %d, QueueDepth = %d, Batches = %d, DrainedTriggers = %d }}",
+            getCapacity(), getQueueDepth(), batches, drainedTriggers);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * A published slot of a {@link TriggerRingBuffer}, as seen by the draining thread: the entity, the trigger and the
+ * primitive arguments.
+ * <p>
+ * The same instance is reused for every slot, so it must not be kept once the callback it was passed to returns.
+ *
+ * @param <T> The type used to represent the triggers
+ */
+public final class TriggerSlot<T> {
+
+    private final TriggerRingBuffer<?, T, ?> ring;
+    private long sequence;
+    private int index;
+
+    TriggerSlot(TriggerRingBuffer<?, T, ?> ring) {
+        this.ring = ring;
+    }
+
+    void moveTo(long sequence, int index) {
+        this.sequence = sequence;
+        this.index = index;
+    }
+
+    /**
+     * The position of the slot in the sequence of all slots published to the ring buffer
+     *
+     * @return The sequence
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * The id of the entity the trigger is fired for
+     *
+     * @return The id of the entity
+     */
+    public int getEntityId() {
+        return ring.entityIdAt(index);
+    }
+
+    /**
+     * The trigger
+     *
+     * @return The trigger, or null if it is not known to the configuration
+     */
+    public T getTrigger() {
+        return ring.triggerAt(index);
+    }
+
+    /**
+     * The number of arguments every slot holds
+     *
+     * @return The number of arguments
+     */
+    public int getArgumentCount() {
+        return ring.getArgumentCount();
+    }
+
+    /**
+     * An argument of the trigger
+     *
+     * @param argument The position of the argument, from 0 to {@link #getArgumentCount()} - 1
+     * @return The argument; one the producer did not set keeps the value it was last set to in this slot, 0 if it
+     *         never was
+     */
+    public long getArgument(int argument) {
+        return ring.argumentAt(index, argument);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TriggerSlot {{ Sequence = %d, EntityId = %d, Trigger = %s }}", sequence, getEntityId(), getTrigger());
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.oxo42.stateless4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to the virtual threads of Java 21 and later, while the library itself still runs on Java 8.
+ * <p>
+ * {@code Executors.newVirtualThreadPerTaskExecutor()} is looked up once, reflectively, so that an
+ * {@link AsyncStateMachine} can drain its triggers on virtual threads where the running JDK has them and fall back to
+ * any other executor where it has not.
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findNewVirtualThreadPerTaskExecutor();
+
+    private VirtualThreads() {
+    }
+
+    private static MethodHandle findNewVirtualThreadPerTaskExecutor() {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().findStatic(Executors.class,
+                "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            // on Java 19 and 20 the method exists, but throws unless preview features are enabled
+            ((ExecutorService) handle.invokeExact()).shutdown();
+            return handle;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * True if the running JDK supports virtual threads
+     *
+     * @return True if {@link #newVirtualThreadPerTaskExecutor()} returns an executor
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for every task
+     *
+     * @return The executor, or empty if the running JDK does not support virtual threads
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of((ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact());
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.oxo42.stateless4j.delegates;
+
+/**
+ * Represents an operation that accepts two int inputs and returns no result
+ */
+@FunctionalInterface
+public interface IntAction2 {
+
+    /**
+     * Performs this operation on the given input
+     *
+     * @param arg1 Input argument
+     * @param arg2 Input argument
+     */
+    void doIt(int arg1, int arg2);
+}
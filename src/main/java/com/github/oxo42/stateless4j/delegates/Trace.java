@@ -1,5 +1,7 @@
 package com.github.oxo42.stateless4j.delegates;
 
+import com.github.oxo42.stateless4j.MailboxPolicy;
+
 /**
  * Tracing delegate allows one to investigate state machine working at runtime.
  *
@@ -26,4 +28,16 @@ public interface Trace<S, T> {
      * @param destination Destination state
      */
     void transition(T trigger, S source, S destination);
+
+    /**
+     * This callback is called each time a bounded mailbox in front of the state machine discards a trigger: when it
+     * rejects the trigger, drops it as the oldest queued trigger, or merges it into an equal queued trigger. It is
+     * called on the thread that offered the trigger. The default implementation does nothing.
+     *
+     * @param trigger The discarded trigger
+     * @param reason {@link MailboxPolicy#REJECT}, {@link MailboxPolicy#DROP_OLDEST} or {@link MailboxPolicy#COALESCE}
+     * @param queueDepth The number of triggers queued in the mailbox
+     */
+    default void discarded(T trigger, MailboxPolicy reason, int queueDepth) {
+    }
 }
@@ -0,0 +1,276 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class AsyncActionTests {
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final List<String> events = new ArrayList<>();
+    private final CompletableFuture<Void> pending = new CompletableFuture<>();
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void awaitAndRunTasks(CompletableFuture<?> future) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!future.isDone() && System.nanoTime() < deadline) {
+            runTasks();
+            Thread.sleep(1);
+        }
+    }
+
+    private AsyncStateMachine<State, Trigger, Void> create(StateMachineConfig<State, Trigger, Void> config) {
+        return new AsyncStateMachine<>(new StateMachine<>(State.A, null, config), tasks::add);
+    }
+
+    @Test
+    public void NextTriggerWaitsForAnAsyncEntryAction() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntryAsync(c -> {
+                events.add("enteringB");
+                return pending;
+            })
+            .onEntry(c -> events.add("enteredB"))
+            .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+            .onEntry(c -> events.add("enterC"));
+        AsyncStateMachine<State, Trigger, Void> async = create(config);
+
+        CompletableFuture<Transition<State, Trigger>> x = async.fireAsync(Trigger.X);
+        async.fire(Trigger.Y);
+        runTasks();
+
+        assertEquals("[enteringB]", events.toString());
+        assertEquals(State.B, async.getMachine().getState());
+        assertFalse(x.isDone());
+        assertEquals(1, async.getQueueDepth());
+
+        pending.complete(null);
+        runTasks();
+
+        assertEquals("[enteringB, enteredB, enterC]", events.toString());
+        assertTrue(x.isDone());
+        assertEquals(State.C, async.getMachine().getState());
+    }
+
+    @Test
+    public void RejectedContinuationStillResumesTheDrain() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntryAsync(c -> pending)
+            .onEntry(c -> events.add("enteredB"))
+            .permit(Trigger.X, State.A);
+        AtomicBoolean rejecting = new AtomicBoolean();
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(new StateMachine<>(State.A, null, config),
+            task -> {
+                if (rejecting.get()) {
+                    throw new RejectedExecutionException("shut down");
+                }
+                tasks.add(task);
+            });
+
+        CompletableFuture<Transition<State, Trigger>> x = async.fireAsync(Trigger.X);
+        runTasks();
+        rejecting.set(true);
+        pending.complete(null);
+
+        // the rest of the entry actions could not be run either
+        assertTrue(x.isCompletedExceptionally());
+        assertEquals(State.B, async.getMachine().getState());
+        rejecting.set(false);
+        async.fire(Trigger.X);
+        runTasks();
+        assertEquals(State.A, async.getMachine().getState());
+    }
+
+    @Test
+    public void QueuedFiringModeAppliesToStagedTriggers() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        StateMachine<State, Trigger, Void>[] machine = new StateMachine[1];
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntryAsync(c -> pending)
+            .onEntry(c -> {
+                machine[0].fire(Trigger.Y);
+                events.add("enteredB in " + machine[0].getState());
+            })
+            .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+            .onEntry(c -> events.add("enteredC"));
+        machine[0] = new StateMachine<>(State.A, null, config);
+        machine[0].setFiringMode(FiringMode.QUEUED);
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(machine[0], tasks::add);
+
+        CompletableFuture<?> x = async.fireAsync(Trigger.X);
+        runTasks();
+        pending.complete(null);
+        runTasks();
+
+        assertTrue(x.isDone());
+        assertEquals("[enteredB in B, enteredC]", events.toString());
+        assertEquals(State.C, machine[0].getState());
+    }
+
+    @Test
+    public void StateChangesOnceAsyncExitAndTransitionActionsComplete() {
+        CompletableFuture<Void> transitioned = new CompletableFuture<>();
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .onExitAsync(c -> pending)
+            .permitAsync(Trigger.X, State.B, c -> transitioned);
+        AsyncStateMachine<State, Trigger, Void> async = create(config);
+
+        async.fire(Trigger.X);
+        runTasks();
+        assertEquals(State.A, async.getMachine().getState());
+
+        pending.complete(null);
+        runTasks();
+        assertEquals(State.A, async.getMachine().getState());
+
+        transitioned.complete(null);
+        runTasks();
+        assertEquals(State.B, async.getMachine().getState());
+    }
+
+    @Test
+    public void ContinuationFiringIntoAFullBlockingMailboxFails() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            AsyncStateMachine<State, Trigger, Void>[] async = new AsyncStateMachine[1];
+            config.configure(State.A)
+                .permit(Trigger.X, State.B);
+            config.configure(State.B)
+                .onEntryAsync(c -> pending)
+                .onEntry(c -> async[0].fire(Trigger.Y))
+                .ignore(Trigger.Z);
+            async[0] = new AsyncStateMachine<>(new StateMachine<>(State.A, null, config), executor,
+                AsyncStateMachine.DEFAULT_MAX_BATCH_PER_DRAIN, 1, MailboxPolicy.BLOCK);
+
+            CompletableFuture<Transition<State, Trigger>> x = async[0].fireAsync(Trigger.X);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (async[0].getQueueDepth() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            // fills the mailbox while the machine waits for the action
+            async[0].fire(Trigger.Z);
+            pending.complete(null);
+
+            try {
+                x.get(10, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void TimedOutActionAbortsTheTransition() throws InterruptedException {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .onExitAsync(c -> pending, 10, TimeUnit.MILLISECONDS, AsyncFailurePolicy.ABORT)
+            .permit(Trigger.X, State.B);
+        AsyncStateMachine<State, Trigger, Void> async = create(config);
+
+        CompletableFuture<Transition<State, Trigger>> x = async.fireAsync(Trigger.X);
+        awaitAndRunTasks(x);
+
+        try {
+            x.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(State.A, async.getMachine().getState());
+    }
+
+    @Test
+    public void FailedActionCanBeIgnored() throws Exception {
+        CompletableFuture<Void> failing = new CompletableFuture<>();
+        failing.completeExceptionally(new IllegalArgumentException("failed"));
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .onExitAsync(c -> failing, 0, TimeUnit.MILLISECONDS, AsyncFailurePolicy.CONTINUE)
+            .onExitAsync(c -> pending, 10, TimeUnit.MILLISECONDS, AsyncFailurePolicy.CONTINUE)
+            .permit(Trigger.X, State.B);
+        AsyncStateMachine<State, Trigger, Void> async = create(config);
+
+        CompletableFuture<Transition<State, Trigger>> x = async.fireAsync(Trigger.X);
+        awaitAndRunTasks(x);
+
+        assertEquals(State.B, x.get().getDestination());
+    }
+
+    @Test
+    public void FailedActionIsReportedToTheErrorHandler() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permitAsync(Trigger.X, State.B, c -> pending);
+        AsyncStateMachine<State, Trigger, Void> async = create(config);
+        List<String> errors = new ArrayList<>();
+        async.onError((trigger, e) -> errors.add(trigger + ": " + e.getMessage()));
+
+        async.fire(Trigger.X);
+        runTasks();
+        pending.completeExceptionally(new IllegalArgumentException("failed"));
+        runTasks();
+
+        assertEquals("[X: failed]", errors.toString());
+        assertEquals(State.A, async.getMachine().getState());
+    }
+
+    @Test
+    public void StateMachineWaitsForAsyncActions() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permitAsync(Trigger.X, State.B, c -> CompletableFuture.runAsync(() -> events.add("transition")));
+        config.configure(State.B)
+            .onEntryAsync(c -> CompletableFuture.runAsync(() -> events.add("enterB")))
+            .permitAsync(Trigger.X, State.C, c -> pending, 10, TimeUnit.MILLISECONDS, AsyncFailurePolicy.ABORT);
+        StateMachine<State, Trigger, Void> sm = new StateMachine<>(State.A, null, config);
+
+        sm.fire(Trigger.X);
+        assertEquals("[transition, enterB]", events.toString());
+        assertEquals(State.B, sm.getState());
+
+        try {
+            sm.fire(Trigger.X);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(State.B, sm.getState());
+    }
+}
@@ -0,0 +1,390 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.github.oxo42.stateless4j.delegates.Trace;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class AsyncStateMachineTests {
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final List<String> events = new ArrayList<>();
+
+    private StateMachine<State, Trigger, Void> createMachine() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .onEntry(c -> events.add("enterA"))
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntry(c -> events.add("enterB"))
+            .permit(Trigger.X, State.A);
+        return new StateMachine<>(State.A, null, config);
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+
+    @Test
+    public void FireOnlyQueuesTheTrigger() {
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(createMachine(), tasks::add);
+
+        async.fire(Trigger.X);
+        async.fire(Trigger.X);
+
+        assertEquals(State.A, async.getMachine().getState());
+        assertEquals(2, async.getQueueDepth());
+        assertEquals(1, tasks.size());
+
+        runTasks();
+
+        assertEquals("[enterB, enterA]", events.toString());
+        assertEquals(0, async.getQueueDepth());
+        assertEquals(1, async.getDrains());
+        assertEquals(2, async.getDrainedTriggers());
+        assertTrue(async.getMaxDrainNanos() <= async.getTotalDrainNanos());
+    }
+
+    @Test
+    public void DrainFiresAtMostTheMaximumBatch() {
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(createMachine(), tasks::add, 2);
+        for (int i = 0; i < 5; i++) {
+            async.fire(Trigger.X);
+        }
+
+        tasks.poll().run();
+        assertEquals(3, async.getQueueDepth());
+        assertEquals(1, tasks.size());
+
+        runTasks();
+        assertEquals(0, async.getQueueDepth());
+        assertEquals(3, async.getDrains());
+        assertEquals(State.B, async.getMachine().getState());
+    }
+
+    @Test
+    public void TriggersFiredByActionsRunAfterTheTransition() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        StateMachine<State, Trigger, Void> machine = new StateMachine<>(State.A, null, config);
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(machine, Runnable::run);
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntry(c -> {
+                async.fire(Trigger.Y);
+                events.add("enteredB");
+            })
+            .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+            .onEntry(c -> events.add("enterC"));
+
+        async.fire(Trigger.X);
+
+        assertEquals("[enteredB, enterC]", events.toString());
+        assertEquals(State.C, machine.getState());
+    }
+
+    @Test
+    public void ErrorsArePassedToTheHandlerAndTheDrainGoesOn() {
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(createMachine(), tasks::add);
+        List<String> errors = new ArrayList<>();
+        async.onError((trigger, e) -> errors.add(trigger + ": " + e.getClass().getSimpleName()));
+
+        async.fire(Trigger.Y);
+        async.fire(Trigger.X);
+        runTasks();
+
+        assertEquals("[Y: IllegalStateException]", errors.toString());
+        assertEquals(State.B, async.getMachine().getState());
+    }
+
+    @Test
+    public void ErrorsThrownByActionsDoNotStopTheMachine() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntry(c -> {
+                throw new AssertionError("enterB");
+            })
+            .permit(Trigger.Y, State.C);
+        AsyncStateMachine<State, Trigger, Void> async =
+            new AsyncStateMachine<>(new StateMachine<>(State.A, null, config), tasks::add);
+        List<String> errors = new ArrayList<>();
+        async.onError((trigger, e) -> errors.add(trigger + ": " + e.getCause().getMessage()));
+
+        async.fire(Trigger.X);
+        async.fire(Trigger.Y);
+        runTasks();
+
+        assertEquals("[X: enterB]", errors.toString());
+        assertEquals(State.C, async.getMachine().getState());
+    }
+
+    @Test
+    public void FailingErrorHandlerDoesNotStopTheMachine() {
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(createMachine(), tasks::add);
+        async.onError((trigger, e) -> {
+            throw new IllegalStateException("handler failed");
+        });
+        List<String> uncaught = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler previous = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e.getMessage()));
+        try {
+            async.fire(Trigger.Y);
+            async.fire(Trigger.X);
+            runTasks();
+        } finally {
+            thread.setUncaughtExceptionHandler(previous);
+        }
+
+        assertEquals("[handler failed]", uncaught.toString());
+        assertEquals(State.B, async.getMachine().getState());
+        assertEquals(0, async.getQueueDepth());
+    }
+
+    @Test
+    public void ManyProducersShareOnePool() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<AsyncStateMachine<State, Trigger, Void>> machines = new ArrayList<>();
+        AtomicInteger transitions = new AtomicInteger();
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntry(c -> transitions.incrementAndGet())
+            .permit(Trigger.X, State.A);
+        for (int i = 0; i < 100; i++) {
+            machines.add(new AsyncStateMachine<>(new StateMachine<>(State.A, null, config), pool, 8));
+        }
+
+        for (int p = 0; p < 4; p++) {
+            producers.execute(() -> {
+                for (int i = 0; i < 500; i++) {
+                    for (AsyncStateMachine<State, Trigger, Void> machine : machines) {
+                        machine.fire(Trigger.X);
+                    }
+                }
+            });
+        }
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(1, TimeUnit.MINUTES));
+        for (AsyncStateMachine<State, Trigger, Void> machine : machines) {
+            while (machine.getQueueDepth() > 0) {
+                Thread.sleep(1);
+            }
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(100 * 1000, transitions.get());
+        for (AsyncStateMachine<State, Trigger, Void> machine : machines) {
+            assertEquals(2000, machine.getDrainedTriggers());
+            assertEquals(State.A, machine.getMachine().getState());
+        }
+    }
+
+    @Test
+    public void FireAsyncCompletesOnceTheTransitionCompleted() throws Exception {
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(createMachine(), tasks::add);
+
+        CompletableFuture<Transition<State, Trigger>> first = async.fireAsync(Trigger.X);
+        CompletableFuture<Transition<State, Trigger>> second = async.fireAsync(Trigger.X);
+        assertFalse(first.isDone());
+
+        runTasks();
+
+        assertEquals(State.A, first.get().getSource());
+        assertEquals(State.B, first.get().getDestination());
+        assertEquals(Trigger.X, first.get().getTrigger());
+        assertEquals(State.A, second.get().getDestination());
+        assertEquals("[enterB, enterA]", events.toString());
+    }
+
+    @Test
+    public void FireAsyncCompletesExceptionallyWhenUnhandled() throws InterruptedException {
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(createMachine(), tasks::add);
+        List<String> errors = new ArrayList<>();
+        async.onError((trigger, e) -> errors.add(trigger.toString()));
+
+        CompletableFuture<Transition<State, Trigger>> future = async.fireAsync(Trigger.Y);
+        runTasks();
+
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals("[]", errors.toString());
+    }
+
+    @Test
+    public void DrainsCanRunOnVirtualThreads() throws Exception {
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor()
+            .orElseGet(Executors::newCachedThreadPool);
+        assertEquals(VirtualThreads.isSupported(), !(executor instanceof ThreadPoolExecutor));
+        try {
+            AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(createMachine(), executor);
+            async.fire(Trigger.X);
+            assertEquals(State.A, async.fireAsync(Trigger.X).get(1, TimeUnit.MINUTES).getDestination());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void MaxBatchMustBePositive() {
+        new AsyncStateMachine<>(createMachine(), Runnable::run, 0);
+    }
+
+    private Trace<State, Trigger> discardTrace(List<String> discarded) {
+        return new Trace<State, Trigger>() {
+            @Override
+            public void trigger(Trigger trigger) {
+            }
+
+            @Override
+            public void transition(Trigger trigger, State source, State destination) {
+            }
+
+            @Override
+            public void discarded(Trigger trigger, MailboxPolicy reason, int queueDepth) {
+                discarded.add(trigger + "/" + reason + "/" + queueDepth);
+            }
+        };
+    }
+
+    @Test
+    public void FullMailboxRejectsTriggers() {
+        StateMachine<State, Trigger, Void> machine = createMachine();
+        List<String> discarded = new ArrayList<>();
+        machine.setTrace(discardTrace(discarded));
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(machine, tasks::add, 64, 2, MailboxPolicy.REJECT);
+
+        assertEquals(FireResult.QUEUED, async.fire(Trigger.X));
+        assertEquals(FireResult.QUEUED, async.fire(Trigger.X));
+        assertEquals(FireResult.REJECTED, async.fire(Trigger.X));
+        CompletableFuture<Transition<State, Trigger>> rejected = async.fireAsync(Trigger.X);
+
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(2, async.getQueueDepth());
+        assertEquals(2, async.getRejectedTriggers());
+        assertEquals("[X/REJECT/2, X/REJECT/2]", discarded.toString());
+
+        runTasks();
+        assertEquals(State.A, machine.getState());
+        assertEquals(FireResult.QUEUED, async.fire(Trigger.X));
+    }
+
+    @Test
+    public void FullMailboxDropsTheOldestTrigger() throws InterruptedException {
+        AsyncStateMachine<State, Trigger, Void> async =
+            new AsyncStateMachine<>(createMachine(), tasks::add, 64, 2, MailboxPolicy.DROP_OLDEST);
+
+        CompletableFuture<Transition<State, Trigger>> oldest = async.fireAsync(Trigger.X);
+        async.fire(Trigger.X);
+        assertEquals(FireResult.QUEUED, async.fire(Trigger.Y));
+        async.onError((trigger, e) -> events.add(trigger + " failed"));
+
+        try {
+            oldest.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        runTasks();
+        assertEquals("[enterB, Y failed]", events.toString());
+        assertEquals(1, async.getDroppedTriggers());
+    }
+
+    @Test
+    public void FullMailboxCoalescesEqualTriggers() throws Exception {
+        AsyncStateMachine<State, Trigger, Void> async =
+            new AsyncStateMachine<>(createMachine(), tasks::add, 64, 2, MailboxPolicy.COALESCE);
+        async.onError((trigger, e) -> events.add(trigger + " failed"));
+
+        CompletableFuture<Transition<State, Trigger>> first = async.fireAsync(Trigger.X);
+        async.fire(Trigger.Y);
+        CompletableFuture<Transition<State, Trigger>> merged = async.fireAsync(Trigger.X);
+        assertEquals(FireResult.REJECTED, async.fire(Trigger.Z));
+        runTasks();
+
+        assertEquals("[enterB, Y failed]", events.toString());
+        assertEquals(State.B, merged.get().getDestination());
+        assertEquals(first.get().getDestination(), merged.get().getDestination());
+        assertEquals(1, async.getCoalescedTriggers());
+        assertEquals(1, async.getRejectedTriggers());
+    }
+
+    @Test
+    public void FullMailboxBlocksTheProducer() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Void> release = new CompletableFuture<>();
+            StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+            config.configure(State.A)
+                .permitReentry(Trigger.X)
+                .onEntry(c -> release.join());
+            AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(
+                new StateMachine<>(State.A, null, config), pool, 64, 1, MailboxPolicy.BLOCK);
+            async.fire(Trigger.X);
+            while (async.getQueueDepth() > 0) {
+                Thread.sleep(1);
+            }
+            async.fire(Trigger.X);
+
+            CompletableFuture<FireResult> blocked = CompletableFuture.supplyAsync(() -> async.fire(Trigger.X));
+            Thread.sleep(50);
+            assertFalse(blocked.isDone());
+
+            release.complete(null);
+            assertEquals(FireResult.QUEUED, blocked.get(1, TimeUnit.MINUTES));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void BlockingOnTheOwnFullMailboxFromAnActionFails() {
+        List<String> errors = new ArrayList<>();
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        AtomicReference<AsyncStateMachine<State, Trigger, Void>> self = new AtomicReference<>();
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntry(c -> {
+                self.get().fire(Trigger.Y);
+                self.get().fire(Trigger.Y);
+            })
+            .ignore(Trigger.Y);
+        self.set(new AsyncStateMachine<>(new StateMachine<>(State.A, null, config), tasks::add, 64, 1, MailboxPolicy.BLOCK));
+        self.get().onError((trigger, e) -> errors.add(trigger + ": " + e.getClass().getSimpleName()));
+
+        self.get().fire(Trigger.X);
+        runTasks();
+
+        assertEquals("[X: IllegalStateException]", errors.toString());
+        assertEquals(State.B, self.get().getMachine().getState());
+    }
+}
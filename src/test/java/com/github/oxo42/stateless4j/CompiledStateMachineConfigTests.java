@@ -0,0 +1,230 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class CompiledStateMachineConfigTests {
+
+    @Test
+    public void EnumStatesAndTriggersAreIndexedByOrdinal() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.B).permit(Trigger.Y, State.C);
+
+        CompiledStateMachineConfig<State, Trigger, Void> compiled = config.compile();
+
+        for (State state : State.values()) {
+            assertEquals(state.ordinal(), compiled.indexOfState(state));
+        }
+        for (Trigger trigger : Trigger.values()) {
+            assertEquals(trigger.ordinal(), compiled.indexOfTrigger(trigger));
+        }
+    }
+
+    @Test
+    public void CompileReturnsSameInstance() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A).permit(Trigger.X, State.B);
+
+        assertFalse(config.isCompiled());
+        assertSame(config.compile(), config.compile());
+        assertTrue(config.isCompiled());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void ConfigureAfterCompileFails() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A).permit(Trigger.X, State.B);
+        config.compile();
+
+        config.configure(State.B);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void ChangingRetainedStateConfigurationAfterCompileFails() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        StateConfiguration<State, Trigger, Void> configuration = config.configure(State.A);
+        config.compile();
+
+        configuration.permit(Trigger.X, State.B);
+    }
+
+    @Test
+    public void CompiledMachineFollowsTransitions() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A).permit(Trigger.X, State.B);
+        config.configure(State.B).permit(Trigger.Y, State.A);
+        config.compile();
+
+        StateMachine<State, Trigger, Void> sm = new StateMachine<>(State.A, null, config);
+        sm.fire(Trigger.X);
+        assertEquals(State.B, sm.getState());
+        sm.fire(Trigger.Y);
+        assertEquals(State.A, sm.getState());
+    }
+
+    @Test
+    public void CompiledMachineFindsSuperstateHandlers() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.B).substateOf(State.C);
+        config.configure(State.C).permit(Trigger.X, State.A);
+        CompiledStateMachineConfig<State, Trigger, Void> compiled = config.compile();
+
+        assertEquals(State.A, compiled.tryFindHandler(State.B, Trigger.X, null).transitionsTo(State.B, null));
+        assertNull(compiled.tryFindHandler(State.B, Trigger.Y, null));
+        assertNull(compiled.tryFindHandler(State.A, Trigger.X, null));
+    }
+
+    @Test
+    public void CompiledMachineRespectsGuards() {
+        StateMachineConfig<State, Trigger, Boolean> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permitIf(Trigger.X, State.B, c -> c)
+            .permitIf(Trigger.X, State.C, c -> !c);
+        config.compile();
+
+        StateMachine<State, Trigger, Boolean> sm = new StateMachine<>(State.A, false, config);
+        assertTrue(sm.canFire(Trigger.X));
+        sm.fire(Trigger.X);
+        assertEquals(State.C, sm.getState());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void CompiledMachineRejectsOverlappingGuards() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permitIf(Trigger.X, State.B, c -> true)
+            .permitIf(Trigger.X, State.C, c -> true);
+        config.compile();
+
+        new StateMachine<>(State.A, null, config).fire(Trigger.X);
+    }
+
+    @Test
+    public void NonEnumStatesCanBeCompiled() {
+        StateMachineConfig<String, String, Void> config = new StateMachineConfig<>();
+        config.configure("StateA").permit("TriggerX", "StateB");
+        CompiledStateMachineConfig<String, String, Void> compiled = config.compile();
+
+        StateMachine<String, String, Void> sm = new StateMachine<>("StateA", null, config);
+        sm.fire("TriggerX");
+
+        assertEquals("StateB", sm.getState());
+        assertEquals(-1, compiled.indexOfState("StateC"));
+        assertFalse(sm.canFire("TriggerY"));
+    }
+
+    @Test
+    public void IsInStateIncludesSuperstates() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A).substateOf(State.B);
+        config.configure(State.B).substateOf(State.C);
+        CompiledStateMachineConfig<State, Trigger, Void> compiled = config.compile();
+
+        assertTrue(compiled.isInState(State.A, State.A));
+        assertTrue(compiled.isInState(State.A, State.B));
+        assertTrue(compiled.isInState(State.A, State.C));
+        assertFalse(compiled.isInState(State.B, State.A));
+        assertTrue(new StateMachine<>(State.A, null, config).isInState(State.C));
+    }
+
+    @Test
+    public void IsInStateCoversDeepHierarchies() {
+        StateMachineConfig<String, String, Void> config = new StateMachineConfig<>();
+        for (int i = 1; i < 100; i++) {
+            config.configure("S" + i).substateOf("S" + (i - 1));
+        }
+        CompiledStateMachineConfig<String, String, Void> compiled = config.compile();
+
+        assertTrue(compiled.isInState("S99", "S0"));
+        assertTrue(compiled.isInState("S99", "S70"));
+        assertTrue(compiled.isInState("S70", "S63"));
+        assertFalse(compiled.isInState("S63", "S70"));
+        assertFalse(compiled.isInState("S99", "Unknown"));
+        assertTrue(compiled.isInState("Unknown", "Unknown"));
+    }
+
+    @Test
+    public void InheritedHandlersFoundFromDeepSubstates() {
+        StateMachineConfig<String, String, Void> config = new StateMachineConfig<>();
+        config.configure("S0").permit("Reset", "Idle");
+        for (int i = 1; i < 10; i++) {
+            config.configure("S" + i).substateOf("S" + (i - 1));
+        }
+        config.configure("S5").permit("Reset", "S0");
+        config.compile();
+
+        StateMachine<String, String, Void> deep = new StateMachine<>("S9", null, config);
+        deep.fire("Reset");
+        assertEquals("S0", deep.getState());
+
+        StateMachine<String, String, Void> shallow = new StateMachine<>("S4", null, config);
+        shallow.fire("Reset");
+        assertEquals("Idle", shallow.getState());
+    }
+
+    @Test
+    public void SuperstateHandlesTriggerWhenSubstateGuardsAreNotMet() {
+        StateMachineConfig<State, Trigger, Boolean> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .substateOf(State.B)
+            .permitIf(Trigger.X, State.C, c -> c);
+        config.configure(State.B)
+            .permit(Trigger.X, State.A);
+        config.compile();
+
+        StateMachine<State, Trigger, Boolean> sm = new StateMachine<>(State.A, false, config);
+        sm.fire(Trigger.X);
+
+        assertEquals(State.A, sm.getState());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void CyclicSuperstatesCannotBeCompiled() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A).substateOf(State.B);
+        config.configure(State.B).substateOf(State.A);
+
+        config.compile();
+    }
+
+    @Test
+    public void PermittedTriggersOfUnguardedStateAreShared() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .substateOf(State.C)
+            .permit(Trigger.X, State.B)
+            .ignore(Trigger.Y);
+        config.configure(State.C)
+            .permit(Trigger.Z, State.B);
+        config.compile();
+
+        StateMachine<State, Trigger, Void> sm = new StateMachine<>(State.A, null, config);
+        List<Trigger> permitted = sm.getPermittedTriggers();
+
+        assertEquals(Arrays.asList(Trigger.X, Trigger.Y, Trigger.Z), permitted);
+        assertSame(permitted, sm.getPermittedTriggers());
+    }
+
+    @Test
+    public void PermittedTriggersOnlyEvaluateConditionalGuards() {
+        int[] evaluations = new int[1];
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permit(Trigger.X, State.B)
+            .permitIf(Trigger.Y, State.B, c -> ++evaluations[0] < 0)
+            .permitIf(Trigger.Z, State.C, c -> true);
+        config.compile();
+
+        StateMachine<State, Trigger, Void> sm = new StateMachine<>(State.A, null, config);
+
+        assertEquals(Arrays.asList(Trigger.X, Trigger.Z), sm.getPermittedTriggers());
+        assertEquals(1, evaluations[0]);
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.github.oxo42.stateless4j.delegates.Trace;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ConcurrentStateMachineTests {
+
+    private static final int THREADS = 4;
+    private static final int FIRES_PER_THREAD = 20000;
+
+    private final AtomicInteger enteredA = new AtomicInteger();
+    private final AtomicInteger enteredB = new AtomicInteger();
+    private final AtomicInteger exitedA = new AtomicInteger();
+
+    private StateMachineConfig<State, Trigger, Void> configure() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .onEntry(c -> enteredA.incrementAndGet())
+            .onExit(c -> exitedA.incrementAndGet())
+            .permit(Trigger.X, State.B)
+            .ignore(Trigger.Y);
+        config.configure(State.B)
+            .onEntry(c -> enteredB.incrementAndGet())
+            .permit(Trigger.X, State.A)
+            .permit(Trigger.Z, State.C);
+        config.configure(State.C)
+            .substateOf(State.B);
+        return config;
+    }
+
+    private static void runConcurrently(Runnable task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run();
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("[]", failures.toString());
+    }
+
+    @Test
+    public void FiresLikeStateMachine() {
+        ConcurrentStateMachine<State, Trigger, Void> sm = new ConcurrentStateMachine<>(State.A, null, configure());
+
+        assertEquals(FireResult.IGNORED, sm.tryFire(Trigger.Y));
+        sm.fire(Trigger.X);
+        sm.fire(Trigger.Z);
+
+        assertEquals(State.C, sm.getState());
+        assertTrue(sm.isInState(State.B));
+        assertTrue(sm.canFire(Trigger.X));
+        assertFalse(sm.canFire(Trigger.Y));
+        assertEquals(1, enteredB.get());
+        assertEquals(1, exitedA.get());
+    }
+
+    @Test
+    public void UnhandledTriggerIsReported() {
+        ConcurrentStateMachine<State, Trigger, Void> sm = new ConcurrentStateMachine<>(State.A, null, configure());
+        List<String> unhandled = new ArrayList<>();
+        sm.onUnhandledTrigger((state, trigger) -> unhandled.add(state + "/" + trigger));
+
+        assertEquals(FireResult.UNHANDLED, sm.tryFire(Trigger.Z));
+        sm.fire(Trigger.Z);
+
+        assertEquals("[A/Z]", unhandled.toString());
+    }
+
+    @Test
+    public void ToStringNamesTheClass() {
+        ConcurrentStateMachine<State, Trigger, Void> sm = new ConcurrentStateMachine<>(State.B, null, configure());
+
+        assertEquals("ConcurrentStateMachine {{ State = B, PermittedTriggers = {{ X,Z }}}}", sm.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void UnhandledTriggerThrowsByDefault() {
+        new ConcurrentStateMachine<>(State.A, null, configure()).fire(Trigger.Z);
+    }
+
+    @Test
+    public void InitialTransitionEntersTheInitialState() {
+        ConcurrentStateMachine<State, Trigger, Void> sm = new ConcurrentStateMachine<>(State.A, null, configure());
+        sm.fireInitialTransition();
+        assertEquals(1, enteredA.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void InitialTransitionCannotFollowFire() {
+        ConcurrentStateMachine<State, Trigger, Void> sm = new ConcurrentStateMachine<>(State.A, null, configure());
+        sm.fire(Trigger.Y);
+        sm.fireInitialTransition();
+    }
+
+    @Test
+    public void EveryConcurrentTransitionIsCommittedOnceAndRunsItsActionsOnce() throws InterruptedException {
+        ConcurrentStateMachine<State, Trigger, Void> sm = new ConcurrentStateMachine<>(State.A, null, configure());
+        AtomicInteger transitions = new AtomicInteger();
+        sm.setTrace(new Trace<State, Trigger>() {
+            @Override
+            public void trigger(Trigger trigger) {
+            }
+
+            @Override
+            public void transition(Trigger trigger, State source, State destination) {
+                transitions.incrementAndGet();
+            }
+        });
+
+        runConcurrently(() -> {
+            for (int i = 0; i < FIRES_PER_THREAD; i++) {
+                assertEquals(FireResult.ACCEPTED, sm.tryFire(Trigger.X));
+            }
+        });
+
+        assertEquals(THREADS * FIRES_PER_THREAD, transitions.get());
+        assertEquals(THREADS * FIRES_PER_THREAD / 2, enteredA.get());
+        assertEquals(THREADS * FIRES_PER_THREAD / 2, enteredB.get());
+        assertEquals(State.A, sm.getState());
+    }
+
+    @Test
+    public void OnlyOneRacingThreadLeavesAState() throws InterruptedException {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .onExit(c -> exitedA.incrementAndGet())
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .ignore(Trigger.X);
+        for (int round = 0; round < 200; round++) {
+            ConcurrentStateMachine<State, Trigger, Void> sm = new ConcurrentStateMachine<>(State.A, null, config);
+            AtomicInteger accepted = new AtomicInteger();
+            runConcurrently(() -> {
+                if (sm.tryFire(Trigger.X) == FireResult.ACCEPTED) {
+                    accepted.incrementAndGet();
+                }
+            });
+            assertEquals(1, accepted.get());
+            assertEquals(State.B, sm.getState());
+        }
+        assertEquals(200, exitedA.get());
+    }
+}
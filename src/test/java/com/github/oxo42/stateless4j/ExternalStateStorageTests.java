@@ -0,0 +1,87 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ExternalStateStorageTests {
+
+    private State stored;
+    private int reads;
+    private final List<String> actions = new ArrayList<>();
+
+    private StateMachine<State, Trigger, Void> createMachine(StateMachineConfig<State, Trigger, Void> config) {
+        return new StateMachine<>(State.A, null, () -> {
+            reads++;
+            return stored;
+        }, s -> stored = s, config);
+    }
+
+    private StateMachineConfig<State, Trigger, Void> createConfig() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .onExit(c -> actions.add("exit A"))
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .substateOf(State.C)
+            .onEntry(c -> actions.add("enter B"))
+            .permit(Trigger.Y, State.A);
+        config.configure(State.C)
+            .onEntry(c -> actions.add("enter C"));
+        return config;
+    }
+
+    @Test
+    public void FireReadsStateOnce() {
+        StateMachine<State, Trigger, Void> sm = createMachine(createConfig());
+
+        reads = 0;
+        sm.fire(Trigger.X);
+
+        assertEquals(1, reads);
+        assertEquals(State.B, stored);
+        assertEquals("[exit A, enter C, enter B]", actions.toString());
+    }
+
+    @Test
+    public void FireReadsStateOnceWhenCompiled() {
+        StateMachineConfig<State, Trigger, Void> config = createConfig();
+        config.compile();
+        StateMachine<State, Trigger, Void> sm = createMachine(config);
+
+        reads = 0;
+        sm.fire(Trigger.X);
+        sm.fire(Trigger.Y);
+
+        assertEquals(2, reads);
+        assertEquals(State.A, stored);
+    }
+
+    @Test
+    public void StateChangedInStorageIsHonoured() {
+        StateMachine<State, Trigger, Void> sm = createMachine(createConfig());
+        assertTrue(sm.canFire(Trigger.X));
+
+        stored = State.B;
+
+        assertFalse(sm.canFire(Trigger.X));
+        assertTrue(sm.isInState(State.C));
+        sm.fire(Trigger.Y);
+        assertEquals(State.A, stored);
+    }
+
+    @Test
+    public void StateConfiguredAfterFirstUseIsHonoured() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        StateMachine<State, Trigger, Void> sm = createMachine(config);
+        assertFalse(sm.canFire(Trigger.X));
+
+        config.configure(State.A).permit(Trigger.X, State.B);
+
+        assertTrue(sm.canFire(Trigger.X));
+    }
+}
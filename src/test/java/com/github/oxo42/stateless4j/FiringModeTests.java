@@ -0,0 +1,174 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.github.oxo42.stateless4j.delegates.Trace;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class FiringModeTests {
+
+    private final List<String> events = new ArrayList<>();
+
+    private StateMachine<State, Trigger, Void> create(FiringMode firingMode) {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        StateMachine<State, Trigger, Void> sm = new StateMachine<>(State.A, null, config);
+        config.configure(State.A)
+            .onExit(c -> events.add("exitA"))
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntry(c -> {
+                events.add("enterB");
+                events.add("fired " + sm.tryFire(Trigger.Y));
+                events.add("enteredB");
+            })
+            .onExit(c -> events.add("exitB"))
+            .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+            .onEntry(c -> events.add("enterC"));
+        sm.setFiringMode(firingMode);
+        sm.setTrace(new Trace<State, Trigger>() {
+            @Override
+            public void trigger(Trigger trigger) {
+                events.add("trigger " + trigger);
+            }
+
+            @Override
+            public void transition(Trigger trigger, State source, State destination) {
+                events.add("transition " + source + "->" + destination);
+            }
+        });
+        return sm;
+    }
+
+    @Test
+    public void ImmediateModeFiresInTheMiddleOfTheTransition() {
+        StateMachine<State, Trigger, Void> sm = create(FiringMode.IMMEDIATE);
+        assertEquals(FireResult.ACCEPTED, sm.tryFire(Trigger.X));
+        assertEquals(State.C, sm.getState());
+        assertEquals("[trigger X, exitA, enterB, trigger Y, exitB, enterC, transition B->C, fired ACCEPTED, enteredB, "
+            + "transition A->B]", events.toString());
+    }
+
+    @Test
+    public void QueuedModeFiresOnceTheTransitionCompleted() {
+        StateMachine<State, Trigger, Void> sm = create(FiringMode.QUEUED);
+        assertEquals(FireResult.ACCEPTED, sm.tryFire(Trigger.X));
+        assertEquals(State.C, sm.getState());
+        assertEquals("[trigger X, exitA, enterB, fired QUEUED, enteredB, transition A->B, "
+            + "trigger Y, exitB, enterC, transition B->C]", events.toString());
+    }
+
+    @Test
+    public void CascadingTriggersDoNotGrowTheStack() {
+        StateMachineConfig<State, Trigger, int[]> config = new StateMachineConfig<>();
+        int[] remaining = {1000000};
+        StateMachine<State, Trigger, int[]> sm = new StateMachine<>(State.A, remaining, config);
+        config.configure(State.A)
+            .onEntry(r -> {
+                if (--r[0] > 0) {
+                    sm.fire(Trigger.X);
+                }
+            })
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntry(r -> sm.fire(Trigger.Y))
+            .permit(Trigger.Y, State.A);
+        sm.setFiringMode(FiringMode.QUEUED);
+
+        sm.fire(Trigger.X);
+
+        assertEquals(0, remaining[0]);
+        assertEquals(State.A, sm.getState());
+    }
+
+    @Test
+    public void QueuedTriggersAreFiredInOrder() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        StateMachine<State, Trigger, Void> sm = new StateMachine<>(State.A, null, config);
+        config.configure(State.A)
+            .permit(Trigger.X, State.B)
+            .permit(Trigger.Z, State.C);
+        config.configure(State.B)
+            .onEntry(c -> {
+                // more than the initial capacity of the queue
+                for (int i = 0; i < 10; i++) {
+                    sm.fire(Trigger.Y);
+                }
+                sm.fire(Trigger.Z);
+            })
+            .permitInternal(Trigger.Y, c -> events.add("Y"))
+            .permit(Trigger.Z, State.C);
+        sm.setFiringMode(FiringMode.QUEUED);
+        List<Trigger> fired = new ArrayList<>();
+        sm.setTrace(new Trace<State, Trigger>() {
+            @Override
+            public void trigger(Trigger trigger) {
+                fired.add(trigger);
+            }
+
+            @Override
+            public void transition(Trigger trigger, State source, State destination) {
+            }
+        });
+
+        sm.fire(Trigger.X);
+
+        assertEquals("[X, Y, Y, Y, Y, Y, Y, Y, Y, Y, Y, Z]", fired.toString());
+        assertEquals(10, events.size());
+        assertEquals(State.C, sm.getState());
+    }
+
+    @Test
+    public void UnhandledQueuedTriggerIsReportedWhenFired() {
+        StateMachine<State, Trigger, Void> sm = create(FiringMode.QUEUED);
+        sm.configure(State.C)
+            .onEntry(c -> sm.fire(Trigger.Z));
+        List<String> unhandled = new ArrayList<>();
+        sm.onUnhandledTrigger((state, trigger) -> unhandled.add(state + "/" + trigger));
+
+        sm.fire(Trigger.X);
+
+        assertEquals("[C/Z]", unhandled.toString());
+    }
+
+    @Test
+    public void QueueIsDroppedWhenAnActionThrows() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        StateMachine<State, Trigger, Void> sm = new StateMachine<>(State.A, null, config);
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntry(c -> {
+                sm.fire(Trigger.Y);
+                throw new IllegalArgumentException("failed");
+            })
+            .permit(Trigger.Y, State.C);
+        sm.setFiringMode(FiringMode.QUEUED);
+
+        try {
+            sm.fire(Trigger.X);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertEquals(State.B, sm.getState());
+
+        sm.fire(Trigger.Y);
+        assertEquals(State.C, sm.getState());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void FiringModeCannotChangeDuringATransition() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        StateMachine<State, Trigger, Void> sm = new StateMachine<>(State.A, null, config);
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntry(c -> sm.setFiringMode(FiringMode.IMMEDIATE));
+        sm.setFiringMode(FiringMode.QUEUED);
+        sm.fire(Trigger.X);
+    }
+}
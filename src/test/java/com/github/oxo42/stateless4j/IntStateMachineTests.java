@@ -0,0 +1,235 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IntStateMachineTests {
+
+    private static final int A = 0, B = 1, C = 2, D = 3;
+    private static final int X = 0, Y = 1, Z = 2;
+
+    private IntStateMachineConfig<List<String>> config;
+    private final List<String> actions = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        config = new IntStateMachineConfig<>(4, 3);
+    }
+
+    @Test
+    public void PermittedTriggerTransitions() {
+        config.configure(A).permit(X, B);
+
+        IntStateMachine<List<String>> sm = new IntStateMachine<>(A, actions, config);
+        sm.fire(X);
+
+        assertEquals(B, sm.getState());
+    }
+
+    @Test
+    public void ActionsRunInTheSameOrderAsStateMachine() {
+        config.configure(A)
+            .substateOf(C)
+            .onExit(l -> l.add("exitA"))
+            .permit(X, B, l -> l.add("action"));
+        config.configure(B)
+            .substateOf(D)
+            .onEntry(l -> l.add("enterB"));
+        config.configure(C)
+            .onExit(l -> l.add("exitC"));
+        config.configure(D)
+            .onEntry(l -> l.add("enterD"));
+
+        new IntStateMachine<>(A, actions, config).fire(X);
+
+        assertEquals("[exitA, exitC, action, enterD, enterB]", actions.toString());
+    }
+
+    @Test
+    public void TransitionWithinSuperstateDoesNotExitIt() {
+        config.configure(A).substateOf(C).permit(X, B);
+        config.configure(B).substateOf(C);
+        config.configure(C)
+            .onEntry(l -> l.add("enterC"))
+            .onExit(l -> l.add("exitC"));
+
+        IntStateMachine<List<String>> sm = new IntStateMachine<>(A, actions, config);
+        sm.fire(X);
+
+        assertEquals(B, sm.getState());
+        assertTrue(sm.isInState(C));
+        assertTrue(actions.isEmpty());
+    }
+
+    @Test
+    public void TransitionFromSuperstateIntoSubstateDoesNotReenterIt() {
+        config.configure(C)
+            .onEntry(l -> l.add("enterC"))
+            .permit(X, B);
+        config.configure(A)
+            .substateOf(C)
+            .onEntry(l -> l.add("enterA"));
+        config.configure(B)
+            .substateOf(A)
+            .onEntry(l -> l.add("enterB"))
+            .permitReentry(Y, l -> l.add("reentry"));
+
+        IntStateMachine<List<String>> sm = new IntStateMachine<>(C, actions, config);
+        sm.fire(X);
+        sm.fire(Y);
+
+        assertEquals("[enterA, enterB, reentry, enterB]", actions.toString());
+    }
+
+    @Test
+    public void SuperstateTriggersAreInherited() {
+        config.configure(A).substateOf(C);
+        config.configure(C).permit(Y, D);
+
+        IntStateMachine<List<String>> sm = new IntStateMachine<>(A, actions, config);
+        sm.fire(Y);
+
+        assertEquals(D, sm.getState());
+    }
+
+    @Test
+    public void GuardsSelectTheTransition() {
+        config.configure(A)
+            .permitIf(X, B, List::isEmpty)
+            .permitIf(X, C, l -> !l.isEmpty());
+
+        actions.add("nonEmpty");
+        IntStateMachine<List<String>> sm = new IntStateMachine<>(A, actions, config);
+        sm.fire(X);
+
+        assertEquals(C, sm.getState());
+    }
+
+    @Test
+    public void InternalAndIgnoredTriggersKeepTheState() {
+        config.configure(A)
+            .onExit(l -> l.add("exitA"))
+            .permitInternal(X, l -> l.add("internal"))
+            .ignore(Y);
+
+        IntStateMachine<List<String>> sm = new IntStateMachine<>(A, actions, config);
+
+        assertEquals(FireResult.ACCEPTED, sm.tryFire(X));
+        assertEquals(FireResult.IGNORED, sm.tryFire(Y));
+        assertEquals(A, sm.getState());
+        assertEquals("[internal]", actions.toString());
+    }
+
+    @Test
+    public void ReentryRunsExitAndEntryActions() {
+        config.configure(A)
+            .substateOf(C)
+            .onEntry(l -> l.add("enterA"))
+            .onExit(l -> l.add("exitA"))
+            .permitReentry(X);
+        config.configure(C)
+            .onEntry(l -> l.add("enterC"));
+
+        new IntStateMachine<>(A, actions, config).fire(X);
+
+        assertEquals("[exitA, enterA]", actions.toString());
+    }
+
+    @Test
+    public void EntryFromRunsOnlyForItsTrigger() {
+        config.configure(A)
+            .permit(X, B)
+            .permit(Y, B);
+        config.configure(B)
+            .onEntryFrom(Y, l -> l.add("fromY"))
+            .permit(Z, A);
+
+        IntStateMachine<List<String>> sm = new IntStateMachine<>(A, actions, config);
+        sm.fire(X);
+        sm.fire(Z);
+        sm.fire(Y);
+
+        assertEquals("[fromY]", actions.toString());
+    }
+
+    @Test
+    public void InitialTransitionEntersSuperstates() {
+        config.configure(A).substateOf(C).onEntry(l -> l.add("enterA"));
+        config.configure(C).onEntry(l -> l.add("enterC"));
+
+        new IntStateMachine<>(A, actions, config).fireInitialTransition();
+
+        assertEquals("[enterC, enterA]", actions.toString());
+    }
+
+    @Test
+    public void ReportsUnhandledAndRejectedTriggers() {
+        config.configure(A).permitIf(X, B, l -> false);
+
+        IntStateMachine<List<String>> sm = new IntStateMachine<>(A, actions, config);
+
+        assertEquals(FireResult.GUARD_REJECTED, sm.tryFire(X));
+        assertEquals(FireResult.UNHANDLED, sm.tryFire(Y));
+        assertEquals(FireResult.UNHANDLED, sm.tryFire(42));
+        assertFalse(sm.canFire(X));
+        assertFalse(sm.canFire(-1));
+    }
+
+    @Test
+    public void UnhandledTriggerActionReceivesStateAndTrigger() {
+        IntStateMachine<List<String>> sm = new IntStateMachine<>(B, actions, config);
+        sm.onUnhandledTrigger((state, trigger) -> actions.add(state + ":" + trigger));
+
+        sm.fire(Z);
+
+        assertEquals("[1:2]", actions.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void UnhandledTriggerThrowsByDefault() {
+        new IntStateMachine<>(A, actions, config).fire(X);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void MultipleMetGuardsThrow() {
+        config.configure(A)
+            .permitIf(X, B, l -> true)
+            .permitIf(X, C, l -> true);
+
+        new IntStateMachine<>(A, actions, config).fire(X);
+    }
+
+    @Test
+    public void PermittedTriggersIncludeSuperstates() {
+        config.configure(A)
+            .substateOf(C)
+            .permit(X, B)
+            .permitIf(Y, B, l -> false);
+        config.configure(C).ignore(Z);
+
+        assertArrayEquals(new int[]{X, Z}, new IntStateMachine<>(A, actions, config).getPermittedTriggers());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void PermitToSameStateThrows() {
+        config.configure(A).permit(X, A);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void CyclicSuperstatesThrow() {
+        config.configure(A).substateOf(B);
+        config.configure(B).substateOf(A);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void StatesOutOfRangeThrow() {
+        config.configure(A).permit(X, 4);
+    }
+}
@@ -0,0 +1,312 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class KeyedDispatcherTests {
+
+    private static final int KEYS = 50;
+    private static final int TRIGGERS_PER_KEY = 200;
+
+    private StateMachineConfig<State, Trigger, Void> configure() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .permit(Trigger.Y, State.A)
+            .permit(Trigger.Z, State.C);
+        return config;
+    }
+
+    @Test
+    public void TriggersOfAKeyAreHandledInOrderOnOneThread() {
+        Map<Integer, List<Integer>> handled = new ConcurrentHashMap<>();
+        Map<Integer, Thread> threads = new ConcurrentHashMap<>();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        KeyedDispatcher<Integer, Integer> dispatcher = new KeyedDispatcher<>(4, (key, trigger) -> {
+            if (threads.computeIfAbsent(key, k -> Thread.currentThread()) != Thread.currentThread()) {
+                failures.add("key " + key + " moved thread");
+            }
+            handled.computeIfAbsent(key, k -> new ArrayList<>()).add(trigger);
+        });
+
+        for (int i = 0; i < TRIGGERS_PER_KEY; i++) {
+            for (int key = 0; key < KEYS; key++) {
+                dispatcher.dispatch(key, i);
+            }
+        }
+        dispatcher.close();
+
+        assertEquals("[]", failures.toString());
+        assertEquals(KEYS, handled.size());
+        for (List<Integer> triggers : handled.values()) {
+            assertEquals(TRIGGERS_PER_KEY, triggers.size());
+            for (int i = 0; i < TRIGGERS_PER_KEY; i++) {
+                assertEquals(i, (int) triggers.get(i));
+            }
+        }
+        for (int stripe = 0; stripe < dispatcher.getStripeCount(); stripe++) {
+            assertEquals(0, dispatcher.getQueueDepth(stripe));
+        }
+    }
+
+    @Test
+    public void FiresMachinesPerKey() {
+        StateMachineConfig<State, Trigger, Void> config = configure();
+        Map<String, StateMachine<State, Trigger, Void>> machines = new HashMap<>();
+        machines.put("first", new StateMachine<>(State.A, null, config));
+        machines.put("second", new StateMachine<>(State.A, null, config));
+        KeyedDispatcher<String, Trigger> dispatcher = KeyedDispatcher.forMachines(2, machines::get);
+
+        dispatcher.dispatch("first", Trigger.X);
+        dispatcher.dispatch("second", Trigger.X);
+        dispatcher.dispatch("first", Trigger.Z);
+        dispatcher.close();
+
+        assertEquals(State.C, machines.get("first").getState());
+        assertEquals(State.B, machines.get("second").getState());
+    }
+
+    @Test
+    public void FiresEngineAgainstStore() {
+        Map<Integer, State> states = new ConcurrentHashMap<>();
+        List<Integer> writes = Collections.synchronizedList(new ArrayList<>());
+        KeyedStateStore<Integer, State, Void> store = new KeyedStateStore<Integer, State, Void>() {
+            @Override
+            public State getState(Integer key) {
+                return states.getOrDefault(key, State.A);
+            }
+
+            @Override
+            public void setState(Integer key, State state) {
+                writes.add(key);
+                states.put(key, state);
+            }
+
+            @Override
+            public Void getContext(Integer key) {
+                return null;
+            }
+        };
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        KeyedDispatcher<Integer, Trigger> dispatcher =
+            KeyedDispatcher.forEngine(3, new StateMachineEngine<>(configure()), store);
+        dispatcher.onError((key, trigger, e) -> errors.add(key + "/" + trigger));
+
+        for (int key = 0; key < 10; key++) {
+            dispatcher.dispatch(key, Trigger.X);
+            dispatcher.dispatch(key, key % 2 == 0 ? Trigger.Y : Trigger.Z);
+        }
+        dispatcher.dispatch(0, Trigger.Z);
+        dispatcher.close();
+
+        for (int key = 0; key < 10; key++) {
+            assertEquals(key % 2 == 0 ? State.A : State.C, states.get(key));
+        }
+        assertEquals(20, writes.size());
+        assertEquals("[0/Z]", errors.toString());
+    }
+
+    @Test
+    public void IdleKeysLeaveAHotStripe() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        KeyedDispatcher<Integer, Integer> dispatcher = new KeyedDispatcher<>(2, 2, Thread::new, (key, trigger) -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        int hot = 0;
+        dispatcher.dispatch(0, 1);
+        dispatcher.dispatch(0, 2);
+        int hotStripe = dispatcher.getStripe(hot);
+        assertEquals(2, dispatcher.getQueueDepth(hotStripe));
+
+        // a key whose home is the hot stripe goes to the other one, a busy key stays where it is
+        int sameHome = 1;
+        while (homeOf(dispatcher, sameHome) != hotStripe) {
+            sameHome++;
+        }
+        dispatcher.dispatch(sameHome, 1);
+        dispatcher.dispatch(hot, 3);
+
+        assertNotEquals(hotStripe, dispatcher.getStripe(sameHome));
+        assertEquals(hotStripe, dispatcher.getStripe(hot));
+        assertEquals(3, dispatcher.getQueueDepth(hotStripe));
+        release.countDown();
+        dispatcher.close();
+        assertEquals(-1, dispatcher.getStripe(hot));
+    }
+
+    private static int homeOf(KeyedDispatcher<Integer, Integer> dispatcher, int key) {
+        int hash = Integer.valueOf(key).hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), dispatcher.getStripeCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void DispatchAfterCloseThrows() {
+        KeyedDispatcher<Integer, Integer> dispatcher = new KeyedDispatcher<>(1, (key, trigger) -> { });
+        dispatcher.close();
+        dispatcher.dispatch(1, 1);
+    }
+
+    @Test
+    public void ErrorsDoNotStopTheStripe() {
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        KeyedDispatcher<Integer, Integer> dispatcher = new KeyedDispatcher<>(1, (key, trigger) -> {
+            if (trigger == 2) {
+                throw new IllegalStateException("failed");
+            }
+            handled.add(trigger);
+        });
+        dispatcher.onError((key, trigger, e) -> errors.add(trigger + ":" + e.getMessage()));
+
+        for (int i = 1; i <= 3; i++) {
+            dispatcher.dispatch(7, i);
+        }
+        dispatcher.close();
+
+        assertEquals("[1, 3]", handled.toString());
+        assertEquals("[2:failed]", errors.toString());
+        assertEquals(0, dispatcher.getQueueDepth(0));
+    }
+
+    @Test
+    public void ErrorsOfTheErrorHandlerDoNotStopTheStripe() {
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        List<String> uncaught = Collections.synchronizedList(new ArrayList<>());
+        KeyedDispatcher<Integer, Integer> dispatcher = new KeyedDispatcher<>(1, Integer.MAX_VALUE,
+            runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e.getMessage()));
+                return thread;
+            },
+            (key, trigger) -> {
+                if (trigger == 2) {
+                    throw new AssertionError("failed");
+                }
+                handled.add(trigger);
+            });
+        dispatcher.onError((key, trigger, e) -> {
+            throw new IllegalStateException("handler saw " + e.getCause().getMessage());
+        });
+
+        for (int i = 1; i <= 3; i++) {
+            dispatcher.dispatch(7, i);
+        }
+        dispatcher.close();
+
+        assertEquals("[1, 3]", handled.toString());
+        assertEquals("[handler saw failed]", uncaught.toString());
+        assertEquals(0, dispatcher.getQueueDepth(0));
+    }
+
+    @Test
+    public void InterruptingAStripeDoesNotStopIt() throws InterruptedException {
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        KeyedDispatcher<Integer, Integer> dispatcher = new KeyedDispatcher<>(1, Integer.MAX_VALUE,
+            runnable -> {
+                Thread thread = new Thread(runnable);
+                threads.add(thread);
+                return thread;
+            },
+            (key, trigger) -> handled.add(trigger));
+
+        threads.get(0).interrupt();
+        Thread.sleep(50);
+        dispatcher.dispatch(1, 1);
+        dispatcher.close();
+
+        assertEquals("[1]", handled.toString());
+        assertFalse(threads.get(0).isAlive());
+    }
+
+    private KeyedDispatcher<Integer, Integer> blockedDispatcher(MailboxPolicy policy, CountDownLatch release,
+        List<String> handled) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        KeyedDispatcher<Integer, Integer> dispatcher = new KeyedDispatcher<>(1, Integer.MAX_VALUE, 2, policy, Thread::new,
+            (key, trigger) -> {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                handled.add(key + ":" + trigger);
+            });
+        dispatcher.dispatch(0, 0);
+        started.await();
+        return dispatcher;
+    }
+
+    @Test
+    public void FullStripeRejectsTriggers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        KeyedDispatcher<Integer, Integer> dispatcher = blockedDispatcher(MailboxPolicy.REJECT, release, handled);
+
+        assertEquals(FireResult.QUEUED, dispatcher.dispatch(1, 1));
+        assertEquals(FireResult.QUEUED, dispatcher.dispatch(2, 1));
+        assertEquals(FireResult.REJECTED, dispatcher.dispatch(3, 1));
+
+        assertEquals(3, dispatcher.getQueueDepth(0));
+        assertEquals(-1, dispatcher.getStripe(3));
+        release.countDown();
+        dispatcher.close();
+        assertEquals("[0:0, 1:1, 2:1]", handled.toString());
+        assertEquals(1, dispatcher.getRejectedTriggers());
+    }
+
+    @Test
+    public void FullStripeDropsTheOldestTrigger() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        KeyedDispatcher<Integer, Integer> dispatcher = blockedDispatcher(MailboxPolicy.DROP_OLDEST, release, handled);
+
+        dispatcher.dispatch(1, 1);
+        dispatcher.dispatch(2, 1);
+        assertEquals(FireResult.QUEUED, dispatcher.dispatch(3, 1));
+
+        assertEquals(-1, dispatcher.getStripe(1));
+        assertEquals(3, dispatcher.getQueueDepth(0));
+        release.countDown();
+        dispatcher.close();
+        assertEquals("[0:0, 2:1, 3:1]", handled.toString());
+        assertEquals(1, dispatcher.getDroppedTriggers());
+        assertEquals(0, dispatcher.getQueueDepth(0));
+    }
+
+    @Test
+    public void FullStripeCoalescesEqualTriggersOfAKey() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        KeyedDispatcher<Integer, Integer> dispatcher = blockedDispatcher(MailboxPolicy.COALESCE, release, handled);
+
+        dispatcher.dispatch(1, 1);
+        dispatcher.dispatch(1, 2);
+        assertEquals(FireResult.QUEUED, dispatcher.dispatch(1, 1));
+        assertEquals(FireResult.REJECTED, dispatcher.dispatch(2, 1));
+
+        release.countDown();
+        dispatcher.close();
+        assertEquals("[0:0, 1:1, 1:2]", handled.toString());
+        assertEquals(1, dispatcher.getCoalescedTriggers());
+        assertEquals(1, dispatcher.getRejectedTriggers());
+        assertEquals(-1, dispatcher.getStripe(1));
+    }
+}
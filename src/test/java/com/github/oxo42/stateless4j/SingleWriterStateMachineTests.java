@@ -0,0 +1,163 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class SingleWriterStateMachineTests {
+
+    private final List<String> actions = new ArrayList<>();
+
+    private StateMachineConfig<State, Trigger, Void> configure(StateMachine<State, Trigger, Void>[] machine) {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permit(Trigger.X, State.B)
+            .permitReentry(Trigger.Y)
+            .permitInternal(Trigger.Z, c -> { });
+        config.configure(State.B)
+            .onEntry(c -> actions.add("enterB seeing " + machine[0].getState() + " and snapshot "
+                + ((SingleWriterStateMachine<State, Trigger, Void>) machine[0]).getSnapshot().getState()))
+            .permit(Trigger.X, State.C);
+        config.configure(State.C)
+            .substateOf(State.B)
+            .permit(Trigger.X, State.A);
+        return config;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private SingleWriterStateMachine<State, Trigger, Void> create() {
+        StateMachine<State, Trigger, Void>[] machine = new StateMachine[1];
+        SingleWriterStateMachine<State, Trigger, Void> sm = new SingleWriterStateMachine<>(State.A, null, configure(machine));
+        machine[0] = sm;
+        return sm;
+    }
+
+    @Test
+    public void SnapshotIsPublishedOnceTheTransitionCompleted() {
+        SingleWriterStateMachine<State, Trigger, Void> sm = create();
+        StateSnapshot<State, Trigger, Void> initial = sm.getSnapshot();
+
+        sm.fire(Trigger.X);
+
+        assertEquals("[enterB seeing B and snapshot A]", actions.toString());
+        assertEquals(State.B, sm.getState());
+        assertEquals(State.A, initial.getState());
+        assertEquals(0, initial.getVersion());
+        assertEquals(1, sm.getSnapshot().getVersion());
+    }
+
+    @Test
+    public void WriterReadsTheCurrentStateWhileFiring() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        SingleWriterStateMachine<State, Trigger, Void>[] machine = new SingleWriterStateMachine[1];
+        config.configure(State.A)
+            .permit(Trigger.X, State.C);
+        config.configure(State.C)
+            .substateOf(State.B)
+            .onEntry(c -> actions.add(machine[0].isInState(State.B) + " " + machine[0].canFire(Trigger.Y)))
+            .permit(Trigger.Y, State.A);
+        machine[0] = new SingleWriterStateMachine<>(State.A, null, config);
+
+        machine[0].fire(Trigger.X);
+
+        assertEquals("[true true]", actions.toString());
+        assertTrue(machine[0].isInState(State.B));
+    }
+
+    @Test
+    public void WriterReadsTheCurrentStateBehindAnAsyncStateMachine() {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        SingleWriterStateMachine<State, Trigger, Void>[] machine = new SingleWriterStateMachine[1];
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .onEntry(c -> actions.add("before " + machine[0].getState()))
+            .onEntryAsync(c -> pending)
+            .onEntry(c -> actions.add("after " + machine[0].getState()));
+        machine[0] = new SingleWriterStateMachine<>(State.A, null, config);
+        AsyncStateMachine<State, Trigger, Void> async = new AsyncStateMachine<>(machine[0], tasks::add);
+
+        async.fire(Trigger.X);
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+        assertEquals(State.A, machine[0].getState());
+        pending.complete(null);
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+
+        assertEquals("[before B, after B]", actions.toString());
+        assertEquals(State.B, machine[0].getState());
+    }
+
+    @Test
+    public void ReentryCountsAsATransitionButInternalTransitionsDoNot() {
+        SingleWriterStateMachine<State, Trigger, Void> sm = create();
+        sm.fire(Trigger.Z);
+        assertEquals(0, sm.getSnapshot().getVersion());
+        sm.fire(Trigger.Y);
+        assertEquals(1, sm.getSnapshot().getVersion());
+    }
+
+    @Test
+    public void ReadersUseTheSnapshot() {
+        SingleWriterStateMachine<State, Trigger, Void> sm = create();
+        sm.fire(Trigger.X);
+        sm.fire(Trigger.X);
+
+        assertEquals(State.C, sm.getState());
+        assertTrue(sm.isInState(State.B));
+        assertTrue(sm.getSnapshot().isInState(State.B));
+        assertFalse(sm.getSnapshot().isInState(State.A));
+        assertTrue(sm.canFire(Trigger.X));
+        assertFalse(sm.canFire(Trigger.Y));
+        assertEquals("[X]", sm.getPermittedTriggers().toString());
+    }
+
+    @Test
+    public void ReaderThreadOnlySeesCompletedTransitions() throws InterruptedException {
+        StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .permit(Trigger.X, State.B);
+        config.configure(State.B)
+            .permit(Trigger.X, State.A);
+        SingleWriterStateMachine<State, Trigger, Void> sm = new SingleWriterStateMachine<>(State.A, null, config);
+
+        AtomicBoolean done = new AtomicBoolean();
+        List<String> inconsistent = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            long lastVersion = 0;
+            while (!done.get()) {
+                StateSnapshot<State, Trigger, Void> snapshot = sm.getSnapshot();
+                State expected = snapshot.getVersion() % 2 == 0 ? State.A : State.B;
+                if (snapshot.getState() != expected || snapshot.getVersion() < lastVersion) {
+                    inconsistent.add(snapshot.toString());
+                    return;
+                }
+                lastVersion = snapshot.getVersion();
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 100000; i++) {
+            sm.fire(Trigger.X);
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals("[]", inconsistent.toString());
+        assertEquals(100000, sm.getSnapshot().getVersion());
+    }
+}
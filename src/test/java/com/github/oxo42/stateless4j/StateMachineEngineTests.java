@@ -0,0 +1,146 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StateMachineEngineTests {
+
+    private StateMachineConfig<State, Trigger, List<String>> config;
+
+    @Before
+    public void setUp() {
+        config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .substateOf(State.C)
+            .onExit(l -> l.add("exitA"))
+            .permit(Trigger.X, State.B, l -> l.add("action"))
+            .permitInternal(Trigger.Y, l -> l.add("internal"));
+        config.configure(State.B)
+            .onEntry((t, l) -> l.add("enterB from " + t.getSource() + " by " + t.getTrigger()))
+            .permitIf(Trigger.Y, State.A, List::isEmpty);
+        config.configure(State.C)
+            .onEntry(l -> l.add("enterC"))
+            .onExit(l -> l.add("exitC"))
+            .ignore(Trigger.Z);
+    }
+
+    @Test
+    public void FireRunsActionsLikeStateMachine() {
+        StateMachineEngine<State, Trigger, List<String>> engine = new StateMachineEngine<>(config);
+        List<String> actions = new ArrayList<>();
+
+        State state = engine.fire(State.A, Trigger.X, actions);
+
+        assertEquals(State.B, state);
+        assertEquals("[exitA, exitC, action, enterB from A by X]", actions.toString());
+    }
+
+    @Test
+    public void EntitiesOnlyShareTheEngine() {
+        StateMachineEngine<State, Trigger, List<String>> engine = new StateMachineEngine<>(config);
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+
+        assertEquals(State.A, engine.fire(State.B, Trigger.Y, first));
+        second.add("busy");
+        assertEquals(FireResult.GUARD_REJECTED, engine.tryFire(State.B, Trigger.Y, second).getResult());
+
+        assertEquals("[enterC]", first.toString());
+        assertEquals("[busy]", second.toString());
+    }
+
+    @Test
+    public void TryFireReportsTheOutcome() {
+        StateMachineEngine<State, Trigger, List<String>> engine = new StateMachineEngine<>(config);
+        List<String> actions = new ArrayList<>();
+
+        FireOutcome<State> accepted = engine.tryFire(State.A, Trigger.X, actions);
+        assertEquals(FireResult.ACCEPTED, accepted.getResult());
+        assertEquals(State.B, accepted.getState());
+        assertSame(accepted, engine.tryFire(State.A, Trigger.X, actions));
+
+        assertEquals(FireResult.IGNORED, engine.tryFire(State.A, Trigger.Z, actions).getResult());
+        FireOutcome<State> unhandled = engine.tryFire(State.B, Trigger.X, actions);
+        assertEquals(FireResult.UNHANDLED, unhandled.getResult());
+        assertEquals(State.B, unhandled.getState());
+        assertFalse(unhandled.isHandled());
+    }
+
+    @Test
+    public void InternalAndIgnoredTriggersKeepTheState() {
+        StateMachineEngine<State, Trigger, List<String>> engine = new StateMachineEngine<>(config);
+        List<String> actions = new ArrayList<>();
+
+        assertEquals(State.A, engine.fire(State.A, Trigger.Y, actions));
+        assertEquals(State.A, engine.fire(State.A, Trigger.Z, actions));
+        assertEquals("[internal]", actions.toString());
+    }
+
+    @Test
+    public void IntrospectionUsesTheGivenState() {
+        StateMachineEngine<State, Trigger, List<String>> engine = new StateMachineEngine<>(config);
+        List<String> context = new ArrayList<>();
+
+        assertTrue(engine.isInState(State.A, State.C));
+        assertFalse(engine.isInState(State.B, State.C));
+        assertTrue(engine.canFire(State.A, Trigger.Z, context));
+        assertFalse(engine.canFire(State.B, Trigger.X, context));
+        assertEquals(3, engine.getPermittedTriggers(State.A, context).size());
+    }
+
+    @Test
+    public void InitialTransitionEntersSuperstates() {
+        StateMachineEngine<State, Trigger, List<String>> engine = new StateMachineEngine<>(config);
+        List<String> actions = new ArrayList<>();
+
+        engine.fireInitialTransition(State.A, actions);
+
+        assertEquals("[enterC]", actions.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void UnhandledTriggerThrows() {
+        new StateMachineEngine<>(config).fire(State.B, Trigger.X, new ArrayList<>());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void CreatingAnEngineFreezesTheConfiguration() {
+        new StateMachineEngine<>(config);
+        config.configure(State.B).permit(Trigger.Z, State.A);
+    }
+
+    @Test
+    public void EngineCanBeSharedBetweenThreads() throws InterruptedException {
+        StateMachineConfig<State, Trigger, AtomicInteger> counting = new StateMachineConfig<>();
+        counting.configure(State.A).permit(Trigger.X, State.B);
+        counting.configure(State.B)
+            .onEntry(AtomicInteger::incrementAndGet)
+            .permit(Trigger.X, State.A);
+        StateMachineEngine<State, Trigger, AtomicInteger> engine = new StateMachineEngine<>(counting);
+
+        Thread[] threads = new Thread[4];
+        AtomicInteger[] entries = new AtomicInteger[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            AtomicInteger context = entries[i] = new AtomicInteger();
+            threads[i] = new Thread(() -> {
+                State state = State.A;
+                for (int n = 0; n < 10000; n++) {
+                    state = engine.fire(state, Trigger.X, context);
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertEquals(5000, entries[i].get());
+        }
+    }
+}
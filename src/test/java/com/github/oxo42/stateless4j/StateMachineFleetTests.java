@@ -0,0 +1,236 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StateMachineFleetTests {
+
+    private enum Phase { A, B, C, D }
+
+    private StateMachineFleet<Phase, Trigger, List<String>> fleet;
+    private final List<String> actions = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        fleet = new StateMachineFleet<>(configure(), Phase.class, 3, Phase.A);
+    }
+
+    private static StateMachineConfig<Phase, Trigger, List<String>> configure() {
+        StateMachineConfig<Phase, Trigger, List<String>> config = new StateMachineConfig<>();
+        config.configure(Phase.A)
+            .substateOf(Phase.C)
+            .permit(Trigger.X, Phase.B);
+        config.configure(Phase.B)
+            .onEntry(l -> l.add("enterB"))
+            .permit(Trigger.Y, Phase.A);
+        config.configure(Phase.C)
+            .onEntry(l -> l.add("enterC"))
+            .permitIf(Trigger.Z, Phase.D, List::isEmpty);
+        config.configure(Phase.D)
+            .permit(Trigger.Z, Phase.A);
+        return config;
+    }
+
+    @Test
+    public void EntitiesStartInTheInitialState() {
+        assertEquals(3, fleet.size());
+        for (int entityId = 0; entityId < fleet.size(); entityId++) {
+            assertEquals(Phase.A, fleet.getState(entityId));
+        }
+    }
+
+    @Test
+    public void FireOnlyChangesTheStateOfTheEntity() {
+        assertEquals(Phase.B, fleet.fire(1, Trigger.X, actions));
+
+        assertEquals(Phase.A, fleet.getState(0));
+        assertEquals(Phase.B, fleet.getState(1));
+        assertEquals(Phase.A, fleet.getState(2));
+        assertEquals("[enterB]", actions.toString());
+    }
+
+    @Test
+    public void SuperstateTriggersAndGuardsApply() {
+        actions.add("busy");
+        assertEquals(FireResult.GUARD_REJECTED, fleet.tryFire(0, Trigger.Z, actions).getResult());
+        assertEquals(Phase.A, fleet.getState(0));
+
+        assertEquals(Phase.D, fleet.tryFire(0, Trigger.Z, new ArrayList<>()).getState());
+        assertEquals(Phase.D, fleet.getState(0));
+    }
+
+    @Test
+    public void IntrospectsEntities() {
+        fleet.fire(2, Trigger.X, actions);
+
+        assertTrue(fleet.isInState(0, Phase.C));
+        assertFalse(fleet.isInState(2, Phase.C));
+        assertTrue(fleet.canFire(2, Trigger.Y, actions));
+        assertFalse(fleet.canFire(0, Trigger.Y, actions));
+        assertEquals(2, fleet.count(Phase.C));
+        assertEquals(1, fleet.count(Phase.B));
+    }
+
+    @Test
+    public void InitialTransitionEntersSuperstates() {
+        fleet.fireInitialTransition(0, actions);
+
+        assertEquals("[enterC]", actions.toString());
+    }
+
+    @Test
+    public void StatesCanBeSet() {
+        fleet.setState(1, Phase.D);
+        assertEquals(Phase.D, fleet.getState(1));
+
+        fleet.fill(Phase.B);
+        assertEquals(0, fleet.count(Phase.A));
+        assertEquals(3, fleet.count(Phase.B));
+    }
+
+    @Test
+    public void FireBatchFiresEveryEntity() {
+        fleet.setState(1, Phase.B);
+
+        assertEquals(2, fleet.fireBatch(new int[]{0, 1, 2}, Trigger.X, id -> actions).getHandled());
+
+        assertEquals(Phase.B, fleet.getState(0));
+        assertEquals(Phase.B, fleet.getState(1));
+        assertEquals(Phase.B, fleet.getState(2));
+        assertEquals("[enterB, enterB]", actions.toString());
+    }
+
+    @Test
+    public void FireBatchEvaluatesGuardsPerEntity() {
+        List<List<String>> contexts = new ArrayList<>();
+        for (int i = 0; i < fleet.size(); i++) {
+            contexts.add(new ArrayList<>());
+        }
+        contexts.get(1).add("busy");
+
+        BatchResult result = fleet.fireBatch(new int[]{0, 1, 2}, Trigger.Z, contexts::get);
+
+        assertEquals(2, result.getHandled());
+        assertEquals(1, result.getUnhandled());
+
+        assertEquals(Phase.D, fleet.getState(0));
+        assertEquals(Phase.A, fleet.getState(1));
+        assertEquals(Phase.D, fleet.getState(2));
+    }
+
+    @Test
+    public void FireBatchWithTriggersPerEntity() {
+        fleet.setState(2, Phase.B);
+
+        BatchResult result = fleet.fireBatch(new int[]{0, 1, 2}, new Trigger[]{Trigger.X, Trigger.Y, Trigger.Y}, id -> actions);
+
+        assertEquals(2, result.getHandled());
+        assertEquals(1, result.getUnhandled());
+        assertEquals(Phase.B, fleet.getState(0));
+        assertEquals(Phase.A, fleet.getState(1));
+        assertEquals(Phase.A, fleet.getState(2));
+    }
+
+    @Test
+    public void FireBatchFiresTheTriggersOfAnEntityInOrder() {
+        BatchResult result = fleet.fireBatch(new int[]{0, 1, 0, 0}, new Trigger[]{Trigger.X, Trigger.X, Trigger.Y, Trigger.X}, id -> actions);
+
+        assertEquals(4, result.getHandled());
+        assertEquals(Phase.B, fleet.getState(0));
+        assertEquals(Phase.B, fleet.getState(1));
+    }
+
+    @Test
+    public void FireBatchParallelMatchesFireBatch() {
+        StateMachineFleet<Phase, Trigger, List<String>> sequential = new StateMachineFleet<>(configure(), Phase.class, 100000, Phase.A);
+        StateMachineFleet<Phase, Trigger, List<String>> parallel = new StateMachineFleet<>(configure(), Phase.class, 100000, Phase.A);
+        Random random = new Random(7);
+        int[] entityIds = new int[50000];
+        Trigger[] triggers = new Trigger[entityIds.length];
+        for (int i = 0; i < entityIds.length; i++) {
+            entityIds[i] = random.nextInt(sequential.size());
+            triggers[i] = Trigger.values()[random.nextInt(Trigger.values().length)];
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int round = 0; round < 3; round++) {
+                BatchResult expected = sequential.fireBatch(entityIds, triggers, id -> new ArrayList<>());
+                BatchResult result = parallel.fireBatchParallel(entityIds, triggers, id -> new ArrayList<>(), pool);
+
+                assertEquals(expected.getHandled(), result.getHandled());
+                assertEquals(expected.getUnhandled(), result.getUnhandled());
+                for (int id = 0; id < sequential.size(); id++) {
+                    assertEquals(sequential.getState(id), parallel.getState(id));
+                }
+            }
+            assertEquals(sequential.fireBatch(entityIds, Trigger.X, id -> new ArrayList<>()).getHandled(),
+                parallel.fireBatchParallel(entityIds, Trigger.X, id -> new ArrayList<>(), pool).getHandled());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void FireBatchParallelRethrowsFailures() {
+        StateMachineConfig<Phase, Trigger, List<String>> config = new StateMachineConfig<>();
+        config.configure(Phase.A).permit(Trigger.X, Phase.B, l -> {
+            throw new IllegalStateException("failed");
+        });
+        StateMachineFleet<Phase, Trigger, List<String>> failing = new StateMachineFleet<>(config, Phase.class, 10000, Phase.A);
+        int[] entityIds = new int[failing.size()];
+        for (int i = 0; i < entityIds.length; i++) {
+            entityIds[i] = i;
+        }
+
+        failing.fireBatchParallel(entityIds, Trigger.X, id -> actions, ForkJoinPool.commonPool());
+    }
+
+    @Test
+    public void FireBatchFiresRepeatedEntitiesAgain() {
+        assertEquals(1, fleet.fireBatch(new int[]{0, 0}, Trigger.X, id -> actions).getHandled());
+
+        assertEquals(Phase.B, fleet.getState(0));
+        assertEquals("[enterB]", actions.toString());
+    }
+
+    @Test
+    public void FireBatchMatchesFiringEntitiesOneByOne() {
+        Random random = new Random(42);
+        StateMachineFleet<Phase, Trigger, List<String>> single = new StateMachineFleet<>(configure(), Phase.class, 50, Phase.A);
+        StateMachineFleet<Phase, Trigger, List<String>> batched = new StateMachineFleet<>(configure(), Phase.class, 50, Phase.A);
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < single.size(); id++) {
+            ids.add(id);
+        }
+        for (int round = 0; round < 20; round++) {
+            Collections.shuffle(ids, random);
+            int[] entityIds = new int[30];
+            Trigger[] triggers = new Trigger[entityIds.length];
+            for (int i = 0; i < entityIds.length; i++) {
+                entityIds[i] = ids.get(i);
+                triggers[i] = Trigger.values()[random.nextInt(Trigger.values().length)];
+                single.tryFire(entityIds[i], triggers[i], new ArrayList<>());
+            }
+
+            batched.fireBatch(entityIds, triggers, id -> new ArrayList<>());
+
+            for (int id = 0; id < single.size(); id++) {
+                assertEquals(single.getState(id), batched.getState(id));
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void UnhandledTriggerThrows() {
+        fleet.fire(0, Trigger.Y, actions);
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransitionPlanTests {
+
+    private enum State { ROOT, LEFT, LEFT_LEAF, RIGHT, RIGHT_LEAF, OUTSIDE }
+
+    private enum Trigger { CROSS, UP, DOWN, OUT, AGAIN }
+
+    private final List<String> actions = new ArrayList<>();
+    private StateMachineConfig<State, Trigger, Void> config;
+
+    /*
+     *  ROOT { LEFT { LEFT_LEAF }, RIGHT { RIGHT_LEAF } }, OUTSIDE
+     */
+    @Before
+    public void setUp() {
+        config = new StateMachineConfig<>();
+        for (State state : State.values()) {
+            config.configure(state)
+                .onEntry(c -> actions.add("enter " + state))
+                .onExit(c -> actions.add("exit " + state));
+        }
+        config.configure(State.LEFT).substateOf(State.ROOT);
+        config.configure(State.RIGHT).substateOf(State.ROOT);
+        config.configure(State.LEFT_LEAF)
+            .substateOf(State.LEFT)
+            .permit(Trigger.CROSS, State.RIGHT_LEAF)
+            .permit(Trigger.UP, State.LEFT)
+            .permit(Trigger.OUT, State.OUTSIDE)
+            .permitReentry(Trigger.AGAIN);
+        config.configure(State.RIGHT_LEAF).substateOf(State.RIGHT);
+        config.configure(State.LEFT).permit(Trigger.DOWN, State.LEFT_LEAF);
+    }
+
+    private String fire(State initial, Trigger trigger) {
+        StateMachine<State, Trigger, Void> sm = new StateMachine<>(initial, null, config);
+        actions.clear();
+        sm.fire(trigger);
+        return actions.toString();
+    }
+
+    private String plan(State source, State destination) {
+        TransitionPlan<State, Trigger, Void> plan = config.compile().getTransitionPlan(source, destination);
+        actions.clear();
+        Transition<State, Trigger> transition = new Transition<>(source, destination, null);
+        plan.exit(transition, null);
+        plan.enter(transition, null);
+        return actions.toString();
+    }
+
+    @Test
+    public void PlanMatchesRepresentationWalk() {
+        String[] expected = new String[Trigger.values().length];
+        for (Trigger trigger : Trigger.values()) {
+            State initial = trigger == Trigger.DOWN ? State.LEFT : State.LEFT_LEAF;
+            expected[trigger.ordinal()] = fire(initial, trigger);
+        }
+
+        config.compile();
+
+        for (Trigger trigger : Trigger.values()) {
+            State initial = trigger == Trigger.DOWN ? State.LEFT : State.LEFT_LEAF;
+            assertEquals(expected[trigger.ordinal()], fire(initial, trigger));
+        }
+    }
+
+    @Test
+    public void TransitionBetweenCousinsStopsAtCommonAncestor() {
+        assertEquals("[exit LEFT_LEAF, exit LEFT, enter RIGHT, enter RIGHT_LEAF]", plan(State.LEFT_LEAF, State.RIGHT_LEAF));
+    }
+
+    @Test
+    public void TransitionOutOfHierarchyExitsAllAncestors() {
+        assertEquals("[exit LEFT_LEAF, exit LEFT, exit ROOT, enter OUTSIDE]", plan(State.LEFT_LEAF, State.OUTSIDE));
+    }
+
+    @Test
+    public void TransitionToSuperstateOnlyExitsSubstate() {
+        assertEquals("[exit LEFT_LEAF]", plan(State.LEFT_LEAF, State.LEFT));
+    }
+
+    @Test
+    public void TransitionToSubstateOnlyEntersSubstate() {
+        assertEquals("[enter LEFT_LEAF]", plan(State.LEFT, State.LEFT_LEAF));
+    }
+
+    @Test
+    public void ReentryOnlyExitsAndEntersSameState() {
+        assertEquals("[exit LEFT_LEAF, enter LEFT_LEAF]", plan(State.LEFT_LEAF, State.LEFT_LEAF));
+    }
+
+    @Test
+    public void UndeclaredTransitionIsPlannedOnDemand() {
+        assertEquals("[exit OUTSIDE, enter ROOT, enter RIGHT]", plan(State.OUTSIDE, State.RIGHT));
+    }
+
+    @Test
+    public void UndeclaredTransitionPlanIsKept() {
+        CompiledStateMachineConfig<State, Trigger, Void> compiled = config.compile();
+
+        assertSame(compiled.getTransitionPlan(State.OUTSIDE, State.RIGHT), compiled.getTransitionPlan(State.OUTSIDE, State.RIGHT));
+    }
+
+    @Test
+    public void PlanWithoutActionsHasNoActions() {
+        StateMachineConfig<State, Trigger, Void> plain = new StateMachineConfig<>();
+        plain.configure(State.LEFT).permit(Trigger.CROSS, State.RIGHT);
+
+        assertFalse(plain.compile().getTransitionPlan(State.LEFT, State.RIGHT).hasActions());
+    }
+}
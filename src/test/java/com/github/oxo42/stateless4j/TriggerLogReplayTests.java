@@ -0,0 +1,176 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+public class TriggerLogReplayTests {
+
+    private enum Phase { A, B, C, D }
+
+    private static final int LOG_LENGTH = 300000;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    private static StateMachineConfig<Phase, Trigger, Boolean> configure() {
+        StateMachineConfig<Phase, Trigger, Boolean> config = new StateMachineConfig<>();
+        config.configure(Phase.A)
+            .substateOf(Phase.C)
+            .permit(Trigger.X, Phase.B);
+        config.configure(Phase.B)
+            .permit(Trigger.Y, Phase.A)
+            .ignore(Trigger.X);
+        config.configure(Phase.C)
+            .permitIf(Trigger.Z, Phase.D, open -> open);
+        config.configure(Phase.D)
+            .permit(Trigger.Z, Phase.A)
+            .permitInternal(Trigger.X, c -> { });
+        return config;
+    }
+
+    private static int[] randomLog(long seed) {
+        Random random = new Random(seed);
+        int[] log = new int[LOG_LENGTH];
+        for (int i = 0; i < log.length; i++) {
+            log[i] = random.nextInt(Trigger.values().length);
+        }
+        return log;
+    }
+
+    @Test
+    public void ParallelReplayMatchesFiringEveryTrigger() {
+        TriggerLogReplay<Phase, Trigger> replay =
+            new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, true);
+        StateMachineEngine<Phase, Trigger, Boolean> engine = new StateMachineEngine<>(configure());
+        for (long seed = 0; seed < 5; seed++) {
+            int[] log = randomLog(seed);
+            int[] states = new int[log.length];
+            Phase expected = Phase.A;
+            for (int i = 0; i < log.length; i++) {
+                expected = engine.tryFire(expected, Trigger.values()[log[i]], true).getState();
+                states[i] = expected.ordinal();
+            }
+
+            assertEquals(expected, replay.replay(Phase.A, IntBuffer.wrap(log), pool));
+            IntBuffer recorded = IntBuffer.allocate(log.length);
+            assertEquals(expected, replay.replay(Phase.A, IntBuffer.wrap(log), recorded, pool));
+            assertTrue(Arrays.equals(states, recorded.array()));
+        }
+    }
+
+    @Test
+    public void GuardsAreEvaluatedWithTheGivenContext() {
+        Trigger[] log = {Trigger.Z, Trigger.Z};
+        assertEquals(Phase.A, new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, true)
+            .replay(Phase.A, log));
+        assertEquals(Phase.A, new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, false, true)
+            .replay(Phase.A, log));
+        assertEquals(Phase.D, new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, true)
+            .replay(Phase.A, new Trigger[]{Trigger.Z}));
+    }
+
+    @Test
+    public void ReplayStartsAtThePositionOfTheBuffers() {
+        TriggerLogReplay<Phase, Trigger> replay =
+            new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, true);
+        IntBuffer log = IntBuffer.wrap(new int[]{Trigger.Y.ordinal(), Trigger.X.ordinal(), Trigger.Y.ordinal()});
+        log.position(1);
+        IntBuffer states = IntBuffer.wrap(new int[]{-1, -1, -1});
+        states.position(1);
+
+        assertEquals(Phase.A, replay.replay(Phase.A, log, states, pool));
+        assertEquals(-1, states.get(0));
+        assertEquals(Phase.B.ordinal(), states.get(1));
+        assertEquals(Phase.A.ordinal(), states.get(2));
+    }
+
+    @Test
+    public void UnhandledTriggerReportsItsPosition() {
+        TriggerLogReplay<Phase, Trigger> replay =
+            new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, false);
+        int[] log = new int[LOG_LENGTH];
+        Arrays.fill(log, Trigger.X.ordinal()); // A -> B, then ignored
+        log[200000] = Trigger.Y.ordinal(); // back to A
+        log[200001] = Trigger.Y.ordinal(); // not permitted in A
+
+        for (IntBuffer states : new IntBuffer[]{null, IntBuffer.allocate(LOG_LENGTH)}) {
+            try {
+                replay.replay(Phase.A, IntBuffer.wrap(log), states, pool);
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("position 200001"));
+            }
+        }
+    }
+
+    @Test
+    public void UnhandledTriggerPositionCountsFromThePositionOfTheLog() {
+        TriggerLogReplay<Phase, Trigger> replay =
+            new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, false);
+        IntBuffer log = IntBuffer.wrap(new int[]{Trigger.X.ordinal(), Trigger.X.ordinal(), Trigger.Y.ordinal(), Trigger.Y.ordinal()});
+        log.position(1);
+
+        try {
+            replay.replay(Phase.A, log, pool);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("position 2"));
+        }
+    }
+
+    @Test
+    public void ReplayCarriesTheStateAcrossBuffers() {
+        TriggerLogReplay<Phase, Trigger> replay =
+            new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, true);
+        int[] log = randomLog(11);
+        List<IntBuffer> buffers = Arrays.asList(IntBuffer.wrap(log, 0, 100000), IntBuffer.wrap(log, 100000, 1),
+            IntBuffer.wrap(log, 100001, LOG_LENGTH - 100001));
+
+        assertEquals(replay.replay(Phase.A, IntBuffer.wrap(log), pool), replay.replay(Phase.A, buffers, pool));
+    }
+
+    @Test
+    public void UnhandledTriggerPositionCountsAcrossBuffers() {
+        TriggerLogReplay<Phase, Trigger> replay =
+            new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, false);
+        int[] log = new int[LOG_LENGTH];
+        Arrays.fill(log, Trigger.X.ordinal());
+        log[200000] = Trigger.Y.ordinal();
+        log[200001] = Trigger.Y.ordinal();
+        List<IntBuffer> buffers = Arrays.asList(IntBuffer.wrap(log, 0, 150000),
+            IntBuffer.wrap(log, 150000, LOG_LENGTH - 150000));
+
+        try {
+            replay.replay(Phase.A, buffers, pool);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("position 200001"));
+        }
+    }
+
+    @Test
+    public void UnhandledTriggersCanBeIgnored() {
+        TriggerLogReplay<Phase, Trigger> replay =
+            new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, true);
+        assertEquals(Phase.A, replay.replay(Phase.A, new Trigger[]{Trigger.Y, Trigger.Y}));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void UnhandledTriggerThrowsOnTheCallingThread() {
+        new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, false)
+            .replay(Phase.A, new Trigger[]{Trigger.X, Trigger.Z});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void StatesMustFitTheLog() {
+        new TriggerLogReplay<>(configure(), Phase.class, Trigger.class, true, true)
+            .replay(Phase.A, IntBuffer.allocate(10), IntBuffer.allocate(9), pool);
+    }
+}
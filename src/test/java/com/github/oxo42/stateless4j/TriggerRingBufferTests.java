@@ -0,0 +1,246 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class TriggerRingBufferTests {
+
+    private enum Phase { A, B, C, D }
+
+    private static final int PRODUCERS = 4;
+    private static final int TRIGGERS_PER_PRODUCER = 20000;
+
+    private final List<String> actions = new ArrayList<>();
+
+    private StateMachineConfig<Phase, Trigger, List<String>> configure() {
+        StateMachineConfig<Phase, Trigger, List<String>> config = new StateMachineConfig<>();
+        config.configure(Phase.A)
+            .permit(Trigger.X, Phase.B);
+        config.configure(Phase.B)
+            .onEntry(l -> l.add("enterB"))
+            .permit(Trigger.X, Phase.A)
+            .permitInternal(Trigger.Y, l -> l.add("internal"))
+            .permitIf(Trigger.Z, Phase.C, List::isEmpty);
+        config.configure(Phase.C)
+            .onEntry(l -> {
+                throw new IllegalStateException("enterC");
+            });
+        return config;
+    }
+
+    private TriggerRingBuffer<Phase, Trigger, List<String>> ring(int entities, int capacity) {
+        StateMachineFleet<Phase, Trigger, List<String>> fleet = new StateMachineFleet<>(configure(), Phase.class, entities, Phase.A);
+        return new TriggerRingBuffer<>(fleet, capacity, 2, slot -> actions);
+    }
+
+    @Test
+    public void DrainFiresPublishedSlotsInOrder() {
+        TriggerRingBuffer<Phase, Trigger, List<String>> ring = ring(3, 8);
+        List<String> batchEnds = new ArrayList<>();
+        ring.onBatchEnd((changed, count) -> {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                ids.add(changed[i]);
+            }
+            batchEnds.add(ids.toString());
+        });
+
+        ring.publish(1, Trigger.X);
+        ring.publish(1, Trigger.Y);
+        ring.publish(2, Trigger.X);
+        ring.publish(2, Trigger.X);
+        ring.publish(0, Trigger.Y);
+
+        assertEquals(5, ring.getQueueDepth());
+        assertEquals(5, ring.drain());
+        assertEquals(0, ring.getQueueDepth());
+        assertEquals(Phase.A, ring.getFleet().getState(0));
+        assertEquals(Phase.B, ring.getFleet().getState(1));
+        assertEquals(Phase.A, ring.getFleet().getState(2));
+        assertEquals("[enterB, internal, enterB]", actions.toString());
+        assertEquals("[[1, 2, 2]]", batchEnds.toString());
+        assertEquals(1, ring.getUnhandledTriggers());
+        assertEquals(0, ring.drain());
+        assertEquals(1, ring.getBatches());
+    }
+
+    @Test
+    public void DrainStopsAtTheFirstUnpublishedSlot() {
+        TriggerRingBuffer<Phase, Trigger, List<String>> ring = ring(2, 4);
+        long first = ring.claim();
+        long second = ring.claim();
+        ring.set(second, 1, Trigger.X);
+        ring.publish(second);
+
+        assertEquals(0, ring.drain());
+
+        ring.set(first, 0, Trigger.X);
+        ring.publish(first);
+        assertEquals(2, ring.drain());
+        assertEquals(Phase.B, ring.getFleet().getState(0));
+        assertEquals(Phase.B, ring.getFleet().getState(1));
+    }
+
+    @Test
+    public void ArgumentsAreSeenByTheContexts() {
+        StateMachineFleet<Phase, Trigger, List<String>> fleet = new StateMachineFleet<>(configure(), Phase.class, 1, Phase.B);
+        TriggerRingBuffer<Phase, Trigger, List<String>> ring = new TriggerRingBuffer<>(fleet, 4, 2, slot -> {
+            actions.add(slot.getTrigger() + ":" + slot.getArgument(0) + "," + slot.getArgument(1));
+            return actions;
+        });
+        long sequence = ring.claim();
+        ring.set(sequence, 0, Trigger.Y);
+        ring.setArgument(sequence, 0, 7);
+        ring.setArgument(sequence, 1, -1);
+        ring.publish(sequence);
+        ring.publish(0, Trigger.Y, 42);
+
+        ring.drain();
+
+        assertEquals("[Y:7,-1, internal, Y:42,0, internal]", actions.toString());
+    }
+
+    @Test
+    public void TryClaimFailsWhenFull() {
+        TriggerRingBuffer<Phase, Trigger, List<String>> ring = ring(1, 2);
+        ring.publish(0, Trigger.X);
+        ring.publish(0, Trigger.X);
+
+        assertEquals(-1, ring.tryClaim());
+        assertEquals(1, ring.drain(1));
+        assertEquals(2, ring.tryClaim());
+    }
+
+    @Test
+    public void GuardedTransitionsAndErrors() {
+        TriggerRingBuffer<Phase, Trigger, List<String>> ring = ring(1, 4);
+        List<String> errors = new ArrayList<>();
+        List<Integer> changedIds = new ArrayList<>();
+        ring.onError((slot, e) -> errors.add(slot.getEntityId() + "/" + slot.getTrigger() + ":" + e.getMessage()));
+        ring.onBatchEnd((changed, count) -> {
+            for (int i = 0; i < count; i++) {
+                changedIds.add(changed[i]);
+            }
+        });
+        ring.getFleet().setState(0, Phase.B);
+
+        ring.publish(0, Trigger.Z);
+        ring.drain();
+
+        // like StateMachineFleet.tryFire, a guarded transition whose entry action throws keeps the source state
+        assertEquals(Phase.B, ring.getFleet().getState(0));
+        assertEquals("[0/Z:enterC]", errors.toString());
+        assertEquals("[]", changedIds.toString());
+
+        actions.add("guard");
+        ring.publish(0, Trigger.Z);
+        ring.drain();
+
+        assertEquals(Phase.B, ring.getFleet().getState(0));
+        assertEquals(1, ring.getUnhandledTriggers());
+    }
+
+    @Test
+    public void FailuresAreNotFiredAgain() {
+        StateMachineConfig<Phase, Trigger, List<String>> config = new StateMachineConfig<>();
+        config.configure(Phase.A)
+            .permit(Trigger.X, Phase.B)
+            .permitInternal(Trigger.Y, l -> l.add("internal"));
+        config.configure(Phase.B)
+            .onEntry(l -> {
+                throw new AssertionError("enterB");
+            });
+        StateMachineFleet<Phase, Trigger, List<String>> fleet = new StateMachineFleet<>(config, Phase.class, 2, Phase.A);
+        TriggerRingBuffer<Phase, Trigger, List<String>> ring = new TriggerRingBuffer<>(fleet, 4, 0, slot -> actions);
+        List<Integer> changedIds = new ArrayList<>();
+        ring.onBatchEnd((changed, count) -> {
+            for (int i = 0; i < count; i++) {
+                changedIds.add(changed[i]);
+            }
+        });
+        ring.onError((slot, e) -> {
+            throw new IllegalStateException("handler saw " + e.getCause().getMessage());
+        });
+        List<String> uncaught = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler previous = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e.getMessage()));
+        try {
+            ring.publish(0, Trigger.X);
+            ring.publish(1, Trigger.Y);
+
+            assertEquals(2, ring.drain());
+            assertEquals(0, ring.drain());
+        } finally {
+            thread.setUncaughtExceptionHandler(previous);
+        }
+
+        assertEquals("[handler saw enterB]", uncaught.toString());
+        assertEquals("[internal]", actions.toString());
+        assertEquals("[0]", changedIds.toString());
+        assertEquals(0, ring.getQueueDepth());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void UnknownEntityIsRejected() {
+        ring(2, 4).publish(2, Trigger.X);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void CapacityMustBeAPowerOfTwo() {
+        ring(2, 6);
+    }
+
+    @Test
+    public void ConcurrentProducersKeepTheOrderOfEachEntity() throws InterruptedException {
+        StateMachineConfig<Phase, Trigger, List<String>> config = new StateMachineConfig<>();
+        config.configure(Phase.A).permit(Trigger.X, Phase.B);
+        config.configure(Phase.B).permit(Trigger.Y, Phase.A);
+        StateMachineFleet<Phase, Trigger, List<String>> fleet = new StateMachineFleet<>(config, Phase.class, PRODUCERS, Phase.A);
+        TriggerRingBuffer<Phase, Trigger, List<String>> ring = new TriggerRingBuffer<>(fleet, 64, 0, slot -> null);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread consumer = new Thread(() -> {
+            while (!done.get() || ring.getQueueDepth() > 0) {
+                if (ring.drain() == 0) {
+                    Thread.yield();
+                }
+            }
+        });
+        consumer.start();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int entityId = p;
+            Thread producer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < TRIGGERS_PER_PRODUCER; i++) {
+                    ring.publish(entityId, i % 2 == 0 ? Trigger.X : Trigger.Y);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        done.set(true);
+        consumer.join();
+
+        assertEquals(PRODUCERS * TRIGGERS_PER_PRODUCER, ring.getDrainedTriggers());
+        assertEquals(0, ring.getUnhandledTriggers());
+        for (int entityId = 0; entityId < PRODUCERS; entityId++) {
+            assertEquals(Phase.A, fleet.getState(entityId));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.github.oxo42.stateless4j.delegates.Trace;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TryFireTests {
+
+    private StateMachineConfig<State, Trigger, Boolean> config;
+    private final List<String> actions = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        config = new StateMachineConfig<>();
+        config.configure(State.A)
+            .substateOf(State.C)
+            .permitIf(Trigger.X, State.B, c -> c)
+            .permitInternal(Trigger.Y, c -> actions.add("internal"));
+        config.configure(State.C)
+            .ignore(Trigger.Z);
+    }
+
+    private void assertResults(StateMachine<State, Trigger, Boolean> sm) {
+        sm.onUnhandledTrigger((s, t) -> {
+            throw new AssertionError("unhandled trigger action must not be called");
+        });
+
+        assertEquals(FireResult.IGNORED, sm.tryFire(Trigger.Z));
+        assertEquals(FireResult.ACCEPTED, sm.tryFire(Trigger.Y));
+        assertEquals("[internal]", actions.toString());
+        assertEquals(FireResult.GUARD_REJECTED, sm.tryFire(Trigger.X));
+        assertEquals(State.A, sm.getState());
+    }
+
+    @Test
+    public void ReportsHowTriggersAreHandled() {
+        assertResults(new StateMachine<>(State.A, false, config));
+    }
+
+    @Test
+    public void ReportsHowTriggersAreHandledWhenCompiled() {
+        config.compile();
+        assertResults(new StateMachine<>(State.A, false, config));
+    }
+
+    @Test
+    public void ReportsUnhandledTrigger() {
+        StateMachine<State, Trigger, Boolean> sm = new StateMachine<>(State.B, true, config);
+
+        assertEquals(FireResult.UNHANDLED, sm.tryFire(Trigger.X));
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test
+    public void AcceptedTriggerTransitions() {
+        StateMachine<State, Trigger, Boolean> sm = new StateMachine<>(State.A, true, config);
+
+        FireResult result = sm.tryFire(Trigger.X);
+
+        assertEquals(FireResult.ACCEPTED, result);
+        assertTrue(result.isHandled());
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test
+    public void RejectedTriggersAreTraced() {
+        List<Trigger> traced = new ArrayList<>();
+        StateMachine<State, Trigger, Boolean> sm = new StateMachine<>(State.B, true, config);
+        sm.setTrace(new Trace<State, Trigger>() {
+            @Override
+            public void trigger(Trigger trigger) {
+                traced.add(trigger);
+            }
+
+            @Override
+            public void transition(Trigger trigger, State source, State destination) {
+            }
+        });
+
+        assertFalse(sm.tryFire(Trigger.Y).isHandled());
+        assertEquals(1, traced.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void FireStillReportsRejectedGuardAsUnhandled() {
+        new StateMachine<>(State.A, false, config).fire(Trigger.X);
+    }
+}
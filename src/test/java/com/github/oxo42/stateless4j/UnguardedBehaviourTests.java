@@ -0,0 +1,69 @@
+package com.github.oxo42.stateless4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import org.junit.Test;
+
+public class UnguardedBehaviourTests {
+
+    private final StateMachineConfig<State, Trigger, Void> config = new StateMachineConfig<>();
+
+    private List<TriggerBehaviour<State, Trigger, Void>> behaviours(Trigger trigger) {
+        return config.getRepresentation(State.A).getTriggerBehaviours().get(trigger);
+    }
+
+    @Test
+    public void PermitIsUnguarded() {
+        config.configure(State.A).permit(Trigger.X, State.B);
+        assertTrue(behaviours(Trigger.X).get(0).isUnguarded());
+    }
+
+    @Test
+    public void IgnoreAndPermitInternalAreUnguarded() {
+        config.configure(State.A)
+            .ignore(Trigger.X)
+            .permitInternal(Trigger.Y, c -> {
+            });
+        assertTrue(behaviours(Trigger.X).get(0).isUnguarded());
+        assertTrue(behaviours(Trigger.Y).get(0).isUnguarded());
+    }
+
+    @Test
+    public void AlwaysTrueGuardIsStillGuarded() {
+        config.configure(State.A).permitIf(Trigger.X, State.B, c -> true);
+        assertFalse(behaviours(Trigger.X).get(0).isUnguarded());
+    }
+
+    @Test
+    public void PermitIfElseIgnoreIsGuarded() {
+        config.configure(State.A).permitIfElseIgnore(Trigger.X, State.B, c -> true);
+        for (TriggerBehaviour<State, Trigger, Void> behaviour : behaviours(Trigger.X)) {
+            assertFalse(behaviour.isUnguarded());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void UnguardedBehaviourStillConflictsWithMetGuard() {
+        config.configure(State.A)
+            .permit(Trigger.X, State.B)
+            .permitIf(Trigger.X, State.C, c -> true);
+
+        new StateMachine<>(State.A, null, config).fire(Trigger.X);
+    }
+
+    @Test
+    public void UnguardedBehaviourIsChosenWhenOtherGuardsAreNotMet() {
+        config.configure(State.A)
+            .permit(Trigger.X, State.B)
+            .permitIf(Trigger.X, State.C, c -> false);
+        config.compile();
+
+        StateMachine<State, Trigger, Void> sm = new StateMachine<>(State.A, null, config);
+        sm.fire(Trigger.X);
+
+        assertEquals(State.B, sm.getState());
+    }
+}